@@ -0,0 +1,430 @@
+package com.anass.halak.reactflow;
+
+import android.graphics.Path;
+import android.graphics.RectF;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.UiThread;
+import androidx.annotation.WorkerThread;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merges edges that run between the same neighbourhoods into shared strokes. Both endpoints
+ * are snapped to a grid (coarser when zoomed out); edges whose source and target land in the
+ * same pair of cells form a bundle, drawn as one thicker trunk between the members' average
+ * endpoints plus thin fans out to each real handle. Bundles are kept on a worker thread and
+ * updated from the change feed: only edges attached to changed nodes are re-bucketed, and only
+ * the chunks containing the affected bundles are rebuilt. The UI thread draws the published
+ * {@link Bundles}, a few paths per visible chunk instead of one per edge.
+ *
+ * <p>The grid has {@link #LEVELS} zoom levels, each with its own model, so zooming back to a level
+ * shows its cached bundles at once and only replays the changes made meanwhile. Endpoints the
+ * snapshot lacks (nodes in paged-out tiles) are resolved on the UI thread and sent back.
+ */
+final class EdgeBundler {
+    private static final String TAG = "EdgeBundler";
+    static final int WIDTH_CLASSES = 5; // Member counts 1, 2-3, 4-7, 8-15, 16+
+    static final int LEVELS = 5; // Cell size doubles per level
+    private static final int MAX_LEVEL_BACKLOG = 4096; // Changes kept for an inactive level before its cache is dropped
+    private static final float CHUNK_SIZE = 1024f; // World units; output paths are split by area for culling
+
+    interface Callback { void onBundlesReady(); }
+
+    /** Immutable draw data for one grid area. Paths are in world coordinates. */
+    static final class Chunk {
+        final RectF bounds = new RectF();
+        // Index animated * WIDTH_CLASSES + widthClass; null when empty
+        final Path[] trunks = new Path[2 * WIDTH_CLASSES];
+        @Nullable Path fans;
+        float[] arrows = new float[0]; int arrowCount; // (tipX, tipY, dirX, dirY) per arrowhead, dir normalized
+        private Chunk() { }
+    }
+
+    /** Published result. Chunks are shared between results while their area is unchanged. */
+    static final class Bundles {
+        final float cellSize;
+        final List<Chunk> chunks;
+        Bundles(float cellSize, @NonNull List<Chunk> chunks) { this.cellSize = cellSize; this.chunks = chunks; }
+    }
+
+    private final Callback callback;
+    private final EdgeHitIndex.EndpointResolver resolver; // UI thread: endpoints of edges whose node is not in the snapshot
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ThreadPoolExecutor worker = new ThreadPoolExecutor(1, 1, 5, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+        Thread t = new Thread(r, "ReactFlow-EdgeBundler");
+        t.setDaemon(true);
+        return t;
+    });
+    // Touched only on the worker thread
+    private final Map<String, float[]> ghostEndpoints = new HashMap<>(); // Edge id -> resolved (sx, sy, ex, ey)
+    private final Model[] models = new Model[LEVELS];
+
+    // UI-thread state
+    @Nullable private Bundles bundles = null;
+    private final Bundles[] publishedByLevel = new Bundles[LEVELS];
+    private final List<List<GraphChange>> backlogs = new ArrayList<>(Collections.nCopies(LEVELS, (List<GraphChange>) null)); // null: not built
+    private int level = 0;
+    private float baseCellSize = 1f;
+    private int generation = 0; // Bumped by rebuild(); results of older updates are discarded
+    @NonNull private GraphSnapshot latestSnapshot = GraphSnapshot.EMPTY;
+    private boolean busy = false, released = false;
+    private final List<Update> pendingUpdates = new ArrayList<>(); // In submission order; same-level neighbours merged
+
+    EdgeBundler(@NonNull Callback callback, @NonNull EdgeHitIndex.EndpointResolver resolver) {
+        this.callback = callback;
+        this.resolver = resolver;
+        worker.allowCoreThreadTimeOut(true);
+    }
+
+    @UiThread @Nullable Bundles getBundles() { return bundles; }
+    @UiThread int getLevel() { return level; }
+
+    /** Drops the bundles of every level (e.g. the finest cell size changed) and builds {@code level} from scratch. */
+    @UiThread void rebuild(@NonNull GraphSnapshot snapshot, float baseCellSize, int level) {
+        this.baseCellSize = baseCellSize; this.level = level; latestSnapshot = snapshot;
+        generation++; pendingUpdates.clear(); // The full rebuild below covers whatever they carried
+        for (int l = 0; l < LEVELS; l++) { backlogs.set(l, null); publishedByLevel[l] = null; }
+        build(level);
+    }
+
+    @UiThread void update(@NonNull GraphSnapshot snapshot, @NonNull List<GraphChange> changes) {
+        latestSnapshot = snapshot;
+        submit(new Update(snapshot, changes, level, cellSize(level), null, generation));
+        for (int l = 0; l < LEVELS; l++) { // Inactive levels catch up when shown again
+            List<GraphChange> backlog = backlogs.get(l);
+            if (l == level || backlog == null) continue;
+            if (backlog.size() + changes.size() <= MAX_LEVEL_BACKLOG) backlog.addAll(changes);
+            else { backlogs.set(l, null); publishedByLevel[l] = null; } // Rebuilding is cheaper by now
+        }
+    }
+
+    /** Switches the grid level. The previous bundles stay visible until a level seen for the first time is ready. */
+    @UiThread void setLevel(int level) {
+        if (level == this.level) return;
+        this.level = level;
+        List<GraphChange> backlog = backlogs.get(level);
+        if (backlog == null) { build(level); return; }
+        if (publishedByLevel[level] != null) bundles = publishedByLevel[level];
+        if (!backlog.isEmpty()) {
+            submit(new Update(latestSnapshot, new ArrayList<>(backlog), level, cellSize(level), null, generation));
+            backlog.clear();
+        }
+    }
+
+    @UiThread void release() {
+        released = true;
+        worker.shutdownNow();
+        bundles = null; pendingUpdates.clear();
+        for (int l = 0; l < LEVELS; l++) { backlogs.set(l, null); publishedByLevel[l] = null; }
+    }
+
+    @UiThread private void build(int level) {
+        backlogs.set(level, new ArrayList<>());
+        submit(new Update(latestSnapshot, null, level, cellSize(level), null, generation));
+    }
+
+    private float cellSize(int level) { return baseCellSize * (1 << level); }
+
+    // --- Update Scheduling ---
+    // 'changes == null' means a full rebuild; 'ghosts' carries endpoints resolved on the UI thread
+    private static final class Update {
+        @NonNull final GraphSnapshot snapshot; @Nullable final List<GraphChange> changes; final int level; final float cellSize;
+        @Nullable final Map<String, float[]> ghosts; final int generation;
+        Update(@NonNull GraphSnapshot snapshot, @Nullable List<GraphChange> changes, int level, float cellSize, @Nullable Map<String, float[]> ghosts, int generation) {
+            this.snapshot = snapshot; this.changes = changes; this.level = level; this.cellSize = cellSize; this.ghosts = ghosts; this.generation = generation;
+        }
+        // Folds a later update for the same level into this one
+        @NonNull Update then(@NonNull Update later) {
+            Map<String, float[]> ghosts = this.ghosts;
+            if (later.ghosts != null) { ghosts = ghosts == null ? new HashMap<>() : new HashMap<>(ghosts); ghosts.putAll(later.ghosts); }
+            if (changes == null || later.changes == null) return new Update(later.snapshot, null, level, later.cellSize, ghosts, later.generation);
+            List<GraphChange> merged = new ArrayList<>(changes);
+            merged.addAll(later.changes);
+            return new Update(later.snapshot, merged, level, later.cellSize, ghosts, later.generation);
+        }
+    }
+
+    @UiThread private void submit(@NonNull Update update) {
+        if (released) return;
+        if (busy) {
+            int last = pendingUpdates.size() - 1;
+            if (last >= 0 && pendingUpdates.get(last).level == update.level) pendingUpdates.set(last, pendingUpdates.get(last).then(update));
+            else pendingUpdates.add(update);
+            return;
+        }
+        busy = true;
+        worker.execute(() -> {
+            Model model = models[update.level];
+            if (model == null) { model = new Model(ghostEndpoints); models[update.level] = model; }
+            Bundles result = null; List<String> unresolved = null;
+            try {
+                if (update.ghosts != null) ghostEndpoints.putAll(update.ghosts);
+                Collection<String> refreshed = update.ghosts != null ? update.ghosts.keySet() : Collections.<String>emptySet();
+                if (update.changes == null) model.rebuild(update.snapshot, update.cellSize);
+                else model.update(update.snapshot, update.changes, refreshed);
+                result = model.publish();
+                unresolved = model.takeUnresolved();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Edge bundling failed", e);
+                model.reset(); // The next update then falls back to a full rebuild
+            }
+            final Bundles published = result; final List<String> missing = unresolved;
+            mainHandler.post(() -> onPublished(update.generation, update.level, published, missing));
+        });
+    }
+
+    @UiThread private void onPublished(int generation, int level, @Nullable Bundles result, @Nullable List<String> unresolved) {
+        busy = false;
+        if (released) return;
+        if (!pendingUpdates.isEmpty()) submit(pendingUpdates.remove(0));
+        if (generation != this.generation) return; // Built for the cell size before the last rebuild()
+        if (unresolved != null && !unresolved.isEmpty()) resolveGhosts(level, unresolved); // Queued behind older updates
+        if (result == null || backlogs.get(level) == null) return; // Failed, or the level was dropped meanwhile
+        publishedByLevel[level] = result;
+        if (level != this.level) return;
+        bundles = result;
+        callback.onBundlesReady();
+    }
+
+    // Looks up endpoints the worker could not find in the snapshot (live handle or persisted tile position)
+    @UiThread private void resolveGhosts(int level, @NonNull List<String> edgeIds) {
+        Map<String, float[]> ghosts = new HashMap<>();
+        float[] out = new float[4];
+        for (String edgeId : edgeIds) {
+            Edge edge = latestSnapshot.getEdge(edgeId);
+            if (edge != null && resolver.resolve(edge, out)) ghosts.put(edgeId, out.clone());
+        }
+        if (!ghosts.isEmpty() && backlogs.get(level) != null) {
+            submit(new Update(latestSnapshot, Collections.<GraphChange>emptyList(), level, cellSize(level), ghosts, generation));
+        }
+    }
+
+    // --- Worker-side Model ---
+    private static final class BundleKey {
+        final int sx, sy, ex, ey; final boolean animated;
+        BundleKey(int sx, int sy, int ex, int ey, boolean animated) { this.sx = sx; this.sy = sy; this.ex = ex; this.ey = ey; this.animated = animated; }
+        @Override public boolean equals(Object o) {
+            if (!(o instanceof BundleKey)) return false;
+            BundleKey k = (BundleKey) o;
+            return sx == k.sx && sy == k.sy && ex == k.ex && ey == k.ey && animated == k.animated;
+        }
+        @Override public int hashCode() { return (((sx * 31 + sy) * 31 + ex) * 31 + ey) * 2 + (animated ? 1 : 0); }
+    }
+
+    private static final class Member {
+        final Edge edge; float sx, sy, ex, ey; @Nullable Bundle bundle; // null while an endpoint is not in the snapshot
+        Member(@NonNull Edge edge) { this.edge = edge; }
+    }
+
+    private static final class Bundle {
+        final BundleKey key; final Set<Member> members = new HashSet<>();
+        float startX, startY, endX, endY; // Average of the members' endpoints
+        long chunkKey; boolean placed;
+        Bundle(@NonNull BundleKey key) { this.key = key; }
+        void recomputeEndpoints() {
+            float sx = 0, sy = 0, ex = 0, ey = 0;
+            for (Member m : members) { sx += m.sx; sy += m.sy; ex += m.ex; ey += m.ey; }
+            int n = members.size();
+            startX = sx / n; startY = sy / n; endX = ex / n; endY = ey / n;
+        }
+    }
+
+    private static final class Model {
+        final Map<String, Member> members = new HashMap<>(); // Edge id -> member
+        final Map<String, Set<String>> edgesByNode = new HashMap<>();
+        final Map<BundleKey, Bundle> bundles = new HashMap<>();
+        final Map<Long, Set<Bundle>> bundlesByChunk = new HashMap<>();
+        final Map<Long, Chunk> chunks = new HashMap<>();
+        final Set<Bundle> dirtyBundles = new HashSet<>();
+        final Set<Long> dirtyChunks = new HashSet<>();
+        final Map<String, float[]> ghostEndpoints; // Shared by all levels
+        final List<String> unresolved = new ArrayList<>(); // Missing endpoints found since the last publish
+        float cellSize = 1f;
+        boolean valid = false;
+
+        Model(@NonNull Map<String, float[]> ghostEndpoints) { this.ghostEndpoints = ghostEndpoints; }
+
+        void reset() {
+            members.clear(); edgesByNode.clear(); bundles.clear(); bundlesByChunk.clear(); chunks.clear();
+            dirtyBundles.clear(); dirtyChunks.clear(); unresolved.clear(); valid = false;
+        }
+
+        @WorkerThread void rebuild(@NonNull GraphSnapshot snapshot, float cellSize) {
+            reset();
+            this.cellSize = cellSize;
+            snapshot.forEachEdge(edge -> addEdge(snapshot, edge));
+            valid = true;
+        }
+
+        // 'refreshed' are edges whose ghost endpoints just arrived
+        @WorkerThread void update(@NonNull GraphSnapshot snapshot, @NonNull List<GraphChange> changes, @NonNull Collection<String> refreshed) {
+            if (!valid) { rebuild(snapshot, cellSize); return; }
+            Set<String> touched = new HashSet<>(refreshed);
+            for (GraphChange change : changes) {
+                switch (change.type) {
+                    case EDGE_ADDED: case EDGE_REMOVED: touched.add(change.id); break;
+                    default: { // Any node change can move, reveal or hide its edges' endpoints
+                        Set<String> adjacent = edgesByNode.get(change.id);
+                        if (adjacent != null) touched.addAll(adjacent);
+                        break;
+                    }
+                }
+            }
+            for (String edgeId : touched) {
+                removeEdge(edgeId);
+                Edge edge = snapshot.getEdge(edgeId);
+                if (edge != null) addEdge(snapshot, edge); else ghostEndpoints.remove(edgeId);
+            }
+        }
+
+        @WorkerThread @NonNull List<String> takeUnresolved() {
+            List<String> out = new ArrayList<>(unresolved);
+            unresolved.clear();
+            return out;
+        }
+
+        private void addEdge(@NonNull GraphSnapshot snapshot, @NonNull Edge edge) {
+            Member member = new Member(edge);
+            members.put(edge.id, member);
+            adjacency(edge.sourceNodeId).add(edge.id); adjacency(edge.targetNodeId).add(edge.id);
+            NodeSnapshot source = snapshot.getNode(edge.sourceNodeId), target = snapshot.getNode(edge.targetNodeId);
+            int si = source != null ? source.indexOfHandle(edge.sourceHandleId) : -1, ti = target != null ? target.indexOfHandle(edge.targetHandleId) : -1;
+            if ((source != null && si < 0) || (target != null && ti < 0)) return; // Handle no longer exists
+            float[] ghost = null;
+            if (source == null || target == null) { // Paged-out end: use the position resolved on the UI thread
+                ghost = ghostEndpoints.get(edge.id);
+                if (ghost == null) { unresolved.add(edge.id); return; }
+            } else {
+                ghostEndpoints.remove(edge.id); // Both ends are live again
+            }
+            member.sx = source != null ? source.getHandleWorldX(si) : ghost[0]; member.sy = source != null ? source.getHandleWorldY(si) : ghost[1];
+            member.ex = target != null ? target.getHandleWorldX(ti) : ghost[2]; member.ey = target != null ? target.getHandleWorldY(ti) : ghost[3];
+            BundleKey key = new BundleKey(cell(member.sx), cell(member.sy), cell(member.ex), cell(member.ey), edge.animated);
+            Bundle bundle = bundles.get(key);
+            if (bundle == null) { bundle = new Bundle(key); bundles.put(key, bundle); }
+            bundle.members.add(member);
+            member.bundle = bundle;
+            dirtyBundles.add(bundle);
+        }
+
+        private void removeEdge(@NonNull String edgeId) {
+            Member member = members.remove(edgeId);
+            if (member == null) return;
+            removeAdjacency(member.edge.sourceNodeId, edgeId); removeAdjacency(member.edge.targetNodeId, edgeId);
+            Bundle bundle = member.bundle;
+            if (bundle == null) return;
+            bundle.members.remove(member);
+            dirtyBundles.add(bundle);
+        }
+
+        // Re-places changed bundles, rebuilds the chunks they left or entered, and snapshots the result
+        @WorkerThread @NonNull Bundles publish() {
+            for (Bundle bundle : dirtyBundles) {
+                if (bundle.placed) {
+                    Set<Bundle> old = bundlesByChunk.get(bundle.chunkKey);
+                    if (old != null) { old.remove(bundle); if (old.isEmpty()) bundlesByChunk.remove(bundle.chunkKey); }
+                    dirtyChunks.add(bundle.chunkKey);
+                    bundle.placed = false;
+                }
+                if (bundle.members.isEmpty()) { bundles.remove(bundle.key); continue; }
+                bundle.recomputeEndpoints();
+                bundle.chunkKey = chunkKey((bundle.startX + bundle.endX) / 2f, (bundle.startY + bundle.endY) / 2f);
+                Set<Bundle> set = bundlesByChunk.get(bundle.chunkKey);
+                if (set == null) { set = new HashSet<>(); bundlesByChunk.put(bundle.chunkKey, set); }
+                set.add(bundle); bundle.placed = true;
+                dirtyChunks.add(bundle.chunkKey);
+            }
+            dirtyBundles.clear();
+            for (long key : dirtyChunks) {
+                Set<Bundle> set = bundlesByChunk.get(key);
+                if (set == null) chunks.remove(key); else chunks.put(key, buildChunk(set));
+            }
+            dirtyChunks.clear();
+            return new Bundles(cellSize, Collections.unmodifiableList(new ArrayList<>(chunks.values())));
+        }
+
+        @NonNull private static Chunk buildChunk(@NonNull Set<Bundle> set) {
+            Chunk chunk = new Chunk();
+            boolean first = true;
+            for (Bundle bundle : set) {
+                int count = bundle.members.size();
+                float sx = bundle.startX, sy = bundle.startY, ex = bundle.endX, ey = bundle.endY;
+                // Same control point as ReactFlowCanvasView.drawEdges()
+                float dx = ex - sx, dy = ey - sy;
+                float cx = (sx + ex) / 2 - dy * 0.25f, cy = (sy + ey) / 2 + dx * 0.25f;
+                int index = (bundle.key.animated ? WIDTH_CLASSES : 0) + widthClass(count);
+                Path trunk = chunk.trunks[index];
+                if (trunk == null) { trunk = new Path(); chunk.trunks[index] = trunk; }
+                trunk.moveTo(sx, sy); trunk.quadTo(cx, cy, ex, ey);
+                if (first) { chunk.bounds.set(sx, sy, sx, sy); first = false; }
+                chunk.bounds.union(sx, sy); chunk.bounds.union(cx, cy); chunk.bounds.union(ex, ey);
+
+                boolean trunkArrow = count == 1;
+                if (count > 1) {
+                    if (chunk.fans == null) chunk.fans = new Path();
+                    for (Member m : bundle.members) {
+                        if (Math.hypot(m.sx - sx, m.sy - sy) > 0.5f) { chunk.fans.moveTo(m.sx, m.sy); chunk.fans.lineTo(sx, sy); chunk.bounds.union(m.sx, m.sy); }
+                        float fx = m.ex - ex, fy = m.ey - ey; float length = (float) Math.hypot(fx, fy);
+                        if (length > 0.5f) {
+                            chunk.fans.moveTo(ex, ey); chunk.fans.lineTo(m.ex, m.ey); chunk.bounds.union(m.ex, m.ey);
+                            addArrow(chunk, m.ex, m.ey, fx / length, fy / length);
+                        } else {
+                            trunkArrow = true; // Fan-in to a shared handle: one arrowhead at the trunk end
+                        }
+                    }
+                }
+                if (trunkArrow) {
+                    // End tangent of a quadratic bezier points from the control point to the end point
+                    float tx = ex - cx, ty = ey - cy; float length = (float) Math.hypot(tx, ty);
+                    if (length > 0.01f) addArrow(chunk, ex, ey, tx / length, ty / length);
+                }
+            }
+            return chunk;
+        }
+
+        private static void addArrow(@NonNull Chunk chunk, float x, float y, float ux, float uy) {
+            if ((chunk.arrowCount + 1) * 4 > chunk.arrows.length) chunk.arrows = Arrays.copyOf(chunk.arrows, Math.max(16, chunk.arrows.length * 2));
+            int o = chunk.arrowCount * 4;
+            chunk.arrows[o] = x; chunk.arrows[o + 1] = y; chunk.arrows[o + 2] = ux; chunk.arrows[o + 3] = uy;
+            chunk.arrowCount++;
+        }
+
+        private Set<String> adjacency(@NonNull String nodeId) {
+            Set<String> set = edgesByNode.get(nodeId);
+            if (set == null) { set = new HashSet<>(); edgesByNode.put(nodeId, set); }
+            return set;
+        }
+
+        private void removeAdjacency(@NonNull String nodeId, @NonNull String edgeId) {
+            Set<String> set = edgesByNode.get(nodeId);
+            if (set == null) return;
+            set.remove(edgeId);
+            if (set.isEmpty()) edgesByNode.remove(nodeId);
+        }
+
+        private int cell(float world) { return (int) Math.floor(world / cellSize); }
+    }
+
+    static int widthClass(int memberCount) { return Math.min(WIDTH_CLASSES - 1, 31 - Integer.numberOfLeadingZeros(memberCount)); }
+
+    private static long chunkKey(float x, float y) {
+        int cx = (int) Math.floor(x / CHUNK_SIZE), cy = (int) Math.floor(y / CHUNK_SIZE);
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+}
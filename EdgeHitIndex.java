@@ -0,0 +1,198 @@
+package com.anass.halak.reactflow;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Spatial index for edge hit-testing. Each edge's quadratic curve is flattened into a short
+ * polyline whose segments are bucketed in a uniform grid, so a tap only inspects the few
+ * segments in the cells around it. Moving a node just marks its edges dirty; they are
+ * re-flattened lazily on the next query, which keeps dragging cheap.
+ */
+final class EdgeHitIndex {
+    private static final float CELL_SIZE = 64f; // World units; should stay above the hit tolerance
+    private static final float FLATTEN_STEP = 24f; // Target segment length along the control polygon
+    private static final int MIN_SEGMENTS = 4, MAX_SEGMENTS = 64;
+
+    /** Supplies current endpoint positions: out = (startX, startY, endX, endY). */
+    interface EndpointResolver { boolean resolve(@NonNull Edge edge, @NonNull float[] out); }
+
+    private final EndpointResolver resolver;
+    private final Map<Long, IntList> cells = new HashMap<>(); // Cell key -> packed (slot << 8 | segment)
+    private final Map<String, Integer> slotsByEdgeId = new HashMap<>();
+    private final Map<String, IntList> slotsByNodeId = new HashMap<>(); // Adjacency for move invalidation
+    private Edge[] slotEdges = new Edge[64];
+    private float[][] slotPolylines = new float[64][]; // null while not indexed
+    private final IntList freeSlots = new IntList();
+    private int slotCount = 0;
+    private final Set<Integer> dirtySlots = new HashSet<>();
+    private final float[] endpoints = new float[4];
+    @Nullable private List<Edge> pendingRebuild = null;
+
+    EdgeHitIndex(@NonNull EndpointResolver resolver) { this.resolver = resolver; }
+
+    // --- Maintenance ---
+    /** Drops everything and re-indexes {@code edges} lazily on the next query. */
+    void rebuild(@NonNull List<Edge> edges) {
+        cells.clear(); slotsByEdgeId.clear(); slotsByNodeId.clear(); dirtySlots.clear(); freeSlots.clear();
+        Arrays.fill(slotEdges, null); Arrays.fill(slotPolylines, null); slotCount = 0;
+        pendingRebuild = edges;
+    }
+
+    void addEdge(@NonNull Edge edge) {
+        if (pendingRebuild != null || slotsByEdgeId.containsKey(edge.id)) return;
+        int slot = freeSlots.size() > 0 ? freeSlots.removeLast() : slotCount++;
+        if (slot == slotEdges.length) {
+            slotEdges = Arrays.copyOf(slotEdges, slot * 2); slotPolylines = Arrays.copyOf(slotPolylines, slot * 2);
+        }
+        slotEdges[slot] = edge;
+        slotsByEdgeId.put(edge.id, slot);
+        adjacency(edge.sourceNodeId).add(slot);
+        if (!edge.targetNodeId.equals(edge.sourceNodeId)) adjacency(edge.targetNodeId).add(slot);
+        dirtySlots.add(slot);
+    }
+
+    void removeEdge(@NonNull String edgeId) {
+        if (pendingRebuild != null) return;
+        Integer slot = slotsByEdgeId.remove(edgeId);
+        if (slot == null) return;
+        Edge edge = slotEdges[slot];
+        unindex(slot);
+        dirtySlots.remove(slot);
+        removeAdjacency(edge.sourceNodeId, slot); removeAdjacency(edge.targetNodeId, slot);
+        slotEdges[slot] = null;
+        freeSlots.add(slot);
+    }
+
+    void markNodeMoved(@NonNull String nodeId) {
+        IntList slots = slotsByNodeId.get(nodeId);
+        if (slots == null) return;
+        for (int i = 0; i < slots.size(); i++) dirtySlots.add(slots.get(i));
+    }
+
+    // --- Query ---
+    /** Closest edge whose curve passes within {@code tolerance} of (x, y), or null. */
+    @Nullable Edge findEdgeAt(float x, float y, float tolerance) {
+        flushPending();
+        int minCx = cellIndex(x - tolerance), maxCx = cellIndex(x + tolerance);
+        int minCy = cellIndex(y - tolerance), maxCy = cellIndex(y + tolerance);
+        float bestDistSq = tolerance * tolerance; int bestSlot = -1;
+        for (int cx = minCx; cx <= maxCx; cx++) {
+            for (int cy = minCy; cy <= maxCy; cy++) {
+                IntList cell = cells.get(cellKey(cx, cy));
+                if (cell == null) continue;
+                for (int i = 0; i < cell.size(); i++) {
+                    int packed = cell.get(i); int slot = packed >>> 8, seg = packed & 0xff;
+                    float[] p = slotPolylines[slot]; int o = seg * 2;
+                    float d = distanceSqToSegment(x, y, p[o], p[o + 1], p[o + 2], p[o + 3]);
+                    if (d <= bestDistSq) { bestDistSq = d; bestSlot = slot; }
+                }
+            }
+        }
+        return bestSlot >= 0 ? slotEdges[bestSlot] : null;
+    }
+
+    private void flushPending() {
+        if (pendingRebuild != null) {
+            List<Edge> edges = pendingRebuild; pendingRebuild = null;
+            for (Edge edge : edges) addEdge(edge);
+        }
+        if (dirtySlots.isEmpty()) return;
+        for (int slot : dirtySlots) { unindex(slot); index(slot); }
+        dirtySlots.clear();
+    }
+
+    // --- Flattening & Grid ---
+    private void index(int slot) {
+        Edge edge = slotEdges[slot];
+        if (edge == null || !resolver.resolve(edge, endpoints)) return;
+        float sx = endpoints[0], sy = endpoints[1], ex = endpoints[2], ey = endpoints[3];
+        // Same control point as ReactFlowCanvasView.drawEdges()
+        float dx = ex - sx, dy = ey - sy;
+        float cx = (sx + ex) / 2 - dy * 0.25f, cy = (sy + ey) / 2 + dx * 0.25f;
+        float polygonLength = (float) (Math.hypot(cx - sx, cy - sy) + Math.hypot(ex - cx, ey - cy));
+        int segments = Math.max(MIN_SEGMENTS, Math.min(MAX_SEGMENTS, (int) Math.ceil(polygonLength / FLATTEN_STEP)));
+
+        float[] points = slotPolylines[slot];
+        if (points == null || points.length != (segments + 1) * 2) points = new float[(segments + 1) * 2];
+        for (int i = 0; i <= segments; i++) {
+            float t = (float) i / segments, u = 1 - t;
+            points[i * 2] = u * u * sx + 2 * u * t * cx + t * t * ex;
+            points[i * 2 + 1] = u * u * sy + 2 * u * t * cy + t * t * ey;
+        }
+        slotPolylines[slot] = points;
+        for (int seg = 0; seg < segments; seg++) forEachCell(points, seg, slot, true);
+    }
+
+    private void unindex(int slot) {
+        float[] points = slotPolylines[slot];
+        if (points == null) return;
+        for (int seg = 0; seg < points.length / 2 - 1; seg++) forEachCell(points, seg, slot, false);
+        slotPolylines[slot] = null;
+    }
+
+    // Adds or removes the segment in every cell its bounding box overlaps
+    private void forEachCell(float[] p, int seg, int slot, boolean add) {
+        int o = seg * 2; int packed = (slot << 8) | seg;
+        int minCx = cellIndex(Math.min(p[o], p[o + 2])), maxCx = cellIndex(Math.max(p[o], p[o + 2]));
+        int minCy = cellIndex(Math.min(p[o + 1], p[o + 3])), maxCy = cellIndex(Math.max(p[o + 1], p[o + 3]));
+        for (int cx = minCx; cx <= maxCx; cx++) {
+            for (int cy = minCy; cy <= maxCy; cy++) {
+                long key = cellKey(cx, cy);
+                IntList cell = cells.get(key);
+                if (add) {
+                    if (cell == null) { cell = new IntList(); cells.put(key, cell); }
+                    cell.add(packed);
+                } else if (cell != null) {
+                    cell.removeValue(packed);
+                    if (cell.size() == 0) cells.remove(key);
+                }
+            }
+        }
+    }
+
+    private IntList adjacency(String nodeId) {
+        IntList list = slotsByNodeId.get(nodeId);
+        if (list == null) { list = new IntList(); slotsByNodeId.put(nodeId, list); }
+        return list;
+    }
+
+    private void removeAdjacency(String nodeId, int slot) {
+        IntList list = slotsByNodeId.get(nodeId);
+        if (list == null) return;
+        list.removeValue(slot);
+        if (list.size() == 0) slotsByNodeId.remove(nodeId);
+    }
+
+    private static int cellIndex(float world) { return (int) Math.floor(world / CELL_SIZE); }
+    private static long cellKey(int cx, int cy) { return ((long) cx << 32) | (cy & 0xffffffffL); }
+
+    static float distanceSqToSegment(float px, float py, float ax, float ay, float bx, float by) {
+        float abx = bx - ax, aby = by - ay;
+        float lenSq = abx * abx + aby * aby;
+        float t = lenSq > 0f ? ((px - ax) * abx + (py - ay) * aby) / lenSq : 0f;
+        t = Math.max(0f, Math.min(1f, t));
+        float dx = ax + t * abx - px, dy = ay + t * aby - py;
+        return dx * dx + dy * dy;
+    }
+
+    // Growable int array (avoids boxing in the grid cells)
+    private static final class IntList {
+        private int[] values = new int[4]; private int size;
+        int size() { return size; }
+        int get(int i) { return values[i]; }
+        void add(int v) { if (size == values.length) values = Arrays.copyOf(values, size * 2); values[size++] = v; }
+        int removeLast() { return values[--size]; }
+        void clear() { size = 0; }
+        void removeValue(int v) { // Order is irrelevant: swap with last
+            for (int i = 0; i < size; i++) if (values[i] == v) { values[i] = values[--size]; return; }
+        }
+    }
+}
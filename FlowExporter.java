@@ -0,0 +1,617 @@
+package com.anass.halak.reactflow;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.util.Base64;
+import android.util.Log;
+
+import androidx.annotation.ColorInt;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.UiThread;
+import androidx.annotation.WorkerThread;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Renders a graph to PNG or SVG without a window, using the same {@link GraphPainter} drawing
+ * as the canvas view. The PNG is rendered in fixed-size tiles on a pool of worker threads and
+ * streamed to the output one band of tiles at a time, so pixel memory stays bounded by the image
+ * width rather than its area. One pass up front records which tiles each node and edge reaches;
+ * each band is then bucketed from that just before it renders, so each tile only looks at what
+ * overlaps it and bookkeeping grows with the graph, not with the number of tiles it spans.
+ * The SVG is written element by element straight from the snapshot.
+ * Both exports are blocking and belong on a background thread.
+ */
+public final class FlowExporter {
+    private static final String TAG = "FlowExporter";
+    private static final int MIN_TILE_SIZE = 64, MAX_TILE_SIZE = 4096;
+
+    private final GraphSnapshot snapshot;
+    @Nullable private final Map<String, float[]> storedEndpoints; // Endpoints in paged-out tiles (see ScenePreparer.edgeCurve())
+    private final GraphPainter style;
+    private float scale = 1f; // Output pixels per world unit
+    private int tileSize = 512;
+    private float paddingWorld = 40f;
+    @ColorInt private int backgroundColor = Color.DKGRAY;
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Exports the view's current graph with its current colors and sizes. The view need not be attached.
+     * With a {@link TiledGraphStore} only the nodes of resident tiles are exported; edges into paged-out
+     * tiles are drawn to their last persisted endpoint, as on screen.
+     */
+    @UiThread
+    public FlowExporter(@NonNull ReactFlowCanvasView view) {
+        this(view.getSnapshot(), view.getStoredEdgeEndpoints(), view.getPainter().copy());
+    }
+
+    /** Exports the given graph with the default style. */
+    public FlowExporter(@NonNull Context context, @NonNull List<Node> nodes, @NonNull List<Edge> edges) {
+        this(GraphSnapshot.of(0L, nodes, edges), null, new GraphPainter(context));
+    }
+
+    private FlowExporter(@NonNull GraphSnapshot snapshot, @Nullable Map<String, float[]> storedEndpoints, @NonNull GraphPainter style) {
+        this.snapshot = snapshot; this.storedEndpoints = storedEndpoints; this.style = style;
+    }
+
+    // --- Configuration ---
+    public void setScale(float scale) { this.scale = Math.max(0.01f, scale); }
+    public void setTileSize(int tileSizePixels) { this.tileSize = Math.max(MIN_TILE_SIZE, Math.min(MAX_TILE_SIZE, tileSizePixels)); }
+    public void setPaddingWorld(float padding) { this.paddingWorld = Math.max(0f, padding); }
+    public void setBackgroundColor(@ColorInt int color) { this.backgroundColor = color; }
+    public void setThreadCount(int threads) { this.threadCount = Math.max(1, threads); }
+
+    // --- PNG ---
+    @WorkerThread
+    public void exportPng(@NonNull File file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) { exportPng(out); }
+    }
+
+    @WorkerThread
+    public void exportPng(@NonNull OutputStream out) throws IOException {
+        final GraphPainter template = style.copy();
+        template.setScale(scale);
+        final Layout layout = measure(template);
+        final int columns = (layout.width + tileSize - 1) / tileSize, rows = (layout.height + tileSize - 1) / tileSize;
+
+        // Paints and render lists are not thread-safe: one of each per worker
+        final ThreadLocal<GraphPainter> painters = new ThreadLocal<GraphPainter>() {
+            @Override protected GraphPainter initialValue() { return template.copy(); }
+        };
+        final ThreadLocal<RenderList> lists = new ThreadLocal<RenderList>() {
+            @Override protected RenderList initialValue() { return new RenderList(); }
+        };
+        final BandIndex index = indexByBand(layout, columns, rows);
+        final AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount, r -> {
+            Thread t = new Thread(r, "ReactFlow-Export-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        List<Future<Bitmap>> band = null, next = null;
+        PngStreamWriter png = null;
+        try {
+            png = new PngStreamWriter(out, layout.width, layout.height);
+            final int[] rowPixels = new int[layout.width];
+            band = submitBand(executor, 0, columns, layout, index, painters, lists);
+            for (int row = 0; row < rows; row++) {
+                // The next band renders while this one is encoded; the queue keeps bands in order
+                next = row + 1 < rows ? submitBand(executor, row + 1, columns, layout, index, painters, lists) : null;
+                Bitmap[] tiles = new Bitmap[columns];
+                for (int column = 0; column < columns; column++) tiles[column] = band.get(column).get();
+                writeBand(png, tiles, rowPixels);
+                for (Bitmap tile : tiles) tile.recycle();
+                band = next; next = null;
+            }
+            png.finish();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("PNG export interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("Tile rendering failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+            if (png != null) png.release();
+            recycleDone(band); recycleDone(next);
+        }
+    }
+
+    @NonNull
+    private List<Future<Bitmap>> submitBand(@NonNull ExecutorService executor, int row, int columns, @NonNull Layout layout, @NonNull BandIndex index,
+                                            @NonNull ThreadLocal<GraphPainter> painters, @NonNull ThreadLocal<RenderList> lists) {
+        List<Future<Bitmap>> band = new ArrayList<>(columns);
+        TileBucket[] buckets = bucketBand(index, row, columns); // Freed once the band is rendered
+        for (int column = 0; column < columns; column++) {
+            final int px = column * tileSize, py = row * tileSize;
+            final TileBucket bucket = buckets[column] != null ? buckets[column] : TileBucket.EMPTY;
+            band.add(executor.submit(() -> renderTile(px, py, layout, bucket, painters.get(), lists.get())));
+        }
+        return band;
+    }
+
+    @WorkerThread @NonNull
+    private Bitmap renderTile(int px, int py, @NonNull Layout layout, @NonNull TileBucket bucket, @NonNull GraphPainter painter, @NonNull RenderList list) {
+        int w = Math.min(tileSize, layout.width - px), h = Math.min(tileSize, layout.height - py);
+        Bitmap bitmap = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        canvas.drawColor(backgroundColor);
+
+        // Tile pixel (x, y) shows world point (left + x / scale, top + y / scale)
+        float left = layout.world.left + px / scale, top = layout.world.top + py / scale;
+        float pad = layout.overhang; // Labels, handles and strokes reach past the node rects and curve hulls
+        ScenePreparer.prepare(list, new ScenePreparer.Request(snapshot, storedEndpoints, -left, -top, scale,
+                left - pad, top - pad, left + w / scale + pad, top + h / scale + pad,
+                true, painter.drawArrowheads, painter.getArrowSize(), painter.getLabelMargin(), painter.textPaint.ascent()),
+                bucket.edges, bucket.nodes);
+        canvas.scale(scale, scale);
+        canvas.translate(-left, -top);
+        painter.drawRenderList(canvas, list, null);
+        list.reset();
+        return bitmap;
+    }
+
+    // Candidates for one tile: everything whose padded bounds overlap it
+    private static final class TileBucket {
+        static final TileBucket EMPTY = new TileBucket();
+        final List<Edge> edges = new ArrayList<>();
+        final List<NodeSnapshot> nodes = new ArrayList<>(); // Stacking order
+    }
+
+    // Tile ranges of everything that can be drawn, in the same (minColumn, minRow, maxColumn, maxRow) layout as tileRange()
+    private static final class BandIndex {
+        final Edge[] edges; final int[] edgeRanges; int edgeCount; // Edges without a curve are left out
+        final NodeSnapshot[] nodes; final int[] nodeRanges; // Stacking order
+
+        BandIndex(int edgeCapacity, int nodeCount) {
+            edges = new Edge[edgeCapacity]; edgeRanges = new int[4 * edgeCapacity];
+            nodes = new NodeSnapshot[nodeCount]; nodeRanges = new int[4 * nodeCount];
+        }
+    }
+
+    // One pass over the graph instead of one per tile
+    @NonNull
+    private BandIndex indexByBand(@NonNull Layout layout, final int columns, final int rows) {
+        final BandIndex index = new BandIndex(snapshot.getEdgeCount(), snapshot.getNodeCount());
+        final float[] curve = new float[6];
+        final int[] range = new int[4];
+        snapshot.forEachEdge(edge -> {
+            if (!ScenePreparer.edgeCurve(snapshot, storedEndpoints, edge, curve)) return;
+            tileRange(layout, columns, rows, Math.min(curve[0], Math.min(curve[2], curve[4])), Math.min(curve[1], Math.min(curve[3], curve[5])),
+                    Math.max(curve[0], Math.max(curve[2], curve[4])), Math.max(curve[1], Math.max(curve[3], curve[5])), range);
+            System.arraycopy(range, 0, index.edgeRanges, 4 * index.edgeCount, 4);
+            index.edges[index.edgeCount++] = edge;
+        });
+        List<NodeSnapshot> nodes = snapshot.getNodesInZOrder();
+        for (int i = 0; i < nodes.size(); i++) {
+            NodeSnapshot node = nodes.get(i);
+            tileRange(layout, columns, rows, node.getLeft(), node.getTop(), node.getRight(), node.getBottom(), range);
+            System.arraycopy(range, 0, index.nodeRanges, 4 * i, 4);
+            index.nodes[i] = node;
+        }
+        return index;
+    }
+
+    // Candidates for each tile of one band; null entries are empty tiles. Buckets inherit the stacking order
+    @NonNull
+    private static TileBucket[] bucketBand(@NonNull BandIndex index, int row, int columns) {
+        TileBucket[] buckets = new TileBucket[columns];
+        for (int i = 0; i < index.edgeCount; i++) {
+            int[] r = index.edgeRanges;
+            if (row < r[4 * i + 1] || row > r[4 * i + 3]) continue;
+            for (int column = r[4 * i]; column <= r[4 * i + 2]; column++) bucket(buckets, column).edges.add(index.edges[i]);
+        }
+        for (int i = 0; i < index.nodes.length; i++) {
+            int[] r = index.nodeRanges;
+            if (row < r[4 * i + 1] || row > r[4 * i + 3]) continue;
+            for (int column = r[4 * i]; column <= r[4 * i + 2]; column++) bucket(buckets, column).nodes.add(index.nodes[i]);
+        }
+        return buckets;
+    }
+
+    @NonNull private static TileBucket bucket(@NonNull TileBucket[] buckets, int index) {
+        if (buckets[index] == null) buckets[index] = new TileBucket();
+        return buckets[index];
+    }
+
+    // Tiles a world rect reaches once padded by the overhang (plus a pixel against rounding): out = (minColumn, minRow, maxColumn, maxRow)
+    private void tileRange(@NonNull Layout layout, int columns, int rows, float left, float top, float right, float bottom, @NonNull int[] out) {
+        float pad = layout.overhang;
+        out[0] = tileIndex((left - pad - layout.world.left) * scale - 1f, columns);
+        out[1] = tileIndex((top - pad - layout.world.top) * scale - 1f, rows);
+        out[2] = tileIndex((right + pad - layout.world.left) * scale + 1f, columns);
+        out[3] = tileIndex((bottom + pad - layout.world.top) * scale + 1f, rows);
+    }
+
+    private int tileIndex(float pixel, int count) { return Math.max(0, Math.min(count - 1, (int) Math.floor(pixel / tileSize))); }
+
+    // Feeds one band of tiles (left to right, all equally tall) to the encoder row by row
+    private static void writeBand(@NonNull PngStreamWriter png, @NonNull Bitmap[] tiles, @NonNull int[] rowPixels) throws IOException {
+        int rows = tiles[0].getHeight();
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0, t = 0; t < tiles.length; x += tiles[t].getWidth(), t++) {
+                tiles[t].getPixels(rowPixels, x, rowPixels.length, 0, y, tiles[t].getWidth(), 1); // Unpremultiplied ARGB
+            }
+            png.writeRow(rowPixels);
+        }
+    }
+
+    private static void recycleDone(List<Future<Bitmap>> band) {
+        if (band == null) return;
+        for (Future<Bitmap> future : band) {
+            if (!future.isDone() || future.isCancelled()) continue;
+            try { future.get().recycle(); } catch (Exception ignored) { } // Failed tiles have nothing to recycle
+        }
+    }
+
+    // --- SVG ---
+    @WorkerThread
+    public void exportSvg(@NonNull File file) throws IOException {
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"))) { exportSvg(out); }
+    }
+
+    /**
+     * Writes the graph as SVG in world units. Nodes with background drawables are written as the
+     * default rounded rect (drawables have no vector form here); icons are embedded once each as PNG.
+     */
+    @WorkerThread
+    public void exportSvg(@NonNull Writer writer) throws IOException {
+        final GraphPainter painter = style.copy();
+        painter.setScale(scale);
+        final Layout layout = measure(painter);
+        final PrintWriter out = new PrintWriter(writer);
+        final StringBuilder sb = new StringBuilder(256);
+        final float[] curve = new float[6], arrow = new float[6];
+        RectF world = layout.world;
+
+        out.print("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        sb.append("<svg xmlns=\"http://www.w3.org/2000/svg\" xmlns:xlink=\"http://www.w3.org/1999/xlink\" width=\"").append(layout.width)
+                .append("\" height=\"").append(layout.height).append("\" viewBox=\"");
+        num(sb, world.left).append(' '); num(sb, world.top).append(' '); num(sb, world.width()).append(' '); num(sb, world.height()).append("\">\n");
+        sb.append("<rect"); attr(sb, "x", world.left); attr(sb, "y", world.top); attr(sb, "width", world.width()); attr(sb, "height", world.height());
+        color(sb, "fill", backgroundColor).append("/>\n");
+        out.print(sb);
+
+        // Edges, then arrowheads on top, as in GraphPainter.drawRenderList()
+        sb.setLength(0);
+        sb.append("<g fill=\"none\" stroke-linecap=\"round\" stroke-linejoin=\"round\"");
+        color(sb, "stroke", painter.edgePaint.getColor()); attr(sb, "stroke-width", painter.getEdgeStrokeWidth()).append(">\n");
+        out.print(sb);
+        snapshot.forEachEdge(edge -> {
+            if (!ScenePreparer.edgeCurve(snapshot, storedEndpoints, edge, curve)) return;
+            sb.setLength(0);
+            sb.append("<path d=\"M"); num(sb, curve[0]).append(' '); num(sb, curve[1]).append(" Q"); num(sb, curve[2]).append(' '); num(sb, curve[3])
+                    .append(' '); num(sb, curve[4]).append(' '); num(sb, curve[5]).append('"');
+            if (edge.animated) sb.append(" stroke-dasharray=\"20 10\"");
+            out.print(sb.append("/>\n"));
+        });
+        out.print("</g>\n");
+        if (painter.drawArrowheads) {
+            sb.setLength(0);
+            out.print(color(sb.append("<g"), "fill", painter.edgePaint.getColor()).append(">\n"));
+            snapshot.forEachEdge(edge -> {
+                if (!ScenePreparer.edgeCurve(snapshot, storedEndpoints, edge, curve) || !ScenePreparer.arrowHead(curve, painter.getArrowSize(), arrow)) return;
+                sb.setLength(0);
+                sb.append("<path d=\"M"); num(sb, arrow[0]).append(' '); num(sb, arrow[1]).append(" L"); num(sb, arrow[2]).append(' '); num(sb, arrow[3])
+                        .append(" L"); num(sb, arrow[4]).append(' '); num(sb, arrow[5]).append(" Z\"/>\n");
+                out.print(sb);
+            });
+            out.print("</g>\n");
+        }
+
+        // Nodes, labels, then handles, each layer in stacking order
+        final List<NodeSnapshot> ordered = snapshot.getNodesInZOrder();
+        final float cornerRadius = painter.getCornerRadius();
+        final int iconSize = (int) Math.max(1, 25f * painter.density);
+        final Set<Integer> iconIds = new LinkedHashSet<>();
+        sb.setLength(0);
+        sb.append("<g"); color(sb, "fill", painter.nodeBgPaint.getColor()); color(sb, "stroke", painter.nodeBorderPaint.getColor());
+        attr(sb, "stroke-width", painter.nodeBorderPaint.getStrokeWidth()).append(">\n");
+        out.print(sb);
+        for (NodeSnapshot node : ordered) {
+            sb.setLength(0);
+            sb.append("<rect"); attr(sb, "x", node.getLeft()); attr(sb, "y", node.getTop()); attr(sb, "width", node.width); attr(sb, "height", node.height);
+            attr(sb, "rx", cornerRadius).append("/>\n");
+            if (node.shape == NodeShape.CUSTOM_DRAWABLE && node.customDrawableResId != null && node.customDrawableResId != 0) {
+                iconIds.add(node.customDrawableResId);
+                sb.append("<use xlink:href=\"#icon-").append(node.customDrawableResId).append('"');
+                attr(sb, "x", node.x - iconSize / 2f); attr(sb, "y", node.y - iconSize / 2f).append("/>\n");
+            }
+            out.print(sb);
+        }
+        out.print("</g>\n");
+
+        sb.setLength(0);
+        sb.append("<g text-anchor=\"middle\" font-family=\"sans-serif\""); color(sb, "fill", painter.textPaint.getColor());
+        attr(sb, "font-size", painter.textPaint.getTextSize()).append(">\n");
+        out.print(sb);
+        final float labelOffset = painter.getLabelMargin() - painter.textPaint.ascent();
+        for (NodeSnapshot node : ordered) {
+            sb.setLength(0);
+            sb.append("<text"); attr(sb, "x", node.x); attr(sb, "y", node.getBottom() + labelOffset).append('>');
+            escape(sb, node.label).append("</text>\n");
+            out.print(sb);
+        }
+        out.print("</g>\n");
+
+        final float radius = painter.getHandleRadius();
+        final boolean handleLabels = painter.prepareHandleLabels();
+        final float gap = painter.getHandleLabelGap();
+        final float ascent = painter.handleLabelPaint.ascent(), descent = painter.handleLabelPaint.descent();
+        final int inputColor = painter.handlePaintInput.getColor(), outputColor = painter.handlePaintOutput.getColor();
+        sb.setLength(0);
+        sb.append("<g"); color(sb, "stroke", painter.handleBorderPaint.getColor()); attr(sb, "stroke-width", painter.handleBorderPaint.getStrokeWidth()).append(">\n");
+        out.print(sb);
+        for (NodeSnapshot node : ordered) {
+            for (int i = 0; i < node.getHandleCount(); i++) {
+                sb.setLength(0);
+                sb.append("<circle"); attr(sb, "cx", node.getHandleWorldX(i)); attr(sb, "cy", node.getHandleWorldY(i)); attr(sb, "r", radius);
+                color(sb, "fill", node.getHandleType(i) == Handle.Type.INPUT ? inputColor : outputColor).append("/>\n");
+                out.print(sb);
+            }
+        }
+        out.print("</g>\n");
+        if (handleLabels) {
+            sb.setLength(0);
+            sb.append("<g font-family=\"sans-serif\" stroke=\"none\""); color(sb, "fill", painter.handleLabelPaint.getColor());
+            attr(sb, "font-size", painter.handleLabelPaint.getTextSize()).append(">\n");
+            out.print(sb);
+            for (NodeSnapshot node : ordered) {
+                for (int i = 0; i < node.getHandleCount(); i++) {
+                    String label = node.getHandleLabel(i);
+                    if (label == null) continue;
+                    float x = node.getHandleWorldX(i), y = node.getHandleWorldY(i);
+                    float centerBaseline = y - (ascent + descent) / 2f;
+                    sb.setLength(0);
+                    sb.append("<text");
+                    switch (node.getHandleSide(i)) { // Same placement as GraphPainter.drawHandleLabel()
+                        case LEFT: attr(sb, "x", x + gap); attr(sb, "y", centerBaseline); break;
+                        case RIGHT: attr(sb, "x", x - gap); attr(sb, "y", centerBaseline).append(" text-anchor=\"end\""); break;
+                        case TOP: attr(sb, "x", x); attr(sb, "y", y + gap - ascent).append(" text-anchor=\"middle\""); break;
+                        default: attr(sb, "x", x); attr(sb, "y", y - gap - descent).append(" text-anchor=\"middle\""); break;
+                    }
+                    out.print(escape(sb.append('>'), label).append("</text>\n"));
+                }
+            }
+            out.print("</g>\n");
+        }
+
+        // Icons are defined once, after their first use (forward references are valid SVG)
+        if (!iconIds.isEmpty()) {
+            out.print("<defs>\n");
+            for (int resId : iconIds) {
+                Bitmap icon = painter.loadAndCacheBitmap(resId, iconSize, iconSize);
+                if (icon == null) continue;
+                ByteArrayOutputStream png = new ByteArrayOutputStream();
+                if (!icon.compress(Bitmap.CompressFormat.PNG, 100, png)) { Log.w(TAG, "Could not encode icon " + resId); continue; }
+                sb.setLength(0);
+                sb.append("<image id=\"icon-").append(resId).append("\" width=\"").append(iconSize).append("\" height=\"").append(iconSize)
+                        .append("\" xlink:href=\"data:image/png;base64,").append(Base64.encodeToString(png.toByteArray(), Base64.NO_WRAP)).append("\"/>\n");
+                out.print(sb);
+            }
+            out.print("</defs>\n");
+        }
+        out.print("</svg>\n");
+        out.flush();
+        if (out.checkError()) throw new IOException("SVG export failed");
+    }
+
+    // --- SVG Formatting (package-private for tests) ---
+    @NonNull static StringBuilder attr(@NonNull StringBuilder sb, @NonNull String name, float value) {
+        return num(sb.append(' ').append(name).append("=\""), value).append('"');
+    }
+
+    @NonNull static StringBuilder color(@NonNull StringBuilder sb, @NonNull String name, @ColorInt int color) {
+        sb.append(' ').append(name).append("=\"#");
+        String hex = Integer.toHexString(color & 0xFFFFFF);
+        for (int i = hex.length(); i < 6; i++) sb.append('0');
+        sb.append(hex).append('"');
+        int alpha = color >>> 24;
+        if (alpha < 255) num(sb.append(' ').append(name).append("-opacity=\""), alpha / 255f).append('"');
+        return sb;
+    }
+
+    // Two decimals are far below a pixel at any sensible export scale and keep the file small
+    @NonNull static StringBuilder num(@NonNull StringBuilder sb, float value) {
+        long hundredths = Math.round(value * 100.0);
+        if (hundredths < 0) { sb.append('-'); hundredths = -hundredths; }
+        sb.append(hundredths / 100);
+        int fraction = (int) (hundredths % 100);
+        if (fraction != 0) { sb.append('.').append(fraction / 10); if (fraction % 10 != 0) sb.append(fraction % 10); }
+        return sb;
+    }
+
+    // Escapes markup and drops code points XML 1.0 does not allow at all (control characters, lone surrogates, U+FFFE/U+FFFF)
+    @NonNull static StringBuilder escape(@NonNull StringBuilder sb, @NonNull String text) {
+        for (int i = 0; i < text.length(); ) {
+            int c = text.codePointAt(i);
+            i += Character.charCount(c);
+            switch (c) {
+                case '&': sb.append("&amp;"); break;
+                case '<': sb.append("&lt;"); break;
+                case '>': sb.append("&gt;"); break;
+                case '"': sb.append("&quot;"); break;
+                default: if (isXmlChar(c)) sb.appendCodePoint(c); break;
+            }
+        }
+        return sb;
+    }
+
+    private static boolean isXmlChar(int c) {
+        return c == '\t' || c == '\n' || c == '\r' || (c >= 0x20 && c <= 0xD7FF) || (c >= 0xE000 && c <= 0xFFFD) || (c >= 0x10000 && c <= 0x10FFFF);
+    }
+
+    // --- Layout ---
+    /** Exported world rect, image size and how far any drawing reaches past node rects and curve hulls. */
+    private static final class Layout {
+        final RectF world; final int width, height; final float overhang;
+        Layout(@NonNull RectF world, int width, int height, float overhang) {
+            this.world = world; this.width = width; this.height = height; this.overhang = overhang;
+        }
+    }
+
+    @NonNull
+    private Layout measure(@NonNull final GraphPainter painter) {
+        final RectF bounds = new RectF();
+        final float[] curve = new float[6];
+        final float[] overhang = {painter.getEdgeStrokeWidth() + painter.getArrowSize()};
+        final float labelOffset = painter.getLabelMargin() - painter.textPaint.ascent();
+        final float labelBottom = labelOffset + painter.textPaint.descent();
+        final float radius = painter.getHandleRadius() + painter.handleBorderPaint.getStrokeWidth();
+        final boolean handleLabels = painter.prepareHandleLabels();
+        final float gap = painter.getHandleLabelGap();
+        final Paint textPaint = painter.textPaint, handleLabelPaint = painter.handleLabelPaint;
+
+        snapshot.forEachNode(node -> {
+            float labelHalfWidth = textPaint.measureText(node.label) / 2f;
+            float reach = Math.max(radius, Math.max(labelBottom, labelHalfWidth - node.width / 2f));
+            if (handleLabels) {
+                for (int i = 0; i < node.getHandleCount(); i++) {
+                    String label = node.getHandleLabel(i);
+                    if (label != null) reach = Math.max(reach, gap + handleLabelPaint.measureText(label) - node.width / 2f);
+                }
+            }
+            overhang[0] = Math.max(overhang[0], reach);
+            bounds.union(node.getLeft() - radius, node.getTop() - radius, node.getRight() + radius, node.getBottom() + radius);
+            bounds.union(node.x - labelHalfWidth, node.getBottom(), node.x + labelHalfWidth, node.getBottom() + labelBottom);
+        });
+        snapshot.forEachEdge(edge -> { // The curve lies inside the hull of its three control points
+            if (!ScenePreparer.edgeCurve(snapshot, storedEndpoints, edge, curve)) return;
+            bounds.union(Math.min(curve[0], Math.min(curve[2], curve[4])), Math.min(curve[1], Math.min(curve[3], curve[5])),
+                    Math.max(curve[0], Math.max(curve[2], curve[4])), Math.max(curve[1], Math.max(curve[3], curve[5])));
+        });
+        if (bounds.isEmpty()) bounds.set(0f, 0f, 1f, 1f);
+        bounds.inset(-paddingWorld, -paddingWorld);
+        int width = Math.max(1, (int) Math.ceil(bounds.width() * scale));
+        int height = Math.max(1, (int) Math.ceil(bounds.height() * scale));
+        return new Layout(bounds, width, height, overhang[0]);
+    }
+
+    // --- PNG Encoding ---
+    /**
+     * Minimal streaming PNG encoder (8-bit RGBA, non-interlaced). Rows are filtered and deflated
+     * as they arrive and flushed in fixed-size IDAT chunks, so no full image is ever held.
+     */
+    static final class PngStreamWriter {
+        private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+        private static final int CHUNK_SIZE = 64 * 1024;
+
+        private final OutputStream out;
+        private final int width, height;
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED); // Encoding is the serial part of the export
+        private final DeflaterOutputStream idat;
+        private final byte[] row;
+        private int rowsWritten = 0;
+
+        PngStreamWriter(@NonNull OutputStream out, int width, int height) throws IOException {
+            this.out = out; this.width = width; this.height = height;
+            this.row = new byte[1 + width * 4];
+            out.write(SIGNATURE);
+            byte[] header = new byte[13];
+            putInt(header, 0, width); putInt(header, 4, height);
+            header[8] = 8; header[9] = 6; // Bit depth 8, color type RGBA; compression, filter and interlace 0
+            writeChunk(out, "IHDR", header, header.length);
+            idat = new DeflaterOutputStream(new IdatOutputStream(out), deflater, CHUNK_SIZE);
+        }
+
+        /** Writes the next row, {@code width} unpremultiplied ARGB pixels. */
+        void writeRow(@NonNull int[] pixels) throws IOException {
+            if (rowsWritten == height) throw new IllegalStateException("All " + height + " rows already written");
+            // Filter type 1 (Sub): each byte minus the same channel of the pixel to its left
+            row[0] = 1;
+            int prev = 0;
+            for (int x = 0, o = 1; x < width; x++, o += 4) {
+                int p = pixels[x];
+                row[o] = (byte) ((p >> 16) - (prev >> 16));
+                row[o + 1] = (byte) ((p >> 8) - (prev >> 8));
+                row[o + 2] = (byte) (p - prev);
+                row[o + 3] = (byte) ((p >>> 24) - (prev >>> 24));
+                prev = p;
+            }
+            idat.write(row);
+            rowsWritten++;
+        }
+
+        void finish() throws IOException {
+            if (rowsWritten != height) throw new IllegalStateException("Wrote " + rowsWritten + " of " + height + " rows");
+            idat.close(); // Flushes the last IDAT chunk but leaves the output open
+            writeChunk(out, "IEND", new byte[0], 0);
+            out.flush();
+        }
+
+        void release() { deflater.end(); }
+
+        // Buffers deflated data into IDAT chunks
+        private static final class IdatOutputStream extends OutputStream {
+            private final OutputStream out;
+            private final byte[] buffer = new byte[CHUNK_SIZE];
+            private int count = 0;
+
+            IdatOutputStream(@NonNull OutputStream out) { this.out = out; }
+
+            @Override public void write(int b) throws IOException {
+                if (count == buffer.length) flushChunk();
+                buffer[count++] = (byte) b;
+            }
+
+            @Override public void write(@NonNull byte[] b, int off, int len) throws IOException {
+                while (len > 0) {
+                    if (count == buffer.length) flushChunk();
+                    int n = Math.min(len, buffer.length - count);
+                    System.arraycopy(b, off, buffer, count, n);
+                    count += n; off += n; len -= n;
+                }
+            }
+
+            @Override public void close() throws IOException { flushChunk(); }
+
+            private void flushChunk() throws IOException {
+                if (count == 0) return;
+                writeChunk(out, "IDAT", buffer, count);
+                count = 0;
+            }
+        }
+
+        private static void writeChunk(@NonNull OutputStream out, @NonNull String type, @NonNull byte[] data, int length) throws IOException {
+            byte[] word = new byte[4];
+            byte[] typeBytes = {(byte) type.charAt(0), (byte) type.charAt(1), (byte) type.charAt(2), (byte) type.charAt(3)};
+            putInt(word, 0, length); out.write(word);
+            out.write(typeBytes);
+            out.write(data, 0, length);
+            CRC32 crc = new CRC32();
+            crc.update(typeBytes); crc.update(data, 0, length);
+            putInt(word, 0, (int) crc.getValue()); out.write(word);
+        }
+
+        private static void putInt(@NonNull byte[] b, int offset, int value) {
+            b[offset] = (byte) (value >>> 24); b[offset + 1] = (byte) (value >>> 16); b[offset + 2] = (byte) (value >>> 8); b[offset + 3] = (byte) value;
+        }
+    }
+}
@@ -0,0 +1,472 @@
+package com.anass.halak.reactflow;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.AttributeSet;
+import android.util.Log;
+import android.view.MotionEvent;
+import android.view.View;
+
+import androidx.annotation.ColorInt;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.UiThread;
+import androidx.annotation.WorkerThread;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optional minimap for a {@link ReactFlowCanvasView}. Place it over the canvas in your layout
+ * (like the zoom buttons) and call {@link #setCanvasView}. The whole graph extent is kept in a
+ * low-resolution bitmap that a background thread updates incrementally: only the regions around
+ * added, moved or removed nodes (and their edges) are repainted. Being a separate View, the
+ * minimap invalidates only itself, never the main graph. Tap or drag to move the viewport.
+ */
+public class FlowMinimapView extends View {
+    private static final String TAG = "FlowMinimapView";
+    private static final int MAX_DIRTY_RECTS = 32; // Beyond this, dirty regions are merged into one
+    private static final int GRID_CELL_PIXELS = 8; // Cell size of the renderer's spatial grids, in bitmap pixels
+
+    // --- State ---
+    @Nullable private ReactFlowCanvasView canvasView;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ThreadPoolExecutor worker = new ThreadPoolExecutor(1, 1, 5, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+        Thread t = new Thread(r, "ReactFlow-Minimap");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Renderer renderer = new Renderer(); // Touched only on the worker thread
+    private int resolution = 256; // Long side of the cache bitmap in pixels
+
+    // Double-buffered frames: UI draws 'front', the worker fills 'back'
+    @Nullable private Frame front = null;
+    @Nullable private Bitmap back = null;
+    private boolean busy = false;
+    @Nullable private Update pendingUpdate = null;
+
+    // --- Drawing ---
+    private final Paint bitmapPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint viewportPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint borderPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final RectF contentRect = new RectF(); // Where the frame is drawn inside this view
+    private final RectF visibleWorld = new RectF();
+    private final RectF lastVisibleWorld = new RectF();
+    @ColorInt private int backgroundColor = Color.parseColor("#99000000");
+
+    public FlowMinimapView(Context context) { super(context); init(); }
+    public FlowMinimapView(Context context, @Nullable AttributeSet attrs) { super(context, attrs); init(); }
+    public FlowMinimapView(Context context, @Nullable AttributeSet attrs, int defStyleAttr) { super(context, attrs, defStyleAttr); init(); }
+
+    private void init() {
+        worker.allowCoreThreadTimeOut(true); // No idle thread kept around while the graph is static
+        viewportPaint.setStyle(Paint.Style.STROKE); viewportPaint.setStrokeWidth(2f * getResources().getDisplayMetrics().density);
+        borderPaint.setStyle(Paint.Style.STROKE); borderPaint.setStrokeWidth(1f * getResources().getDisplayMetrics().density);
+        setViewportColor(Color.parseColor("#FF9800"));
+        setBorderColor(Color.parseColor("#CFD8DC"));
+        setNodeColor(Color.parseColor("#FAFAFA"));
+        setEdgeColor(Color.parseColor("#B0BEC5"));
+    }
+
+    // --- Public API ---
+    @UiThread public void setCanvasView(@Nullable ReactFlowCanvasView view) {
+        if (canvasView == view) return;
+        if (canvasView != null) canvasView.setMinimapView(null);
+        canvasView = view;
+        if (view != null) view.setMinimapView(this); // Triggers a full rebuild
+        invalidate();
+    }
+
+    public void setResolution(int longSidePixels) { this.resolution = Math.max(32, Math.min(2048, longSidePixels)); rebuild(); }
+    public void setNodeColor(@ColorInt int color) { final int c = color; worker.execute(() -> renderer.nodePaint.setColor(c)); rebuild(); }
+    public void setEdgeColor(@ColorInt int color) { final int c = color; worker.execute(() -> renderer.edgePaint.setColor(c)); rebuild(); }
+    public void setViewportColor(@ColorInt int color) { viewportPaint.setColor(color); invalidate(); }
+    public void setBorderColor(@ColorInt int color) { borderPaint.setColor(color); invalidate(); }
+    public void setMinimapBackgroundColor(@ColorInt int color) { backgroundColor = color; invalidate(); }
+
+    // --- Hooks from ReactFlowCanvasView (UI thread) ---
+    @UiThread void onGraphReplaced(@NonNull GraphSnapshot snapshot) { submit(new Update(null, snapshot, null)); }
+
+    @UiThread void onGraphChanged(@NonNull GraphSnapshot previous, @NonNull GraphSnapshot next, @NonNull List<GraphChange> changes) {
+        submit(new Update(previous, next, changes));
+    }
+
+    @UiThread void onViewportChanged() {
+        if (canvasView == null) return;
+        canvasView.getVisibleWorldRect(visibleWorld);
+        if (!visibleWorld.equals(lastVisibleWorld)) { lastVisibleWorld.set(visibleWorld); invalidate(); }
+    }
+
+    private void rebuild() {
+        if (canvasView != null) onGraphReplaced(canvasView.getSnapshot());
+    }
+
+    // --- Update Scheduling ---
+    // 'previous == null' means a full rebuild of 'next'
+    private static final class Update {
+        @Nullable final GraphSnapshot previous; @NonNull final GraphSnapshot next; @Nullable final List<GraphChange> changes;
+        Update(@Nullable GraphSnapshot previous, @NonNull GraphSnapshot next, @Nullable List<GraphChange> changes) {
+            this.previous = previous; this.next = next; this.changes = changes;
+        }
+        // Folds a later update into this one (keeps the oldest 'previous')
+        @NonNull Update then(@NonNull Update later) {
+            if (previous == null || later.previous == null) return new Update(null, later.next, null);
+            List<GraphChange> merged = new ArrayList<>(changes);
+            merged.addAll(later.changes);
+            return new Update(previous, later.next, merged);
+        }
+    }
+
+    private static final class Frame {
+        final Bitmap bitmap; final float worldLeft, worldTop, worldPerPixel;
+        Frame(Bitmap bitmap, float worldLeft, float worldTop, float worldPerPixel) {
+            this.bitmap = bitmap; this.worldLeft = worldLeft; this.worldTop = worldTop; this.worldPerPixel = worldPerPixel;
+        }
+    }
+
+    @UiThread private void submit(@NonNull Update update) {
+        if (busy) { pendingUpdate = (pendingUpdate == null) ? update : pendingUpdate.then(update); return; }
+        busy = true;
+        final Bitmap target = back; back = null;
+        final int res = resolution;
+        worker.execute(() -> {
+            try {
+                if (update.previous == null) renderer.rebuild(update.next, res);
+                else renderer.repaint(update.next, update.changes, res);
+                final Frame frame = renderer.publish(target);
+                mainHandler.post(() -> onFrameReady(frame));
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Minimap update failed", e);
+                renderer.work = null; // Forces a full rebuild next time
+                mainHandler.post(() -> { busy = false; back = target; });
+            }
+        });
+    }
+
+    @UiThread private void onFrameReady(@NonNull Frame frame) {
+        busy = false;
+        back = (front != null) ? front.bitmap : null;
+        front = frame;
+        if (pendingUpdate != null) { Update next = pendingUpdate; pendingUpdate = null; submit(next); }
+        invalidate(); // Only this view
+    }
+
+    // --- Drawing ---
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        canvas.drawColor(backgroundColor);
+        Frame frame = front;
+        if (frame == null) return;
+        layoutContentRect(frame);
+        canvas.drawBitmap(frame.bitmap, null, contentRect, bitmapPaint);
+        if (canvasView != null) {
+            float s = contentRect.width() / (frame.bitmap.getWidth() * frame.worldPerPixel); // View px per world unit
+            float l = contentRect.left + (lastVisibleWorld.left - frame.worldLeft) * s, t = contentRect.top + (lastVisibleWorld.top - frame.worldTop) * s;
+            float r = contentRect.left + (lastVisibleWorld.right - frame.worldLeft) * s, b = contentRect.top + (lastVisibleWorld.bottom - frame.worldTop) * s;
+            canvas.save();
+            canvas.clipRect(0, 0, getWidth(), getHeight());
+            canvas.drawRect(l, t, r, b, viewportPaint);
+            canvas.restore();
+        }
+        canvas.drawRect(0, 0, getWidth(), getHeight(), borderPaint);
+    }
+
+    // Fits the frame into the view, preserving aspect ratio
+    private void layoutContentRect(@NonNull Frame frame) {
+        float bw = frame.bitmap.getWidth(), bh = frame.bitmap.getHeight();
+        float scale = Math.min(getWidth() / bw, getHeight() / bh);
+        float w = bw * scale, h = bh * scale;
+        contentRect.set((getWidth() - w) / 2f, (getHeight() - h) / 2f, (getWidth() + w) / 2f, (getHeight() + h) / 2f);
+    }
+
+    // --- Touch: tap or drag to move the main viewport ---
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        Frame frame = front;
+        if (canvasView == null || frame == null) return false;
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN: case MotionEvent.ACTION_MOVE: case MotionEvent.ACTION_UP:
+                layoutContentRect(frame);
+                float s = contentRect.width() / (frame.bitmap.getWidth() * frame.worldPerPixel);
+                float worldX = frame.worldLeft + (event.getX() - contentRect.left) / s;
+                float worldY = frame.worldTop + (event.getY() - contentRect.top) / s;
+                canvasView.centerOnWorldPoint(worldX, worldY);
+                if (event.getActionMasked() == MotionEvent.ACTION_UP) performClick();
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    @Override public boolean performClick() { return super.performClick(); }
+
+    // --- Worker-side Renderer ---
+    // Uniform grid of element ids over the cached extent, so a dirty region only visits what overlaps it
+    private static final class Grid {
+        private final Map<Long, Set<String>> cells = new HashMap<>();
+        private float cellSize = 1f;
+
+        void reset(float cellSize) { cells.clear(); this.cellSize = cellSize; }
+
+        void updateRect(@NonNull String id, @NonNull RectF r, boolean add) {
+            int maxCx = index(r.right), maxCy = index(r.bottom);
+            for (int cx = index(r.left); cx <= maxCx; cx++) for (int cy = index(r.top); cy <= maxCy; cy++) update(cx, cy, id, add);
+        }
+
+        // Every cell the segment crosses (grid traversal), not its whole bounding box
+        void updateLine(@NonNull String id, @NonNull float[] p, boolean add) {
+            int cx = index(p[0]), cy = index(p[1]), ex = index(p[2]), ey = index(p[3]);
+            int stepX = Integer.signum(ex - cx), stepY = Integer.signum(ey - cy);
+            float dx = p[2] - p[0], dy = p[3] - p[1];
+            float tMaxX = stepX == 0 ? Float.POSITIVE_INFINITY : ((cx + (stepX > 0 ? 1 : 0)) * cellSize - p[0]) / dx;
+            float tMaxY = stepY == 0 ? Float.POSITIVE_INFINITY : ((cy + (stepY > 0 ? 1 : 0)) * cellSize - p[1]) / dy;
+            float tDeltaX = stepX == 0 ? 0f : cellSize / Math.abs(dx), tDeltaY = stepY == 0 ? 0f : cellSize / Math.abs(dy);
+            update(cx, cy, id, add);
+            while (cx != ex || cy != ey) {
+                if (cy == ey || (cx != ex && tMaxX < tMaxY)) { cx += stepX; tMaxX += tDeltaX; } else { cy += stepY; tMaxY += tDeltaY; }
+                update(cx, cy, id, add);
+            }
+        }
+
+        void query(@NonNull RectF r, @NonNull Set<String> out) {
+            int maxCx = index(r.right), maxCy = index(r.bottom);
+            for (int cx = index(r.left); cx <= maxCx; cx++) {
+                for (int cy = index(r.top); cy <= maxCy; cy++) {
+                    Set<String> cell = cells.get(key(cx, cy));
+                    if (cell != null) out.addAll(cell);
+                }
+            }
+        }
+
+        private void update(int cx, int cy, @NonNull String id, boolean add) {
+            long key = key(cx, cy);
+            Set<String> cell = cells.get(key);
+            if (add) {
+                if (cell == null) { cell = new HashSet<>(); cells.put(key, cell); }
+                cell.add(id);
+            } else if (cell != null && cell.remove(id) && cell.isEmpty()) {
+                cells.remove(key);
+            }
+        }
+
+        private int index(float world) { return (int) Math.floor(world / cellSize); }
+        private static long key(int cx, int cy) { return ((long) cx << 32) | (cy & 0xffffffffL); }
+    }
+
+    private static final class Renderer {
+        final Paint nodePaint = new Paint(); final Paint edgePaint = new Paint();
+        final Canvas canvas = new Canvas();
+        final RectF extent = new RectF(); // World area covered by the bitmap
+        final RectF tmp = new RectF();
+        final float[] endpoints = new float[4];
+        @Nullable Bitmap work;
+        float worldPerPixel = 1f;
+
+        // What the bitmap currently shows, indexed for dirty-region redraws
+        final Map<String, RectF> nodeBounds = new HashMap<>();
+        final Map<String, Edge> edgesById = new HashMap<>();
+        final Map<String, float[]> edgeLines = new HashMap<>(); // Only edges with both endpoints present
+        final Map<String, Set<String>> edgesByNode = new HashMap<>();
+        final Grid nodeGrid = new Grid(), edgeGrid = new Grid();
+        final Set<String> hits = new HashSet<>();
+
+        Renderer() {
+            nodePaint.setStyle(Paint.Style.FILL);
+            edgePaint.setStyle(Paint.Style.STROKE);
+        }
+
+        @WorkerThread void rebuild(@NonNull GraphSnapshot snapshot, int resolution) {
+            final RectF bounds = new RectF();
+            final boolean[] any = {false};
+            snapshot.forEachNode(n -> {
+                if (!any[0]) { bounds.set(n.getLeft(), n.getTop(), n.getRight(), n.getBottom()); any[0] = true; }
+                else bounds.union(n.getLeft(), n.getTop(), n.getRight(), n.getBottom());
+            });
+            if (!any[0]) bounds.set(0, 0, 1000, 1000);
+            float pad = Math.max(bounds.width(), bounds.height()) * 0.15f + 50f; // Headroom so small moves stay incremental
+            extent.set(bounds.left - pad, bounds.top - pad, bounds.right + pad, bounds.bottom + pad);
+            worldPerPixel = Math.max(extent.width(), extent.height()) / resolution;
+            int w = Math.max(1, (int) Math.ceil(extent.width() / worldPerPixel)), h = Math.max(1, (int) Math.ceil(extent.height() / worldPerPixel));
+            if (work == null || work.getWidth() != w || work.getHeight() != h) {
+                if (work != null) work.recycle();
+                work = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+                canvas.setBitmap(work);
+            }
+            nodeBounds.clear(); edgesById.clear(); edgeLines.clear(); edgesByNode.clear();
+            nodeGrid.reset(worldPerPixel * GRID_CELL_PIXELS); edgeGrid.reset(worldPerPixel * GRID_CELL_PIXELS);
+            snapshot.forEachNode(this::putNode);
+            snapshot.forEachEdge(e -> putEdge(snapshot, e));
+            work.eraseColor(Color.TRANSPARENT);
+            tmp.set(extent);
+            drawRegion(tmp);
+        }
+
+        @WorkerThread void repaint(@NonNull GraphSnapshot next, @NonNull List<GraphChange> changes, int resolution) {
+            if (work == null) { rebuild(next, resolution); return; }
+            List<RectF> dirty = new ArrayList<>();
+            Set<String> touchedEdges = new HashSet<>();
+            for (GraphChange change : changes) {
+                switch (change.type) {
+                    case NODE_ADDED: case NODE_MOVED: case NODE_REMOVED: case NODE_HANDLES_CHANGED: {
+                        NodeSnapshot after = next.getNode(change.id);
+                        if (after != null && (!extent.contains(after.getLeft(), after.getTop()) || !extent.contains(after.getRight(), after.getBottom()))) {
+                            rebuild(next, resolution); // Graph outgrew the cached extent
+                            return;
+                        }
+                        RectF before = removeNode(change.id);
+                        if (before != null) dirty.add(before);
+                        if (after != null) dirty.add(new RectF(putNode(after)));
+                        Set<String> adjacent = edgesByNode.get(change.id); // Its edges, before and after
+                        if (adjacent != null) touchedEdges.addAll(adjacent);
+                        break;
+                    }
+                    case EDGE_ADDED: case EDGE_REMOVED:
+                        touchedEdges.add(change.id);
+                        break;
+                    default: // Labels and stacking order are not drawn in the minimap
+                        break;
+                }
+            }
+            for (String edgeId : touchedEdges) {
+                float[] before = removeEdge(edgeId);
+                if (before != null) dirty.add(lineBounds(before, new RectF()));
+                Edge edge = next.getEdge(edgeId);
+                float[] after = edge != null ? putEdge(next, edge) : null;
+                if (after != null) dirty.add(lineBounds(after, new RectF()));
+            }
+            if (dirty.size() > MAX_DIRTY_RECTS) {
+                RectF union = new RectF(dirty.get(0));
+                for (RectF r : dirty) union.union(r);
+                dirty.clear(); dirty.add(union);
+            }
+            Rect px = new Rect();
+            for (RectF world : dirty) {
+                world.inset(-2 * worldPerPixel, -2 * worldPerPixel); // Stroke/antialias bleed
+                px.set((int) Math.floor((world.left - extent.left) / worldPerPixel), (int) Math.floor((world.top - extent.top) / worldPerPixel),
+                        (int) Math.ceil((world.right - extent.left) / worldPerPixel), (int) Math.ceil((world.bottom - extent.top) / worldPerPixel));
+                canvas.save();
+                canvas.clipRect(px.left, px.top, px.right, px.bottom);
+                canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+                // Redraw everything overlapping the pixel-aligned region
+                world.set(extent.left + px.left * worldPerPixel, extent.top + px.top * worldPerPixel,
+                        extent.left + px.right * worldPerPixel, extent.top + px.bottom * worldPerPixel);
+                drawRegion(world);
+                canvas.restore();
+            }
+        }
+
+        // Draws every indexed edge and node intersecting 'world' (canvas clip limits the pixels touched)
+        @WorkerThread private void drawRegion(@NonNull RectF world) {
+            canvas.save();
+            canvas.scale(1f / worldPerPixel, 1f / worldPerPixel);
+            canvas.translate(-extent.left, -extent.top);
+            edgePaint.setStrokeWidth(worldPerPixel);
+            RectF bounds = new RectF();
+            hits.clear();
+            edgeGrid.query(world, hits);
+            for (String edgeId : hits) {
+                float[] p = edgeLines.get(edgeId);
+                if (RectF.intersects(lineBounds(p, bounds), world)) canvas.drawLine(p[0], p[1], p[2], p[3], edgePaint);
+            }
+            hits.clear();
+            nodeGrid.query(world, hits);
+            for (String nodeId : hits) {
+                RectF r = nodeBounds.get(nodeId);
+                if (RectF.intersects(r, world)) canvas.drawRect(r, nodePaint);
+            }
+            hits.clear();
+            canvas.restore();
+        }
+
+        // --- Index Maintenance ---
+        @NonNull private RectF putNode(@NonNull NodeSnapshot n) {
+            final float minSize = worldPerPixel; // Keep tiny nodes visible as at least one pixel
+            RectF r = new RectF(n.getLeft(), n.getTop(), Math.max(n.getRight(), n.getLeft() + minSize), Math.max(n.getBottom(), n.getTop() + minSize));
+            RectF old = nodeBounds.put(n.id, r);
+            if (old != null) nodeGrid.updateRect(n.id, old, false);
+            nodeGrid.updateRect(n.id, r, true);
+            return r;
+        }
+
+        @Nullable private RectF removeNode(@NonNull String nodeId) {
+            RectF r = nodeBounds.remove(nodeId);
+            if (r != null) nodeGrid.updateRect(nodeId, r, false);
+            return r;
+        }
+
+        // Indexes the edge (adjacency even when an endpoint is missing, so it reappears with the node); returns its line or null
+        @Nullable private float[] putEdge(@NonNull GraphSnapshot snapshot, @NonNull Edge e) {
+            edgesById.put(e.id, e);
+            adjacency(e.sourceNodeId).add(e.id); adjacency(e.targetNodeId).add(e.id);
+            if (!edgeBounds(snapshot, e, tmp)) return null;
+            float[] line = endpoints.clone();
+            edgeLines.put(e.id, line);
+            edgeGrid.updateLine(e.id, line, true);
+            return line;
+        }
+
+        @Nullable private float[] removeEdge(@NonNull String edgeId) {
+            Edge e = edgesById.remove(edgeId);
+            if (e == null) return null;
+            removeAdjacency(e.sourceNodeId, edgeId); removeAdjacency(e.targetNodeId, edgeId);
+            float[] line = edgeLines.remove(edgeId);
+            if (line != null) edgeGrid.updateLine(edgeId, line, false);
+            return line;
+        }
+
+        @NonNull private Set<String> adjacency(@NonNull String nodeId) {
+            Set<String> set = edgesByNode.get(nodeId);
+            if (set == null) { set = new HashSet<>(); edgesByNode.put(nodeId, set); }
+            return set;
+        }
+
+        private void removeAdjacency(@NonNull String nodeId, @NonNull String edgeId) {
+            Set<String> set = edgesByNode.get(nodeId);
+            if (set != null && set.remove(edgeId) && set.isEmpty()) edgesByNode.remove(nodeId);
+        }
+
+        @NonNull private static RectF lineBounds(@NonNull float[] p, @NonNull RectF out) {
+            out.set(Math.min(p[0], p[2]), Math.min(p[1], p[3]), Math.max(p[0], p[2]), Math.max(p[1], p[3]));
+            return out;
+        }
+
+        // Straight-line approximation between the edge's handles; also leaves them in 'endpoints'
+        private boolean edgeBounds(@NonNull GraphSnapshot snapshot, @NonNull Edge e, @NonNull RectF out) {
+            NodeSnapshot s = snapshot.getNode(e.sourceNodeId), t = snapshot.getNode(e.targetNodeId);
+            if (s == null || t == null) return false;
+            int si = s.indexOfHandle(e.sourceHandleId), ti = t.indexOfHandle(e.targetHandleId);
+            endpoints[0] = si >= 0 ? s.getHandleWorldX(si) : s.x; endpoints[1] = si >= 0 ? s.getHandleWorldY(si) : s.y;
+            endpoints[2] = ti >= 0 ? t.getHandleWorldX(ti) : t.x; endpoints[3] = ti >= 0 ? t.getHandleWorldY(ti) : t.y;
+            out.set(Math.min(endpoints[0], endpoints[2]), Math.min(endpoints[1], endpoints[3]), Math.max(endpoints[0], endpoints[2]), Math.max(endpoints[1], endpoints[3]));
+            return true;
+        }
+
+        // Copies the work bitmap into the hand-over buffer (reused when the size still matches)
+        @WorkerThread @NonNull Frame publish(@Nullable Bitmap target) {
+            Bitmap w = work;
+            if (target == null || target.getWidth() != w.getWidth() || target.getHeight() != w.getHeight()) {
+                target = Bitmap.createBitmap(w.getWidth(), w.getHeight(), Bitmap.Config.ARGB_8888);
+            }
+            Canvas c = new Canvas(target);
+            c.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+            c.drawBitmap(w, 0, 0, null);
+            return new Frame(target, extent.left, extent.top, worldPerPixel);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.anass.halak.reactflow;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * A single typed delta emitted by {@link ReactFlowCanvasView.GraphChangeListener}.
+ * Position and label are captured when the change is recorded, so a batch can be
+ * persisted later without reading the (mutable) {@link Node} again.
+ */
+public class GraphChange {
+    public enum Type { NODE_ADDED, NODE_MOVED, NODE_REMOVED, NODE_RELABELLED, NODE_HANDLES_CHANGED, NODE_RAISED, EDGE_ADDED, EDGE_REMOVED }
+
+    @NonNull public final Type type;
+    @NonNull public final String id; // Node id or Edge id, depending on type
+    @Nullable public final Node node; // Set for NODE_* changes (null for NODE_REMOVED)
+    @Nullable public final Edge edge; // Set for EDGE_* changes
+    public final float x, y; // Node center at record time (NODE_ADDED / NODE_MOVED)
+    @Nullable public final String label; // Node label at record time (NODE_ADDED / NODE_RELABELLED)
+
+    private GraphChange(@NonNull Type type, @NonNull String id, @Nullable Node node, @Nullable Edge edge, float x, float y, @Nullable String label) {
+        this.type = type; this.id = id; this.node = node; this.edge = edge;
+        this.x = x; this.y = y; this.label = label;
+    }
+
+    static GraphChange nodeAdded(@NonNull Node node) { return new GraphChange(Type.NODE_ADDED, node.id, node, null, node.position.x, node.position.y, node.label); }
+    static GraphChange nodeMoved(@NonNull Node node) { return new GraphChange(Type.NODE_MOVED, node.id, node, null, node.position.x, node.position.y, null); }
+    static GraphChange nodeRelabelled(@NonNull Node node) { return new GraphChange(Type.NODE_RELABELLED, node.id, node, null, 0f, 0f, node.label); }
+    static GraphChange nodeHandlesChanged(@NonNull Node node) { return new GraphChange(Type.NODE_HANDLES_CHANGED, node.id, node, null, 0f, 0f, null); }
+    static GraphChange nodeRaised(@NonNull Node node) { return new GraphChange(Type.NODE_RAISED, node.id, node, null, 0f, 0f, null); } // Moved to the top of the stacking order
+    static GraphChange nodeRemoved(@NonNull String nodeId) { return new GraphChange(Type.NODE_REMOVED, nodeId, null, null, 0f, 0f, null); }
+    static GraphChange edgeAdded(@NonNull Edge edge) { return new GraphChange(Type.EDGE_ADDED, edge.id, null, edge, 0f, 0f, null); }
+    static GraphChange edgeRemoved(@NonNull Edge edge) { return new GraphChange(Type.EDGE_REMOVED, edge.id, null, edge, 0f, 0f, null); }
+
+    // Key used to coalesce repeated changes to the same element within one batch
+    @NonNull String coalesceKey() { return type.name() + ":" + id; }
+
+    @NonNull @Override public String toString() { return "GraphChange{" + type + " " + id + "}"; }
+}
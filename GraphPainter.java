@@ -0,0 +1,250 @@
+package com.anass.halak.reactflow;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.DashPathEffect;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.util.Log;
+import android.util.SparseArray;
+
+import androidx.annotation.DrawableRes;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.appcompat.content.res.AppCompatResources;
+import androidx.core.graphics.drawable.DrawableKt;
+
+/**
+ * Node, edge, label and handle drawing in world coordinates, shared by {@link ReactFlowCanvasView}
+ * and the headless {@link FlowExporter}. Holds the paints and the drawable caches, so it is not
+ * thread-safe: every thread drawing at the same time needs its own {@link #copy()}.
+ */
+final class GraphPainter {
+    private static final String TAG = "GraphPainter";
+    static final float HANDLE_VISUAL_RADIUS_BASE = 8f;
+    static final float HANDLE_LABEL_MIN_SCALE = 0.6f;
+    private static final float DEFAULT_ICON_SIZE_DP = 25f;
+    static final DashPathEffect ANIMATED_EDGE_DASH = new DashPathEffect(new float[]{20, 10}, 0);
+
+    final Paint nodeBgPaint, nodeBorderPaint, edgePaint, textPaint, arrowHeadPaint;
+    final Paint handlePaintInput, handlePaintOutput, handleBorderPaint, handleLabelPaint;
+    float nodeCornerRadiusDp = 10f;
+    float edgeStrokeWidth = 2f;
+    float arrowheadSize = 8f;
+    boolean drawArrowheads = true;
+    private float baseTextSize; // Pixels at scale 1; textPaint holds the scaled size
+
+    private final Context context;
+    final float density;
+    private final SparseArray<Bitmap> bitmapCache = new SparseArray<>(); // For Icons
+    private final SparseArray<Drawable.ConstantState> bgDrawableCache = new SparseArray<>();
+    private final Path path = new Path();
+    private final RectF bounds = new RectF();
+    private float scaleFactor = 1f;
+    private float handleLabelAscent, handleLabelDescent;
+
+    GraphPainter(@NonNull Context context) {
+        this.context = context;
+        this.density = context.getResources().getDisplayMetrics().density;
+        nodeBgPaint = new Paint(); nodeBgPaint.setStyle(Paint.Style.FILL); nodeBgPaint.setAntiAlias(true);
+        nodeBorderPaint = new Paint(); nodeBorderPaint.setStyle(Paint.Style.STROKE); nodeBorderPaint.setAntiAlias(true);
+        edgePaint = new Paint(); edgePaint.setStyle(Paint.Style.STROKE); edgePaint.setAntiAlias(true); edgePaint.setStrokeJoin(Paint.Join.ROUND); edgePaint.setStrokeCap(Paint.Cap.ROUND);
+        textPaint = new Paint(); textPaint.setTextAlign(Paint.Align.CENTER); textPaint.setAntiAlias(true);
+        arrowHeadPaint = new Paint(); arrowHeadPaint.setStyle(Paint.Style.FILL); arrowHeadPaint.setAntiAlias(true);
+        handlePaintInput = new Paint(); handlePaintInput.setStyle(Paint.Style.FILL); handlePaintInput.setAntiAlias(true);
+        handlePaintOutput = new Paint(); handlePaintOutput.setStyle(Paint.Style.FILL); handlePaintOutput.setAntiAlias(true);
+        handleBorderPaint = new Paint(); handleBorderPaint.setStyle(Paint.Style.STROKE); handleBorderPaint.setAntiAlias(true);
+        handleLabelPaint = new Paint(); handleLabelPaint.setAntiAlias(true);
+
+        // Default style
+        nodeBgPaint.setColor(Color.parseColor("#FAFAFA")); // Lighter node background
+        nodeBorderPaint.setColor(Color.parseColor("#DDDDDD")); // Lighter border
+        textPaint.setColor(Color.parseColor("#333333")); // Darker text
+        setTextSize(12f * context.getResources().getDisplayMetrics().scaledDensity); // Default text size in SP
+        edgePaint.setColor(Color.parseColor("#B0BEC5")); // Lighter gray edges
+        arrowHeadPaint.setColor(edgePaint.getColor());
+        handlePaintInput.setColor(Color.parseColor("#90A4AE")); // Grayish input
+        handlePaintOutput.setColor(Color.parseColor("#90A4AE")); // Grayish output
+        handleBorderPaint.setColor(Color.parseColor("#CFD8DC")); // Light border for handles
+        handleLabelPaint.setColor(Color.parseColor("#607D8B")); // Muted port labels
+    }
+
+    /** Same style with its own paints and caches, for drawing on another thread. */
+    @NonNull GraphPainter copy() {
+        GraphPainter copy = new GraphPainter(context);
+        copy.nodeBgPaint.set(nodeBgPaint); copy.nodeBorderPaint.set(nodeBorderPaint);
+        copy.edgePaint.set(edgePaint); copy.textPaint.set(textPaint); copy.arrowHeadPaint.set(arrowHeadPaint);
+        copy.handlePaintInput.set(handlePaintInput); copy.handlePaintOutput.set(handlePaintOutput);
+        copy.handleBorderPaint.set(handleBorderPaint); copy.handleLabelPaint.set(handleLabelPaint);
+        copy.nodeCornerRadiusDp = nodeCornerRadiusDp; copy.edgeStrokeWidth = edgeStrokeWidth;
+        copy.arrowheadSize = arrowheadSize; copy.drawArrowheads = drawArrowheads; copy.baseTextSize = baseTextSize;
+        copy.setScale(scaleFactor);
+        return copy;
+    }
+
+    void setTextSize(float sizePixels) { baseTextSize = sizePixels; textPaint.setTextSize(sizePixels); }
+
+    // --- Scale ---
+    /** Sizes strokes and text for drawing at {@code scaleFactor} screen pixels per world unit. */
+    void setScale(float scaleFactor) {
+        this.scaleFactor = scaleFactor;
+        nodeBorderPaint.setStrokeWidth(Math.max(0.8f, Math.min(3f, 1.5f / scaleFactor)));
+        textPaint.setTextSize(Math.max(10f * density, Math.min(16f * density, baseTextSize / scaleFactor))); // Adjust SP range and scale
+        edgePaint.setStrokeWidth(getEdgeStrokeWidth());
+        handleBorderPaint.setStrokeWidth(Math.max(0.5f, Math.min(2f, 1.5f / scaleFactor)));
+    }
+
+    float getScale() { return scaleFactor; }
+    float getEdgeStrokeWidth() { return Math.max(1.0f, Math.min(6f, edgeStrokeWidth / scaleFactor)); }
+    float getArrowSize() { return arrowheadSize / scaleFactor; } // World units
+    float getLabelMargin() { return 6f * density / scaleFactor; } // World units
+    float getHandleRadius() { return Math.max(3f, Math.min(12f, HANDLE_VISUAL_RADIUS_BASE / scaleFactor * 1.3f)); }
+    float getCornerRadius() { return nodeCornerRadiusDp * density; }
+    boolean drawsHandleLabels() { return scaleFactor >= HANDLE_LABEL_MIN_SCALE; }
+
+    // --- Render List ---
+    /** Replays a prepared list; the node {@code skipNodeId} (being dragged, drawn live instead) is left out. */
+    void drawRenderList(@NonNull Canvas canvas, @NonNull RenderList list, @Nullable String skipNodeId) {
+        edgePaint.setStrokeWidth(getEdgeStrokeWidth());
+        arrowHeadPaint.setColor(edgePaint.getColor());
+        for (int i = 0; i < list.edgeCount; i++) {
+            float[] c = list.edgeCoords; int o = i * 6;
+            path.reset(); path.moveTo(c[o], c[o + 1]); path.quadTo(c[o + 2], c[o + 3], c[o + 4], c[o + 5]);
+            edgePaint.setPathEffect(list.edgePaints[i] == RenderList.PAINT_EDGE_ANIMATED ? ANIMATED_EDGE_DASH : null);
+            canvas.drawPath(path, edgePaint);
+        }
+        edgePaint.setPathEffect(null);
+        for (int i = 0; i < list.arrowCount; i++) {
+            float[] c = list.arrowCoords; int o = i * 6;
+            path.reset(); path.moveTo(c[o], c[o + 1]); path.lineTo(c[o + 2], c[o + 3]); path.lineTo(c[o + 4], c[o + 5]); path.close();
+            canvas.drawPath(path, arrowHeadPaint);
+        }
+
+        for (int i = 0; i < list.nodeCount; i++) {
+            if (list.nodeIds[i].equals(skipNodeId)) continue;
+            float[] r = list.nodeRects; int o = i * 4;
+            bounds.set(r[o], r[o + 1], r[o + 2], r[o + 3]);
+            drawNodeContent(canvas, list.nodeShapes[i], list.nodeIconResIds[i], list.nodeBgResIds[i], false, bounds);
+        }
+        for (int i = 0; i < list.labelCount; i++) {
+            if (list.nodeIds[i].equals(skipNodeId)) continue;
+            drawNodeLabel(canvas, list.labelTexts[i], list.labelCoords[i * 2], list.labelCoords[i * 2 + 1]);
+        }
+        float radius = getHandleRadius();
+        boolean drawHandleLabels = prepareHandleLabels();
+        for (int n = 0; n < list.nodeCount; n++) {
+            if (list.nodeIds[n].equals(skipNodeId)) continue;
+            for (int i = list.nodeHandleStarts[n], end = list.handleEnd(n); i < end; i++) {
+                float x = list.handleCoords[i * 2], y = list.handleCoords[i * 2 + 1];
+                drawHandle(canvas, x, y, radius, list.handlePaints[i] == RenderList.PAINT_HANDLE_INPUT);
+                if (drawHandleLabels && list.handleLabels[i] != null) drawHandleLabel(canvas, list.handleLabels[i], x, y, list.handleSides[i]);
+            }
+        }
+    }
+
+    // --- Nodes ---
+    // Resource ids of 0 mean "none"
+    void drawNodeContent(@NonNull Canvas canvas, @NonNull NodeShape shape, @DrawableRes int iconResId, @DrawableRes int backgroundResId, boolean highlighted, @NonNull RectF bounds) {
+        Drawable backgroundDrawable = backgroundResId != 0 ? loadAndCacheBackgroundDrawable(backgroundResId) : null;
+        float cornerRadius = getCornerRadius();
+
+        // Draw Drag Highlight (optional, under border)
+        if (highlighted) {
+            Paint dragHighlightPaint = new Paint(nodeBorderPaint);
+            dragHighlightPaint.setColor(Color.parseColor("#FFEB3B")); // Yellow highlight
+            dragHighlightPaint.setStrokeWidth(nodeBorderPaint.getStrokeWidth() * 2f);
+            canvas.drawRoundRect(bounds, cornerRadius, cornerRadius, dragHighlightPaint);
+        }
+
+        // Draw Background
+        if (backgroundDrawable != null) {
+            backgroundDrawable.setBounds((int) bounds.left, (int) bounds.top, (int) bounds.right, (int) bounds.bottom);
+            backgroundDrawable.draw(canvas); // A shape drawable with a stroke draws its own border
+        } else {
+            canvas.drawRoundRect(bounds, cornerRadius, cornerRadius, nodeBgPaint);
+            canvas.drawRoundRect(bounds, cornerRadius, cornerRadius, nodeBorderPaint);
+        }
+
+        // Draw Icon (if available), centered
+        if (shape == NodeShape.CUSTOM_DRAWABLE && iconResId != 0) {
+            int iconTargetSize = (int) Math.max(1, DEFAULT_ICON_SIZE_DP * density);
+            Bitmap bitmap = loadAndCacheBitmap(iconResId, iconTargetSize, iconTargetSize);
+            if (bitmap != null) {
+                canvas.drawBitmap(bitmap, bounds.centerX() - iconTargetSize / 2f, bounds.centerY() - iconTargetSize / 2f, null);
+            }
+        }
+    }
+
+    void drawNodeLabel(@NonNull Canvas canvas, @NonNull String label, float centerX, float baselineY) {
+        canvas.drawText(label, centerX, baselineY, textPaint);
+    }
+
+    // --- Handles ---
+    void drawHandle(@NonNull Canvas canvas, float x, float y, float radius, boolean input) {
+        canvas.drawCircle(x, y, radius, input ? handlePaintInput : handlePaintOutput);
+        canvas.drawCircle(x, y, radius, handleBorderPaint);
+    }
+
+    // Port labels are only legible when zoomed in; returns false when they should be skipped
+    boolean prepareHandleLabels() {
+        if (!drawsHandleLabels()) return false;
+        handleLabelPaint.setTextSize(getHandleLabelTextSize());
+        handleLabelAscent = handleLabelPaint.ascent(); handleLabelDescent = handleLabelPaint.descent();
+        return true;
+    }
+
+    float getHandleLabelTextSize() { return Math.max(8f * density, Math.min(12f * density, 10f * density / scaleFactor)); }
+    float getHandleLabelGap() { return getHandleRadius() + 3f * density / scaleFactor; }
+
+    // Draws a port label just inside the node, next to its handle
+    void drawHandleLabel(@NonNull Canvas canvas, @NonNull String label, float x, float y, @NonNull Handle.Side side) {
+        float gap = getHandleLabelGap();
+        float centerBaseline = y - (handleLabelAscent + handleLabelDescent) / 2f;
+        switch (side) {
+            case LEFT: handleLabelPaint.setTextAlign(Paint.Align.LEFT); canvas.drawText(label, x + gap, centerBaseline, handleLabelPaint); break;
+            case RIGHT: handleLabelPaint.setTextAlign(Paint.Align.RIGHT); canvas.drawText(label, x - gap, centerBaseline, handleLabelPaint); break;
+            case TOP: handleLabelPaint.setTextAlign(Paint.Align.CENTER); canvas.drawText(label, x, y + gap - handleLabelAscent, handleLabelPaint); break;
+            default: handleLabelPaint.setTextAlign(Paint.Align.CENTER); canvas.drawText(label, x, y - gap - handleLabelDescent, handleLabelPaint); break;
+        }
+    }
+
+    // --- Drawable Caches ---
+    @Nullable
+    private Drawable loadAndCacheBackgroundDrawable(int resId) {
+        Drawable.ConstantState constantState = bgDrawableCache.get(resId);
+        if (constantState == null) {
+            try {
+                // Use AppCompatResources to handle vector drawables correctly
+                Drawable drawable = AppCompatResources.getDrawable(context, resId);
+                if (drawable != null) constantState = drawable.getConstantState();
+                if (constantState == null) return null;
+                bgDrawableCache.put(resId, constantState);
+                Log.d(TAG, "Cached background drawable: " + resId);
+            } catch (Exception e) {
+                Log.e(TAG, "Error loading background drawable: " + resId, e);
+                return null;
+            }
+        }
+        // A fresh, mutated instance so setting bounds never affects other users of the state
+        return constantState.newDrawable(context.getResources()).mutate();
+    }
+
+    @Nullable
+    Bitmap loadAndCacheBitmap(int resId, int reqWidth, int reqHeight) {
+        Bitmap bitmap = bitmapCache.get(resId);
+        if (bitmap == null) {
+            try {
+                Drawable drawable = AppCompatResources.getDrawable(context, resId);
+                if (drawable != null) {
+                    bitmap = DrawableKt.toBitmap(drawable, reqWidth, reqHeight, null);
+                    if (bitmap != null) bitmapCache.put(resId, bitmap);
+                }
+            } catch (Exception e) { Log.e(TAG, "Error loading drawable: " + resId, e); }
+        }
+        return bitmap;
+    }
+}
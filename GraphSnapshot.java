@@ -0,0 +1,83 @@
+package com.anass.halak.reactflow;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable, versioned view of the graph published by {@link ReactFlowCanvasView} after each
+ * change batch. Successive snapshots share structure, so publishing costs O(changes) and
+ * background threads can keep reading an older snapshot without any locking.
+ */
+public final class GraphSnapshot {
+    public interface NodeVisitor { void visit(@NonNull NodeSnapshot node); }
+    public interface EdgeVisitor { void visit(@NonNull Edge edge); }
+
+    static final GraphSnapshot EMPTY = new GraphSnapshot(0L, PersistentMap.<String, NodeSnapshot>empty(), PersistentMap.<String, Edge>empty(), 0L);
+    /** Bottom-most node first, matching the view's node list order. */
+    static final Comparator<NodeSnapshot> Z_ORDER = (a, b) -> Long.compare(a.zOrder, b.zOrder);
+
+    public final long version;
+    private final PersistentMap<String, NodeSnapshot> nodes;
+    private final PersistentMap<String, Edge> edges;
+    private final long nextZOrder; // Handed to added or raised nodes, so they stack on top
+
+    private GraphSnapshot(long version, @NonNull PersistentMap<String, NodeSnapshot> nodes, @NonNull PersistentMap<String, Edge> edges, long nextZOrder) {
+        this.version = version; this.nodes = nodes; this.edges = edges; this.nextZOrder = nextZOrder;
+    }
+
+    // Full rebuild, used when the graph is (re)loaded wholesale
+    @NonNull static GraphSnapshot of(long version, @NonNull List<Node> nodeList, @NonNull List<Edge> edgeList) {
+        PersistentMap<String, NodeSnapshot> n = PersistentMap.empty();
+        long z = 0L;
+        for (Node node : nodeList) n = n.put(node.id, NodeSnapshot.of(node, z++));
+        PersistentMap<String, Edge> e = PersistentMap.empty();
+        for (Edge edge : edgeList) e = e.put(edge.id, edge);
+        return new GraphSnapshot(version, n, e, z);
+    }
+
+    // Incremental update from one flushed change batch; untouched branches are shared with this snapshot
+    @NonNull GraphSnapshot apply(long newVersion, @NonNull List<GraphChange> changes) {
+        PersistentMap<String, NodeSnapshot> n = nodes;
+        PersistentMap<String, Edge> e = edges;
+        long z = nextZOrder;
+        for (GraphChange change : changes) {
+            switch (change.type) {
+                case NODE_ADDED: case NODE_MOVED: case NODE_RELABELLED: case NODE_HANDLES_CHANGED: case NODE_RAISED: {
+                    if (change.node == null) break;
+                    NodeSnapshot previous = n.get(change.id);
+                    boolean onTop = previous == null || change.type == GraphChange.Type.NODE_RAISED;
+                    n = n.put(change.id, NodeSnapshot.of(change.node, onTop ? z++ : previous.zOrder));
+                    break;
+                }
+                case NODE_REMOVED: n = n.remove(change.id); break;
+                case EDGE_ADDED: if (change.edge != null) e = e.put(change.id, change.edge); break;
+                case EDGE_REMOVED: e = e.remove(change.id); break;
+            }
+        }
+        return new GraphSnapshot(newVersion, n, e, z);
+    }
+
+    public int getNodeCount() { return nodes.size(); }
+    public int getEdgeCount() { return edges.size(); }
+    @Nullable public NodeSnapshot getNode(@NonNull String nodeId) { return nodes.get(nodeId); }
+    @Nullable public Edge getEdge(@NonNull String edgeId) { return edges.get(edgeId); }
+    public void forEachNode(@NonNull NodeVisitor visitor) { nodes.forEach((id, node) -> visitor.visit(node)); } // Unordered
+
+    /** Visits nodes bottom-most first. Sorts on every call, so cull first where possible (see ScenePreparer). */
+    public void forEachNodeInZOrder(@NonNull NodeVisitor visitor) {
+        for (NodeSnapshot node : getNodesInZOrder()) visitor.visit(node);
+    }
+
+    @NonNull List<NodeSnapshot> getNodesInZOrder() {
+        List<NodeSnapshot> ordered = new ArrayList<>(nodes.size());
+        nodes.forEach((id, node) -> ordered.add(node));
+        Collections.sort(ordered, Z_ORDER);
+        return ordered;
+    }
+    public void forEachEdge(@NonNull EdgeVisitor visitor) { edges.forEach((id, edge) -> visitor.visit(edge)); }
+}
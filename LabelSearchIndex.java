@@ -0,0 +1,247 @@
+package com.anass.halak.reactflow;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Search index over node labels. Words are kept in a sorted map (a prefix trie in effect:
+ * all words starting with a prefix form one contiguous range) and every label is also
+ * broken into trigrams, so one- and two-letter queries match word starts and longer
+ * queries match anywhere in the label by scanning only the rarest trigram's postings.
+ * Removal is lazy: postings are filtered against the live label on read and compacted once
+ * stale entries outnumber live ones, so relabelling or deleting a node is O(1).
+ */
+final class LabelSearchIndex {
+    private static final int SCORE_EXACT = 4, SCORE_LABEL_PREFIX = 3, SCORE_WORD_PREFIX = 2, SCORE_SUBSTRING = 1;
+
+    private final NavigableMap<String, IntList> words = new TreeMap<>();
+    private final Map<Long, IntList> trigrams = new HashMap<>();
+    private final Map<String, Integer> slotsById = new HashMap<>();
+    private String[] slotIds = new String[64]; // null while free
+    private String[] slotLabels = new String[64]; // Original case, for display ordering
+    private String[] slotKeys = new String[64]; // Normalized (lower-case) labels
+    private int[] seenStamps = new int[64]; // De-duplicates postings within one query
+    private int stamp = 0;
+    private final IntList freeSlots = new IntList();
+    private int slotCount = 0;
+    private long livePostings = 0, stalePostings = 0;
+    @Nullable private List<Node> pendingRebuild = null;
+
+    // Incremental typing: a longer query only needs to re-check the previous query's matches
+    private long version = 0, cachedVersion = -1;
+    @Nullable private String cachedKey = null;
+    private final IntList cachedMatches = new IntList();
+
+    // --- Maintenance ---
+    /** Drops everything and re-indexes {@code nodes} lazily on the next query. */
+    void rebuild(@NonNull List<Node> nodes) {
+        words.clear(); trigrams.clear(); slotsById.clear(); freeSlots.clear();
+        Arrays.fill(slotIds, null); Arrays.fill(slotLabels, null); Arrays.fill(slotKeys, null);
+        slotCount = 0; livePostings = 0; stalePostings = 0;
+        pendingRebuild = nodes;
+        version++;
+    }
+
+    /** Adds a node or replaces its label. */
+    void put(@NonNull String nodeId, @NonNull String label) {
+        if (pendingRebuild != null) return;
+        Integer existing = slotsById.get(nodeId);
+        if (existing != null) {
+            if (slotLabels[existing].equals(label)) return;
+            remove(nodeId);
+        }
+        int slot = freeSlots.size() > 0 ? freeSlots.removeLast() : slotCount++;
+        if (slot == slotIds.length) {
+            int n = slot * 2;
+            slotIds = Arrays.copyOf(slotIds, n); slotLabels = Arrays.copyOf(slotLabels, n);
+            slotKeys = Arrays.copyOf(slotKeys, n); seenStamps = Arrays.copyOf(seenStamps, n);
+        }
+        String key = normalize(label);
+        slotIds[slot] = nodeId; slotLabels[slot] = label; slotKeys[slot] = key;
+        slotsById.put(nodeId, slot);
+        index(slot, key);
+        version++;
+    }
+
+    void remove(@NonNull String nodeId) {
+        if (pendingRebuild != null) return;
+        Integer slot = slotsById.remove(nodeId);
+        if (slot == null) return;
+        // Postings stay behind and are skipped on read (see isLive)
+        long postings = postingCount(slotKeys[slot]);
+        livePostings -= postings; stalePostings += postings;
+        slotIds[slot] = null; slotLabels[slot] = null; slotKeys[slot] = null;
+        freeSlots.add(slot);
+        version++;
+        if (stalePostings > livePostings && stalePostings > 4096) compact();
+    }
+
+    // --- Query ---
+    /** Ids of up to {@code limit} nodes matching {@code query}, best first. */
+    @NonNull List<String> search(@NonNull String query, int limit) {
+        flushPending();
+        String key = normalize(query.trim());
+        List<String> result = new ArrayList<>();
+        if (key.isEmpty() || limit <= 0) return result;
+
+        TopMatches top = new TopMatches(limit);
+        if (key.length() < 3) {
+            collectWordPrefixMatches(key, top); // Not cached: refinement only starts at three letters
+        } else {
+            IntList matches = new IntList();
+            if (cachedKey != null && cachedVersion == version && key.startsWith(cachedKey)) {
+                for (int i = 0; i < cachedMatches.size(); i++) {
+                    int slot = cachedMatches.get(i);
+                    if (slotKeys[slot].contains(key)) matches.add(slot);
+                }
+            } else {
+                collectSubstringMatches(key, matches);
+            }
+            cachedKey = key; cachedVersion = version;
+            cachedMatches.clear(); cachedMatches.addAll(matches);
+            for (int i = 0; i < matches.size(); i++) top.offer(matches.get(i), score(slotKeys[matches.get(i)], key));
+        }
+        for (int i = 0; i < top.count; i++) result.add(slotIds[top.slots[i]]);
+        return result;
+    }
+
+    // The best 'limit' matches in a small sorted buffer, so nothing is sorted or capped before ranking.
+    // A candidate worse than the current last one is rejected after a single comparison
+    private final class TopMatches {
+        final int[] slots, scores; int count;
+
+        TopMatches(int limit) { slots = new int[limit]; scores = new int[limit]; }
+
+        void offer(int slot, int score) {
+            int pos = count;
+            while (pos > 0 && better(slot, score, slots[pos - 1], scores[pos - 1])) pos--;
+            if (pos >= slots.length) return;
+            int moved = Math.min(count, slots.length - 1) - pos;
+            System.arraycopy(slots, pos, slots, pos + 1, moved); System.arraycopy(scores, pos, scores, pos + 1, moved);
+            slots[pos] = slot; scores[pos] = score;
+            if (count < slots.length) count++;
+        }
+    }
+
+    // Longer queries: scan the shortest trigram posting list and verify each candidate
+    private void collectSubstringMatches(@NonNull String key, @NonNull IntList out) {
+        IntList rarest = null;
+        for (int i = 0; i + 3 <= key.length(); i++) {
+            IntList postings = trigrams.get(trigramKey(key, i));
+            if (postings == null) return; // Some trigram occurs in no label: no match possible
+            if (rarest == null || postings.size() < rarest.size()) rarest = postings;
+        }
+        if (rarest == null) return;
+        stamp++;
+        for (int i = 0; i < rarest.size(); i++) {
+            int slot = rarest.get(i);
+            if (isLive(slot) && slotKeys[slot].contains(key)) out.add(slot);
+        }
+    }
+
+    // One- and two-letter queries: labels with a word starting with the query, ranked as they are found
+    private void collectWordPrefixMatches(@NonNull String key, @NonNull TopMatches out) {
+        stamp++;
+        for (IntList postings : words.subMap(key, true, key + Character.MAX_VALUE, false).values()) {
+            for (int i = 0; i < postings.size(); i++) {
+                int slot = postings.get(i);
+                if (!isLive(slot)) continue;
+                int score = score(slotKeys[slot], key);
+                if (score >= SCORE_WORD_PREFIX) out.offer(slot, score);
+            }
+        }
+    }
+
+    // Marks the slot as seen for this query; false for stale postings and duplicates
+    private boolean isLive(int slot) {
+        if (slotIds[slot] == null || seenStamps[slot] == stamp) return false;
+        seenStamps[slot] = stamp;
+        return true;
+    }
+
+    private static int score(@NonNull String label, @NonNull String key) {
+        if (label.equals(key)) return SCORE_EXACT;
+        if (label.startsWith(key)) return SCORE_LABEL_PREFIX;
+        for (int at = label.indexOf(key); at >= 0; at = label.indexOf(key, at + 1)) {
+            if (!Character.isLetterOrDigit(label.charAt(at - 1))) return SCORE_WORD_PREFIX;
+        }
+        return label.contains(key) ? SCORE_SUBSTRING : 0;
+    }
+
+    // Higher score, then shorter label, then alphabetical
+    private boolean better(int slot, int score, int otherSlot, int otherScore) {
+        if (score != otherScore) return score > otherScore;
+        int length = slotLabels[slot].length(), otherLength = slotLabels[otherSlot].length();
+        if (length != otherLength) return length < otherLength;
+        return slotLabels[slot].compareToIgnoreCase(slotLabels[otherSlot]) < 0;
+    }
+
+    // --- Indexing ---
+    private void flushPending() {
+        if (pendingRebuild == null) return;
+        List<Node> nodes = pendingRebuild; pendingRebuild = null;
+        for (Node node : nodes) put(node.id, node.label);
+    }
+
+    private void index(int slot, @NonNull String key) {
+        int start = -1;
+        for (int i = 0; i <= key.length(); i++) {
+            boolean wordChar = i < key.length() && Character.isLetterOrDigit(key.charAt(i));
+            if (wordChar && start < 0) start = i;
+            if (!wordChar && start >= 0) { postings(words, key.substring(start, i)).add(slot); livePostings++; start = -1; }
+        }
+        for (int i = 0; i + 3 <= key.length(); i++) { postings(trigrams, trigramKey(key, i)).add(slot); livePostings++; }
+    }
+
+    private static long postingCount(@NonNull String key) {
+        long count = Math.max(0, key.length() - 2);
+        int start = -1;
+        for (int i = 0; i <= key.length(); i++) {
+            boolean wordChar = i < key.length() && Character.isLetterOrDigit(key.charAt(i));
+            if (wordChar && start < 0) start = i;
+            if (!wordChar && start >= 0) { count++; start = -1; }
+        }
+        return count;
+    }
+
+    // Rebuilds every posting list from the live labels, dropping stale entries
+    private void compact() {
+        words.clear(); trigrams.clear(); livePostings = 0; stalePostings = 0;
+        for (int slot = 0; slot < slotCount; slot++) if (slotKeys[slot] != null) index(slot, slotKeys[slot]);
+    }
+
+    private static <K> IntList postings(@NonNull Map<K, IntList> map, @NonNull K key) {
+        IntList list = map.get(key);
+        if (list == null) { list = new IntList(); map.put(key, list); }
+        return list;
+    }
+
+    private static long trigramKey(@NonNull String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+
+    @NonNull private static String normalize(@NonNull String label) { return label.toLowerCase(Locale.ROOT); }
+
+    // Growable int array (avoids boxing in the posting lists)
+    private static final class IntList {
+        private int[] values = new int[4]; private int size;
+        int size() { return size; }
+        int get(int i) { return values[i]; }
+        void add(int v) { if (size == values.length) values = Arrays.copyOf(values, size * 2); values[size++] = v; }
+        void addAll(@NonNull IntList other) {
+            if (size + other.size > values.length) values = Arrays.copyOf(values, Math.max(size + other.size, values.length * 2));
+            System.arraycopy(other.values, 0, values, size, other.size); size += other.size;
+        }
+        int removeLast() { return values[--size]; }
+        void clear() { size = 0; }
+    }
+}
@@ -1,82 +1,239 @@
-// Node.java (Inner Class or Separate File)
-package com.anass.halak.reactflow;
-
-// ... (Keep imports: PointF, RectF, DrawableRes, NonNull, Nullable, List, ArrayList, Objects, UUID) ...
-import android.graphics.PointF;
-import android.graphics.RectF;
-import androidx.annotation.DrawableRes;
-import androidx.annotation.NonNull;
-import androidx.annotation.Nullable;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Objects;
-import java.util.UUID;
-
-public class Node {
-    @NonNull public final String id;
-    @NonNull public PointF position; // Center position in WORLD coordinates
-    @NonNull public RectF size; // Width/Height (relative to 0,0) - Set in constructor
-    @NonNull public final NodeShape shape;
-    @NonNull public String label;
-    @Nullable @DrawableRes public final Integer customDrawableResId; // Icon
-    @Nullable @DrawableRes public Integer backgroundDrawableResId;
-    @NonNull public final List<Handle> inputHandles = new ArrayList<>();
-    @NonNull public final List<Handle> outputHandles = new ArrayList<>();
-
-    // Primary constructor setting size explicitly
-    public Node(@NonNull String id,
-                @NonNull PointF position,
-                float width, // Accept specific width/height
-                float height,
-                @NonNull NodeShape shape,
-                @NonNull String label,
-                @Nullable @DrawableRes Integer customIconResId,
-                @Nullable @DrawableRes Integer backgroundResId,
-                int inputHandleCount,
-                int outputHandleCount) {
-        this.id = id;
-        this.position = position;
-        // --- Set size based on provided width/height ---
-        this.size = new RectF(0, 0, Math.max(30f, width), Math.max(30f, height)); // Ensure min size
-        // ---
-        this.shape = shape;
-        this.label = label;
-        this.customDrawableResId = customIconResId;
-        this.backgroundDrawableResId = backgroundResId;
-        setupHandles(inputHandleCount, outputHandleCount); // Setup handles based on counts and *final* size
-    }
-
-    // Constructor for simple rectangle (will use default size defined here)
-    public Node(@NonNull String id, @NonNull PointF position) {
-        // --- Use desired default 50x50 dp equivalent (converted later) ---
-        // Placeholder size, will be set properly if density is known,
-        // otherwise use approximate pixel value or set later.
-        // For now, use fixed pixels, updated in View's add methods.
-        this(id, position, 120f, 120f, // Approx 50dp, adjust as needed or set in addNode
-                NodeShape.RECTANGLE, "Node " + id, null, null, 1, 1);
-    }
-
-    // Setup handles based on counts and current *final* size
-    public void setupHandles(int inputCount, int outputCount) {
-        inputHandles.clear(); outputHandles.clear();
-        float handleRadius = Handle.DEFAULT_RADIUS;
-
-        // Position handles vertically centered on edges
-        if (inputCount > 0) {
-            // Simple case: center vertically for single input handle
-            float inputY = this.size.height() / 2f;
-            inputHandles.add(new Handle(this.id, Handle.Type.INPUT, new PointF(0, inputY), handleRadius));
-            // TODO: Add logic for multiple evenly spaced input handles if needed later
-        }
-        if (outputCount > 0) {
-            // Simple case: center vertically for single output handle
-            float outputY = this.size.height() / 2f;
-            outputHandles.add(new Handle(this.id, Handle.Type.OUTPUT, new PointF(this.size.width(), outputY), handleRadius));
-            // TODO: Add logic for multiple evenly spaced output handles if needed later
-        }
-    }
-    public RectF getBounds() { return new RectF(position.x - size.width() / 2, position.y - size.height() / 2, position.x + size.width() / 2, position.y + size.height() / 2); }
-    public List<Handle> getAllHandles() { List<Handle> all = new ArrayList<>(inputHandles); all.addAll(outputHandles); return all; }
-    @Override public boolean equals(Object o) { if (this == o) return true; if (o == null || getClass() != o.getClass()) return false; Node node = (Node) o; return id.equals(node.id); }
-    @Override public int hashCode() { return Objects.hash(id); }
+// Node.java (Inner Class or Separate File)
+package com.anass.halak.reactflow;
+
+// ... (Keep imports: PointF, RectF, DrawableRes, NonNull, Nullable, List, ArrayList, Objects, UUID) ...
+import android.graphics.PointF;
+import android.graphics.RectF;
+import androidx.annotation.DrawableRes;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+public class Node {
+    @NonNull public final String id;
+    @NonNull public PointF position; // Center position in WORLD coordinates
+    @NonNull public RectF size; // Width/Height (relative to 0,0) - Set in constructor
+    @NonNull public final NodeShape shape;
+    @NonNull public String label;
+    @Nullable @DrawableRes public final Integer customDrawableResId; // Icon
+    @Nullable @DrawableRes public Integer backgroundDrawableResId;
+    // Live views over the handle arrays. Still mutable for compatibility, but prefer setupHandles()/setHandleLayout()/
+    // setExplicitHandles() (or the view's setNodeHandleLayout()), which keep even spacing and report the change
+    @NonNull public final List<Handle> inputHandles = new HandleListView(Handle.Type.INPUT);
+    @NonNull public final List<Handle> outputHandles = new HandleListView(Handle.Type.OUTPUT);
+    private static final Handle[] NO_HANDLES = new Handle[0];
+    private Handle[] inputs = NO_HANDLES, outputs = NO_HANDLES, allHandles = NO_HANDLES;
+    private float handleMinX, handleMinY, handleMaxX, handleMaxY; // Box around every handle offset (TOP-LEFT relative)
+    private final HandleGroup inputGroup = new HandleGroup(Handle.Side.LEFT);
+    private final HandleGroup outputGroup = new HandleGroup(Handle.Side.RIGHT);
+
+    // Layout of one handle group (all inputs or all outputs)
+    private static final class HandleGroup {
+        @NonNull Handle.Side side; boolean explicit;
+        float first, spacing; // Evenly spaced: offset of slot 0 and distance between slots along the side
+        HandleGroup(@NonNull Handle.Side side) { this.side = side; }
+    }
+
+    // Allocation-free List view over one group's handle array. Edits copy the array (arrays already handed out
+    // by getHandleArray() stay unchanged) and switch the group to explicit positions, since the handles are
+    // no longer known to be evenly spaced
+    private final class HandleListView extends AbstractList<Handle> {
+        @NonNull private final Handle.Type type;
+        HandleListView(@NonNull Handle.Type type) { this.type = type; }
+        private Handle[] array() { return type == Handle.Type.INPUT ? inputs : outputs; }
+        @Override public Handle get(int index) { return array()[index]; }
+        @Override public int size() { return array().length; }
+
+        @Override public Handle set(int index, Handle handle) {
+            Handle[] copy = array().clone();
+            Handle old = copy[index];
+            copy[index] = Objects.requireNonNull(handle);
+            replace(copy);
+            return old;
+        }
+
+        @Override public void add(int index, Handle handle) {
+            Handle[] current = array();
+            if (index < 0 || index > current.length) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + current.length);
+            Handle[] copy = new Handle[current.length + 1];
+            System.arraycopy(current, 0, copy, 0, index);
+            copy[index] = Objects.requireNonNull(handle);
+            System.arraycopy(current, index, copy, index + 1, current.length - index);
+            replace(copy);
+        }
+
+        @Override public Handle remove(int index) {
+            Handle[] current = array();
+            Handle old = current[index];
+            Handle[] copy = new Handle[current.length - 1];
+            System.arraycopy(current, 0, copy, 0, index);
+            System.arraycopy(current, index + 1, copy, index, current.length - index - 1);
+            replace(copy);
+            return old;
+        }
+
+        @Override public void clear() { replace(NO_HANDLES); }
+
+        private void replace(@NonNull Handle[] handles) {
+            group(type).explicit = true;
+            setHandles(type, handles);
+            modCount++;
+        }
+    }
+
+    // Primary constructor setting size explicitly
+    public Node(@NonNull String id,
+                @NonNull PointF position,
+                float width, // Accept specific width/height
+                float height,
+                @NonNull NodeShape shape,
+                @NonNull String label,
+                @Nullable @DrawableRes Integer customIconResId,
+                @Nullable @DrawableRes Integer backgroundResId,
+                int inputHandleCount,
+                int outputHandleCount) {
+        this.id = id;
+        this.position = position;
+        // --- Set size based on provided width/height ---
+        this.size = new RectF(0, 0, Math.max(30f, width), Math.max(30f, height)); // Ensure min size
+        // ---
+        this.shape = shape;
+        this.label = label;
+        this.customDrawableResId = customIconResId;
+        this.backgroundDrawableResId = backgroundResId;
+        setupHandles(inputHandleCount, outputHandleCount); // Setup handles based on counts and *final* size
+    }
+
+    // Constructor for simple rectangle (will use default size defined here)
+    public Node(@NonNull String id, @NonNull PointF position) {
+        // --- Use desired default 50x50 dp equivalent (converted later) ---
+        // Placeholder size, will be set properly if density is known,
+        // otherwise use approximate pixel value or set later.
+        // For now, use fixed pixels, updated in View's add methods.
+        this(id, position, 120f, 120f, // Approx 50dp, adjust as needed or set in addNode
+                NodeShape.RECTANGLE, "Node " + id, null, null, 1, 1);
+    }
+
+    // Setup handles based on counts and current *final* size (evenly spaced on each group's current side)
+    public void setupHandles(int inputCount, int outputCount) {
+        setHandleLayout(Handle.Type.INPUT, inputGroup.side, inputCount, null);
+        setHandleLayout(Handle.Type.OUTPUT, outputGroup.side, outputCount, null);
+    }
+
+    // Evenly spaces 'count' handles along one side; labels (optional) are matched by index
+    public void setHandleLayout(@NonNull Handle.Type type, @NonNull Handle.Side side, int count, @Nullable String[] labels) {
+        HandleGroup group = group(type);
+        int n = Math.max(0, count);
+        boolean vertical = side == Handle.Side.LEFT || side == Handle.Side.RIGHT;
+        float length = vertical ? size.height() : size.width();
+        group.side = side; group.explicit = false;
+        group.spacing = length / (n + 1); // A single handle sits at the middle of the side
+        group.first = group.spacing;
+        Handle[] handles = new Handle[n];
+        for (int i = 0; i < n; i++) {
+            float along = group.first + i * group.spacing;
+            PointF offset;
+            switch (side) {
+                case LEFT: offset = new PointF(0, along); break;
+                case RIGHT: offset = new PointF(size.width(), along); break;
+                case TOP: offset = new PointF(along, 0); break;
+                default: offset = new PointF(along, size.height()); break;
+            }
+            handles[i] = new Handle(newHandleId(), id, type, offset, Handle.DEFAULT_RADIUS, labelAt(labels, i));
+        }
+        setHandles(type, handles);
+    }
+
+    // Places handles at explicit offsets (relative to the node's TOP-LEFT); 'side' is used for label placement
+    public void setExplicitHandles(@NonNull Handle.Type type, @NonNull Handle.Side side, @NonNull PointF[] relativeOffsets, @Nullable String[] labels) {
+        HandleGroup group = group(type);
+        group.side = side; group.explicit = true;
+        Handle[] handles = new Handle[relativeOffsets.length];
+        for (int i = 0; i < handles.length; i++) {
+            handles[i] = new Handle(newHandleId(), id, type, new PointF(relativeOffsets[i].x, relativeOffsets[i].y), Handle.DEFAULT_RADIUS, labelAt(labels, i));
+        }
+        setHandles(type, handles);
+    }
+
+    @NonNull public Handle.Side getHandleSide(@NonNull Handle.Type type) { return group(type).side; }
+    public boolean hasExplicitHandles(@NonNull Handle.Type type) { return group(type).explicit; }
+
+    // Re-creates the handles with known ids (same layout), e.g. when restoring a node from storage
+    void restoreHandleIds(@NonNull String[] inputIds, @NonNull String[] outputIds) {
+        Handle[] in = inputs.clone(), out = outputs.clone();
+        for (int i = 0; i < in.length && i < inputIds.length; i++) in[i] = withId(in[i], inputIds[i]);
+        for (int i = 0; i < out.length && i < outputIds.length; i++) out[i] = withId(out[i], outputIds[i]);
+        inputs = in; outputs = out; rebuildAllHandles();
+    }
+
+    private Handle withId(Handle h, String handleId) { return new Handle(handleId, id, h.type, h.relativeOffset, h.radius, h.label); }
+
+    private void setHandles(Handle.Type type, Handle[] handles) {
+        if (type == Handle.Type.INPUT) inputs = handles; else outputs = handles;
+        rebuildAllHandles();
+    }
+
+    private void rebuildAllHandles() {
+        Handle[] combined = new Handle[inputs.length + outputs.length];
+        System.arraycopy(inputs, 0, combined, 0, inputs.length);
+        System.arraycopy(outputs, 0, combined, inputs.length, outputs.length);
+        allHandles = combined;
+        handleMinX = handleMinY = handleMaxX = handleMaxY = 0f;
+        for (Handle h : combined) {
+            handleMinX = Math.min(handleMinX, h.relativeOffset.x); handleMaxX = Math.max(handleMaxX, h.relativeOffset.x);
+            handleMinY = Math.min(handleMinY, h.relativeOffset.y); handleMaxY = Math.max(handleMaxY, h.relativeOffset.y);
+        }
+    }
+
+    private HandleGroup group(Handle.Type type) { return type == Handle.Type.INPUT ? inputGroup : outputGroup; }
+    @Nullable private static String labelAt(@Nullable String[] labels, int i) { return labels != null && i < labels.length ? labels[i] : null; }
+    private static String newHandleId() { return Handle.newId(); }
+
+    // Inputs then outputs. Shared array: iterate, don't modify
+    @NonNull public Handle[] getHandleArray() { return allHandles; }
+
+    // Nearest handle within 'hitRadius' of a world point. Evenly spaced groups resolve the slot
+    // arithmetically, so the cost does not depend on the number of ports
+    @Nullable public Handle findHandleNear(float worldX, float worldY, float hitRadius) {
+        float localX = worldX - (position.x - size.width() / 2f), localY = worldY - (position.y - size.height() / 2f);
+        Handle best = null; float bestDistSq = hitRadius * hitRadius;
+        for (int g = 0; g < 2; g++) {
+            Handle[] handles = g == 0 ? inputs : outputs;
+            if (handles.length == 0) continue;
+            HandleGroup group = g == 0 ? inputGroup : outputGroup;
+            if (group.explicit) { // Arbitrary positions: nothing to exploit, check each
+                for (Handle h : handles) {
+                    float d = distSq(h, localX, localY);
+                    if (d <= bestDistSq) { bestDistSq = d; best = h; }
+                }
+                continue;
+            }
+            boolean vertical = group.side == Handle.Side.LEFT || group.side == Handle.Side.RIGHT;
+            float along = vertical ? localY : localX;
+            int slot = Math.round((along - group.first) / group.spacing);
+            slot = Math.max(0, Math.min(handles.length - 1, slot));
+            float d = distSq(handles[slot], localX, localY);
+            if (d <= bestDistSq) { bestDistSq = d; best = handles[slot]; }
+        }
+        return best;
+    }
+
+    private static float distSq(Handle h, float localX, float localY) {
+        float dx = localX - h.relativeOffset.x, dy = localY - h.relativeOffset.y;
+        return dx * dx + dy * dy;
+    }
+
+    // How far the furthest handle sits outside the node's bounds; 0 when every handle is on or inside the border
+    public float getHandleOverhang() {
+        return Math.max(Math.max(-handleMinX, handleMaxX - size.width()), Math.max(Math.max(-handleMinY, handleMaxY - size.height()), 0f));
+    }
+
+    public RectF getBounds() { return new RectF(position.x - size.width() / 2, position.y - size.height() / 2, position.x + size.width() / 2, position.y + size.height() / 2); }
+    public List<Handle> getAllHandles() { return new ArrayList<>(Arrays.asList(allHandles)); } // Copy; use getHandleArray() in hot paths
+    @Override public boolean equals(Object o) { if (this == o) return true; if (o == null || getClass() != o.getClass()) return false; Node node = (Node) o; return id.equals(node.id); }
+    @Override public int hashCode() { return Objects.hash(id); }
 }
\ No newline at end of file
@@ -1,7 +1,7 @@
-package com.anass.halak.reactflow;
-
-public enum NodeShape {
-    RECTANGLE,
-    CUBE,
-    CUSTOM_DRAWABLE
+package com.anass.halak.reactflow;
+
+public enum NodeShape {
+    RECTANGLE,
+    CUBE,
+    CUSTOM_DRAWABLE
 }
\ No newline at end of file
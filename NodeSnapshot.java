@@ -0,0 +1,70 @@
+package com.anass.halak.reactflow;
+
+import androidx.annotation.DrawableRes;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/** Immutable copy of a {@link Node} as published in a {@link GraphSnapshot}. Safe to read from any thread. */
+public final class NodeSnapshot {
+    @NonNull public final String id;
+    public final float x, y; // Center position in WORLD coordinates
+    public final float width, height;
+    @NonNull public final NodeShape shape;
+    @NonNull public final String label;
+    public final long zOrder; // Stacking order: nodes with a higher value are drawn on top
+    @Nullable @DrawableRes public final Integer customDrawableResId;
+    @Nullable @DrawableRes public final Integer backgroundDrawableResId;
+    public final int inputHandleCount; // Handles are stored inputs first, then outputs
+    @NonNull public final Handle.Side inputSide, outputSide;
+    public final boolean explicitInputs, explicitOutputs; // Handles at arbitrary offsets rather than evenly spaced
+    private final String[] handleIds;
+    private final String[] handleLabels; // null entries for unlabelled handles
+    private final float[] handleOffsets; // (x, y) pairs relative to the node's TOP-LEFT
+
+    private NodeSnapshot(@NonNull Node node, long zOrder) {
+        this.id = node.id;
+        this.zOrder = zOrder;
+        this.x = node.position.x; this.y = node.position.y;
+        this.width = node.size.width(); this.height = node.size.height();
+        this.shape = node.shape;
+        this.label = node.label;
+        this.customDrawableResId = node.customDrawableResId;
+        this.backgroundDrawableResId = node.backgroundDrawableResId;
+        this.inputHandleCount = node.inputHandles.size();
+        this.inputSide = node.getHandleSide(Handle.Type.INPUT); this.outputSide = node.getHandleSide(Handle.Type.OUTPUT);
+        this.explicitInputs = node.hasExplicitHandles(Handle.Type.INPUT); this.explicitOutputs = node.hasExplicitHandles(Handle.Type.OUTPUT);
+        Handle[] handles = node.getHandleArray();
+        int count = handles.length;
+        this.handleIds = new String[count];
+        this.handleLabels = new String[count];
+        this.handleOffsets = new float[count * 2];
+        for (int i = 0; i < count; i++) {
+            Handle handle = handles[i];
+            handleIds[i] = handle.id; handleLabels[i] = handle.label;
+            handleOffsets[i * 2] = handle.relativeOffset.x; handleOffsets[i * 2 + 1] = handle.relativeOffset.y;
+        }
+    }
+
+    @NonNull static NodeSnapshot of(@NonNull Node node) { return new NodeSnapshot(node, 0L); }
+    @NonNull static NodeSnapshot of(@NonNull Node node, long zOrder) { return new NodeSnapshot(node, zOrder); }
+
+    public float getLeft() { return x - width / 2f; }
+    public float getTop() { return y - height / 2f; }
+    public float getRight() { return x + width / 2f; }
+    public float getBottom() { return y + height / 2f; }
+
+    public int getHandleCount() { return handleIds.length; }
+    @NonNull public String getHandleId(int index) { return handleIds[index]; }
+    @NonNull public Handle.Type getHandleType(int index) { return index < inputHandleCount ? Handle.Type.INPUT : Handle.Type.OUTPUT; }
+    @Nullable public String getHandleLabel(int index) { return handleLabels[index]; }
+    @NonNull public Handle.Side getHandleSide(int index) { return index < inputHandleCount ? inputSide : outputSide; }
+    public float getHandleOffsetX(int index) { return handleOffsets[index * 2]; }
+    public float getHandleOffsetY(int index) { return handleOffsets[index * 2 + 1]; }
+    public float getHandleWorldX(int index) { return getLeft() + handleOffsets[index * 2]; }
+    public float getHandleWorldY(int index) { return getTop() + handleOffsets[index * 2 + 1]; }
+
+    public int indexOfHandle(@NonNull String handleId) {
+        for (int i = 0; i < handleIds.length; i++) if (handleIds[i].equals(handleId)) return i;
+        return -1;
+    }
+}
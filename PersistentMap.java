@@ -0,0 +1,179 @@
+package com.anass.halak.reactflow;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Immutable hash array mapped trie (32-way). {@link #put} and {@link #remove} return a new map
+ * that shares every untouched branch with this one, so an update copies O(log32 n) small arrays
+ * instead of the whole map. Instances are safe to read from any thread once published.
+ */
+final class PersistentMap<K, V> {
+    interface Visitor<K, V> { void visit(K key, V value); }
+
+    private static final PersistentMap<Object, Object> EMPTY = new PersistentMap<>(BitmapNode.EMPTY, 0);
+
+    @SuppressWarnings("unchecked")
+    static <K, V> PersistentMap<K, V> empty() { return (PersistentMap<K, V>) EMPTY; }
+
+    private final TrieNode root;
+    private final int size;
+
+    private PersistentMap(@NonNull TrieNode root, int size) { this.root = root; this.size = size; }
+
+    int size() { return size; }
+
+    @SuppressWarnings("unchecked")
+    @Nullable V get(@NonNull Object key) { return (V) root.find(key, hash(key), 0); }
+
+    @NonNull PersistentMap<K, V> put(@NonNull K key, @NonNull V value) {
+        boolean[] added = new boolean[1];
+        TrieNode newRoot = root.assoc(key, hash(key), 0, value, added);
+        if (newRoot == root) return this;
+        return new PersistentMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    @NonNull PersistentMap<K, V> remove(@NonNull Object key) {
+        TrieNode newRoot = root.without(key, hash(key), 0);
+        if (newRoot == root) return this;
+        return new PersistentMap<>(newRoot != null ? newRoot : BitmapNode.EMPTY, size - 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    void forEach(@NonNull Visitor<? super K, ? super V> visitor) { root.forEach((Visitor<Object, Object>) visitor); }
+
+    private static int hash(Object key) { int h = key.hashCode(); return h ^ (h >>> 16); }
+
+    // --- Trie Nodes ---
+    private abstract static class TrieNode {
+        @Nullable abstract Object find(Object key, int hash, int shift);
+        @NonNull abstract TrieNode assoc(Object key, int hash, int shift, Object value, boolean[] added);
+        @Nullable abstract TrieNode without(Object key, int hash, int shift); // null when the node becomes empty
+        abstract void forEach(Visitor<Object, Object> visitor);
+    }
+
+    // Array holds (key, value) pairs, or (null, child) for sub-tries, in bitmap order
+    private static final class BitmapNode extends TrieNode {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+        final int bitmap; final Object[] array;
+
+        BitmapNode(int bitmap, Object[] array) { this.bitmap = bitmap; this.array = array; }
+
+        static int bitpos(int hash, int shift) { return 1 << ((hash >>> shift) & 0x1f); }
+        int index(int bit) { return Integer.bitCount(bitmap & (bit - 1)); }
+
+        @Override Object find(Object key, int hash, int shift) {
+            int bit = bitpos(hash, shift);
+            if ((bitmap & bit) == 0) return null;
+            int idx = index(bit); Object k = array[2 * idx]; Object v = array[2 * idx + 1];
+            if (k == null) return ((TrieNode) v).find(key, hash, shift + 5);
+            return key.equals(k) ? v : null;
+        }
+
+        @Override TrieNode assoc(Object key, int hash, int shift, Object value, boolean[] added) {
+            int bit = bitpos(hash, shift); int idx = index(bit);
+            if ((bitmap & bit) != 0) {
+                Object k = array[2 * idx]; Object v = array[2 * idx + 1];
+                if (k == null) {
+                    TrieNode child = ((TrieNode) v).assoc(key, hash, shift + 5, value, added);
+                    return child == v ? this : new BitmapNode(bitmap, cloneAndSet(array, 2 * idx + 1, child));
+                }
+                if (key.equals(k)) return v == value ? this : new BitmapNode(bitmap, cloneAndSet(array, 2 * idx + 1, value));
+                // Slot taken by another key: push both one level down
+                added[0] = true;
+                Object[] newArray = cloneAndSet(array, 2 * idx + 1, createNode(shift + 5, k, v, hash, key, value));
+                newArray[2 * idx] = null;
+                return new BitmapNode(bitmap, newArray);
+            }
+            added[0] = true;
+            int n = Integer.bitCount(bitmap);
+            Object[] newArray = new Object[2 * (n + 1)];
+            System.arraycopy(array, 0, newArray, 0, 2 * idx);
+            newArray[2 * idx] = key; newArray[2 * idx + 1] = value;
+            System.arraycopy(array, 2 * idx, newArray, 2 * (idx + 1), 2 * (n - idx));
+            return new BitmapNode(bitmap | bit, newArray);
+        }
+
+        @Override TrieNode without(Object key, int hash, int shift) {
+            int bit = bitpos(hash, shift);
+            if ((bitmap & bit) == 0) return this;
+            int idx = index(bit); Object k = array[2 * idx]; Object v = array[2 * idx + 1];
+            if (k == null) {
+                TrieNode child = ((TrieNode) v).without(key, hash, shift + 5);
+                if (child == v) return this;
+                if (child != null) return new BitmapNode(bitmap, cloneAndSet(array, 2 * idx + 1, child));
+            } else if (!key.equals(k)) {
+                return this;
+            }
+            if (bitmap == bit) return null;
+            return new BitmapNode(bitmap ^ bit, removePair(array, idx));
+        }
+
+        @Override void forEach(Visitor<Object, Object> visitor) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (array[i] == null) ((TrieNode) array[i + 1]).forEach(visitor);
+                else visitor.visit(array[i], array[i + 1]);
+            }
+        }
+
+        private static TrieNode createNode(int shift, Object key1, Object val1, int hash2, Object key2, Object val2) {
+            int hash1 = hash(key1);
+            if (hash1 == hash2) return new CollisionNode(hash1, new Object[]{key1, val1, key2, val2});
+            boolean[] ignored = new boolean[1];
+            return EMPTY.assoc(key1, hash1, shift, val1, ignored).assoc(key2, hash2, shift, val2, ignored);
+        }
+    }
+
+    // Keys whose full 32-bit hashes are equal
+    private static final class CollisionNode extends TrieNode {
+        final int hash; final Object[] array;
+
+        CollisionNode(int hash, Object[] array) { this.hash = hash; this.array = array; }
+
+        int indexOf(Object key) {
+            for (int i = 0; i < array.length; i += 2) if (key.equals(array[i])) return i;
+            return -1;
+        }
+
+        @Override Object find(Object key, int hash, int shift) {
+            if (hash != this.hash) return null;
+            int i = indexOf(key);
+            return i < 0 ? null : array[i + 1];
+        }
+
+        @Override TrieNode assoc(Object key, int hash, int shift, Object value, boolean[] added) {
+            if (hash != this.hash) { // Nest this collision bucket and retry at the same level
+                return new BitmapNode(BitmapNode.bitpos(this.hash, shift), new Object[]{null, this}).assoc(key, hash, shift, value, added);
+            }
+            int i = indexOf(key);
+            if (i >= 0) return array[i + 1] == value ? this : new CollisionNode(hash, cloneAndSet(array, i + 1, value));
+            added[0] = true;
+            Object[] newArray = new Object[array.length + 2];
+            System.arraycopy(array, 0, newArray, 0, array.length);
+            newArray[array.length] = key; newArray[array.length + 1] = value;
+            return new CollisionNode(hash, newArray);
+        }
+
+        @Override TrieNode without(Object key, int hash, int shift) {
+            int i = indexOf(key);
+            if (i < 0) return this;
+            if (array.length == 2) return null;
+            return new CollisionNode(hash, removePair(array, i / 2));
+        }
+
+        @Override void forEach(Visitor<Object, Object> visitor) {
+            for (int i = 0; i < array.length; i += 2) visitor.visit(array[i], array[i + 1]);
+        }
+    }
+
+    private static Object[] cloneAndSet(Object[] array, int i, Object value) {
+        Object[] clone = array.clone(); clone[i] = value; return clone;
+    }
+
+    private static Object[] removePair(Object[] array, int pairIndex) {
+        Object[] newArray = new Object[array.length - 2];
+        System.arraycopy(array, 0, newArray, 0, 2 * pairIndex);
+        System.arraycopy(array, 2 * (pairIndex + 1), newArray, 2 * pairIndex, newArray.length - 2 * pairIndex);
+        return newArray;
+    }
+}
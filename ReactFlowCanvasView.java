@@ -1,715 +1,1240 @@
-package com.anass.halak.reactflow; // Replace with your actual package name
-
-// --- Imports ---
-import android.content.Context;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.DashPathEffect;
-import android.graphics.Matrix;
-import android.graphics.Paint;
-import android.graphics.Path;
-import android.graphics.PathMeasure;
-import android.graphics.PointF;
-import android.graphics.Rect;
-import android.graphics.RectF;
-import android.graphics.drawable.Drawable;
-import android.util.AttributeSet;
-import android.util.DisplayMetrics;
-import android.util.Log;
-import android.util.SparseArray;
-import android.view.MotionEvent;
-import android.view.ScaleGestureDetector; // Keep for listener definition
-import android.view.View;
-
-import androidx.annotation.ColorInt;
-import androidx.annotation.DrawableRes;
-import androidx.annotation.NonNull;
-import androidx.annotation.Nullable;
-import androidx.appcompat.content.res.AppCompatResources;
-import androidx.core.graphics.drawable.DrawableKt;
-
-import com.anass.halak.R; // Import your project's R class
-
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Objects;
-import java.util.UUID;
-
-public class ReactFlowCanvasView extends View {
-
-    private static final String TAG = "ReactFlowCanvasView";
-    private float gridSpacing = 50f;
-    private static final float GRID_DOT_RADIUS = 1.5f;
-
-    // --- State ---
-    private List<Node> nodes = new ArrayList<>();
-    private List<Edge> edges = new ArrayList<>();
-    private Map<String, Handle> handleMap = new HashMap<>();
-    private Map<String, Node> nodeMap = new HashMap<>();
-
-    // --- Cache & Density ---
-    private SparseArray<Bitmap> bitmapCache = new SparseArray<>(); // For Icons
-    private SparseArray<Drawable.ConstantState> bgDrawableCache = new SparseArray<>(); // <<< Cache for Background Drawables
-    private float density;
-
-    // --- NEW: Default Node Dimensions ---
-    private static final float DEFAULT_NODE_WIDTH_DP = 55f; // Adjusted slightly wider
-    private static final float DEFAULT_NODE_HEIGHT_DP = 55f;
-    private static final float DEFAULT_ICON_SIZE_DP = 25f; // Adjusted icon size
-
-
-    // --- Panning and Zooming ---
-    private float offsetX = 0f, offsetY = 0f, scaleFactor = 1.0f;
-    private static final float MIN_SCALE = 0.1f;
-    private static final float MAX_SCALE = 3.0f;
-    private static final float ZOOM_STEP = 1.2f;
-    private Matrix viewMatrix = new Matrix(), inverseViewMatrix = new Matrix();
-    private float lastTouchX, lastTouchY;
-    private boolean isPanning = false;
-    private int activePointerId = MotionEvent.INVALID_POINTER_ID;
-
-    // --- Interaction States ---
-    private Node draggingNode = null;
-    private float dragNodeStartXOffsetWorld, dragNodeStartYOffsetWorld;
-    private float handleHitRadiusWorld = 15f; // Configurable hit radius
-    private static final float HANDLE_VISUAL_RADIUS_BASE = 8f;
-    private boolean isDrawingConnection = false;
-    @Nullable private Handle connectionStartHandle = null;
-    @NonNull private PointF connectionCurrentDragPointWorld = new PointF();
-    @Nullable private Handle potentialTargetHandle = null;
-
-    // --- Drawing Tools & Configurable Properties ---
-    private Paint gridPaint, nodeBgPaint, nodeBorderPaint, edgePaint, textPaint;
-    private Paint handlePaintInput, handlePaintOutput, handleBorderPaint, tempConnectionPaint;
-    private Paint gridDotPaint;
-    private Paint arrowHeadPaint;
-    private Path edgeDrawingPath = new Path();
-    private Path arrowHeadPath = new Path();
-    private DashPathEffect animatedEdgeDashEffect = new DashPathEffect(new float[]{20, 10}, 0);
-    private float defaultNodeCornerRadiusDp = 10f;
-    private float defaultEdgeStrokeWidth = 3f;
-    private float defaultArrowheadSize = 10f;
-    private boolean drawArrowheads = true;
-    private float gridDotBaseRadius = 1.5f;
-
-
-    // --- Listener ---
-    public interface ConnectionListener {
-        void onEdgeConnected(Edge newEdge);
-        void onConnectionAttempted(Handle startHandle, @Nullable Handle endHandle);
-    }
-    private ConnectionListener connectionListener = null;
-
-    // --- Constructors & Init ---
-    public ReactFlowCanvasView(Context context) { super(context); init(context); }
-    public ReactFlowCanvasView(Context context, @Nullable AttributeSet attrs) { super(context, attrs); init(context); }
-    public ReactFlowCanvasView(Context context, @Nullable AttributeSet attrs, int defStyleAttr) { super(context, attrs, defStyleAttr); init(context); }
-
-    private void init(Context context) {
-        density = context.getResources().getDisplayMetrics().density;
-
-        // Initialize Paints (Keep styles, adjust defaults if needed)
-        gridDotPaint = new Paint(); gridDotPaint.setStyle(Paint.Style.FILL); gridDotPaint.setAntiAlias(true);
-        nodeBgPaint = new Paint(); nodeBgPaint.setStyle(Paint.Style.FILL); nodeBgPaint.setAntiAlias(true);
-        nodeBorderPaint = new Paint(); nodeBorderPaint.setStyle(Paint.Style.STROKE); nodeBorderPaint.setAntiAlias(true);
-        edgePaint = new Paint(); edgePaint.setStyle(Paint.Style.STROKE); edgePaint.setAntiAlias(true); edgePaint.setStrokeJoin(Paint.Join.ROUND); edgePaint.setStrokeCap(Paint.Cap.ROUND);
-        textPaint = new Paint(); textPaint.setTextAlign(Paint.Align.CENTER); textPaint.setAntiAlias(true);
-        handlePaintInput = new Paint(); handlePaintInput.setStyle(Paint.Style.FILL); handlePaintInput.setAntiAlias(true);
-        handlePaintOutput = new Paint(); handlePaintOutput.setStyle(Paint.Style.FILL); handlePaintOutput.setAntiAlias(true);
-        handleBorderPaint = new Paint(); handleBorderPaint.setStyle(Paint.Style.STROKE); handleBorderPaint.setAntiAlias(true);
-        tempConnectionPaint = new Paint(); tempConnectionPaint.setStyle(Paint.Style.STROKE); tempConnectionPaint.setAntiAlias(true); tempConnectionPaint.setPathEffect(new DashPathEffect(new float[]{15, 10}, 0));
-        arrowHeadPaint = new Paint(); arrowHeadPaint.setStyle(Paint.Style.FILL); arrowHeadPaint.setAntiAlias(true);
-
-        // Apply Default Configurable Values
-        setGridDotColor(Color.WHITE); // Slightly lighter grid
-        setDefaultNodeBgColor(Color.parseColor("#FAFAFA")); // Lighter node background
-        setDefaultNodeBorderColor(Color.parseColor("#DDDDDD")); // Lighter border
-        setDefaultNodeTextColor(Color.parseColor("#333333")); // Darker text
-        setDefaultNodeTextSize(12f * getResources().getDisplayMetrics().scaledDensity); // Default text size in SP
-        setEdgeColor(Color.parseColor("#B0BEC5")); // Lighter gray edges
-        setEdgeStrokeWidth(2f); // Thinner edges
-        setTempConnectionColor(Color.parseColor("#FF9800")); // Orange temp line
-        setHandleInputColor(Color.parseColor("#90A4AE")); // Grayish input
-        setHandleOutputColor(Color.parseColor("#90A4AE")); // Grayish output
-        setHandleBorderColor(Color.parseColor("#CFD8DC")); // Light border for handles
-        setArrowheadColor(edgePaint.getColor());
-        setArrowheadSize(8f); // Slightly smaller arrowheads
-
-        addSampleData();
-        updateMaps();
-        setBackgroundColor(Color.DKGRAY); // Lighter background overall
-    }
-
-    // --- Data Loading & Management ---
-    private void addSampleData() {
-        nodes.clear(); edges.clear();
-        float nodeW = DEFAULT_NODE_WIDTH_DP * density;
-        float nodeH = DEFAULT_NODE_HEIGHT_DP * density;
-        // Use the full Node constructor with new dimensions
-        // REPLACE R.drawable... with YOUR actual drawable IDs
-        nodes.add(new Node("N1", new PointF(150f, 200f), nodeW, nodeH, NodeShape.CUSTOM_DRAWABLE, "Schedule", R.drawable.ic_launcher_foreground, R.drawable.node_background_shape, 1, 1));
-        nodes.add(new Node("N2", new PointF(350f, 200f), nodeW, nodeH, NodeShape.CUSTOM_DRAWABLE, "HTTP", R.drawable.ic_launcher_foreground, R.drawable.node_background_shape, 1, 1));
-        nodes.add(new Node("N3", new PointF(550f, 200f), nodeW, nodeH, NodeShape.CUSTOM_DRAWABLE, "Code", R.drawable.ic_launcher_foreground, R.drawable.node_background_shape, 1, 1));
-        nodes.add(new Node("N4", new PointF(750f, 200f), nodeW, nodeH, NodeShape.CUSTOM_DRAWABLE, "Sheets", R.drawable.ic_launcher_foreground, R.drawable.node_background_shape, 1, 1));
-
-        updateMaps(); // Update maps after adding nodes
-
-        // Connect sample nodes
-        Handle n1Out = nodeMap.get("N1").outputHandles.get(0); Handle n2In = nodeMap.get("N2").inputHandles.get(0);
-        Handle n2Out = nodeMap.get("N2").outputHandles.get(0); Handle n3In = nodeMap.get("N3").inputHandles.get(0);
-        Handle n3Out = nodeMap.get("N3").outputHandles.get(0); Handle n4In = nodeMap.get("N4").inputHandles.get(0);
-
-        if (n1Out != null && n2In != null) edges.add(new Edge("N1", n1Out.id, "N2", n2In.id, true));
-        if (n2Out != null && n3In != null) edges.add(new Edge("N2", n2Out.id, "N3", n3In.id, true));
-        if (n3Out != null && n4In != null) edges.add(new Edge("N3", n3Out.id, "N4", n4In.id, true));
-    }
-
-    private void updateMaps() {
-        nodeMap.clear();
-        handleMap.clear();
-        for (Node node : nodes) {
-            nodeMap.put(node.id, node);
-            for (Handle handle : node.getAllHandles()) {
-                handleMap.put(handle.id, handle);
-                handle.updateWorldPosition(node);
-            }
-        }
-    }
-
-    private void updateAllHandleWorldPositions() {
-        for (Node node : nodes) {
-            for (Handle handle : node.getAllHandles()) {
-                handle.updateWorldPosition(node);
-            }
-        }
-    }
-
-    // --- Coordinate Transformation Helpers ---
-    private void updateMatrices() {
-        viewMatrix.reset();
-        viewMatrix.postTranslate(offsetX, offsetY);
-        viewMatrix.postScale(scaleFactor, scaleFactor);
-        if (!viewMatrix.invert(inverseViewMatrix)) {
-            Log.e(TAG, "Matrix inversion failed!");
-            inverseViewMatrix.reset();
-        }
-    }
-
-    private PointF screenToWorld(float screenX, float screenY) {
-        float[] pts = {screenX, screenY};
-        inverseViewMatrix.mapPoints(pts);
-        return new PointF(pts[0], pts[1]);
-    }
-
-    // --- Drawing ---
-    @Override
-    protected void onDraw(Canvas canvas) {
-        super.onDraw(canvas);
-        updateMatrices();
-        updateAllHandleWorldPositions();
-
-        canvas.save();
-        canvas.concat(viewMatrix); // Apply pan/zoom
-
-        drawGrid(canvas);
-        drawEdges(canvas);
-        drawNodesAndHandles(canvas);
-        drawTemporaryConnection(canvas);
-
-        canvas.restore(); // Remove pan/zoom
-    }
-
-    private void drawGrid(Canvas canvas) {
-        float scaledDotRadius = Math.max(0.5f, Math.min(3f, gridDotBaseRadius / scaleFactor * 1.2f));
-        gridDotPaint.setAlpha((int) (Math.min(1.0f, scaleFactor) * 150));
-
-        PointF topLeftWorld = screenToWorld(0, 0); PointF bottomRightWorld = screenToWorld(getWidth(), getHeight());
-        float padding = gridSpacing * 2; float left = topLeftWorld.x - padding; float top = topLeftWorld.y - padding; float right = bottomRightWorld.x + padding; float bottom = bottomRightWorld.y + padding;
-        float startX = (float) (Math.floor(left / gridSpacing) * gridSpacing); float endX = (float) (Math.ceil(right / gridSpacing) * gridSpacing);
-        float startY = (float) (Math.floor(top / gridSpacing) * gridSpacing); float endY = (float) (Math.ceil(bottom / gridSpacing) * gridSpacing);
-
-        float minVisibleSpacing = 4.0f; if (gridSpacing * scaleFactor < minVisibleSpacing) return;
-
-        for (float x = startX; x <= endX; x += gridSpacing) {
-            for (float y = startY; y <= endY; y += gridSpacing) {
-                canvas.drawCircle(x, y, scaledDotRadius, gridDotPaint);
-            }
-        }
-    }
-
-    private void drawEdges(Canvas canvas) {
-        float baseStrokeWidth = Math.max(1.0f, Math.min(6f, defaultEdgeStrokeWidth / scaleFactor));
-        edgePaint.setStrokeWidth(baseStrokeWidth);
-        arrowHeadPaint.setColor(edgePaint.getColor());
-        float scaledArrowSize = defaultArrowheadSize / scaleFactor;
-
-        PathMeasure pathMeasure = new PathMeasure();
-
-        for (Edge edge : edges) {
-            Handle sourceHandle = handleMap.get(edge.sourceHandleId); Handle targetHandle = handleMap.get(edge.targetHandleId);
-            if (sourceHandle != null && targetHandle != null) {
-                PointF start = sourceHandle.worldPosition; PointF end = targetHandle.worldPosition;
-                edgeDrawingPath.reset(); edgeDrawingPath.moveTo(start.x, start.y);
-                float midX = (start.x + end.x) / 2; float midY = (start.y + end.y) / 2;
-                float dx = end.x - start.x; float dy = end.y - start.y;
-                float controlOffsetScale = 0.25f;
-                float controlX = midX - dy * controlOffsetScale; float controlY = midY + dx * controlOffsetScale;
-                edgeDrawingPath.quadTo(controlX, controlY, end.x, end.y);
-
-                edgePaint.setPathEffect(edge.animated ? animatedEdgeDashEffect : null);
-                canvas.drawPath(edgeDrawingPath, edgePaint);
-                edgePaint.setPathEffect(null);
-
-                if (drawArrowheads) {
-                    pathMeasure.setPath(edgeDrawingPath, false); float pathLength = pathMeasure.getLength();
-                    if (pathLength > 0.01f) {
-                        float[] pos = new float[2]; float[] tan = new float[2];
-                        pathMeasure.getPosTan(pathLength, pos, tan);
-                        double angle = Math.atan2(tan[1], tan[0]);
-
-                        Path scaledArrowHeadPath = new Path();
-                        scaledArrowHeadPath.moveTo(-scaledArrowSize, scaledArrowSize / 2);
-                        scaledArrowHeadPath.lineTo(0, 0);
-                        scaledArrowHeadPath.lineTo(-scaledArrowSize, -scaledArrowSize / 2);
-                        scaledArrowHeadPath.close();
-
-                        Matrix arrowMatrix = new Matrix(); arrowMatrix.setRotate((float) Math.toDegrees(angle)); arrowMatrix.postTranslate(pos[0], pos[1]);
-                        Path transformedArrow = new Path();
-                        scaledArrowHeadPath.transform(arrowMatrix, transformedArrow);
-                        canvas.drawPath(transformedArrow, arrowHeadPaint);
-                    }
-                }
-            }
-        }
-    }
-
-    // UPDATED: Draw Nodes then Labels then Handles
-    private void drawNodesAndHandles(Canvas canvas) {
-        nodeBorderPaint.setStrokeWidth(Math.max(0.8f, Math.min(3f, 1.5f / scaleFactor)));
-        float scaledTextSize = Math.max(10f * density, Math.min(16f * density, textPaint.getTextSize() / scaleFactor)); // Adjust SP range and scale
-        textPaint.setTextSize(scaledTextSize);
-
-        RectF tempBounds = new RectF();
-        Rect tempTextBounds = new Rect();
-
-        // --- Draw Node Backgrounds and Icons ---
-        for (Node node : nodes) {
-            tempBounds.set(node.getBounds());
-            drawNodeContent(canvas, node, tempBounds); // Draws background and icon
-        }
-
-        // --- Draw Labels Below Nodes ---
-        for (Node node : nodes) {
-            tempBounds.set(node.getBounds()); // Get bounds again for positioning
-            String label = node.label;
-            textPaint.getTextBounds(label, 0, label.length(), tempTextBounds);
-            float labelMargin = 6f * density / scaleFactor; // Margin in scaled DP
-            float labelY = tempBounds.bottom + labelMargin - textPaint.ascent(); // Position below bottom + margin
-            canvas.drawText(label, tempBounds.centerX(), labelY, textPaint);
-        }
-
-        // --- Draw Handles on Top ---
-        for (Node node : nodes) {
-            drawHandlesForNode(canvas, node);
-        }
-    }
-
-    // === UPDATED Helper to Draw Node Background/Content ===
-    private void drawNodeContent(Canvas canvas, Node node, RectF bounds) {
-        boolean useShapeDrawable = node.backgroundDrawableResId != null;
-        Drawable backgroundDrawable = null;
-        float cornerRadius = defaultNodeCornerRadiusDp * density; // Use configured radius
-
-        if (useShapeDrawable) {
-            backgroundDrawable = loadAndCacheBackgroundDrawable(node.backgroundDrawableResId);
-        }
-
-        // Draw Drag Highlight (optional, under border)
-        if(node == draggingNode) {
-            Paint dragHighlightPaint = new Paint(nodeBorderPaint);
-            dragHighlightPaint.setColor(Color.parseColor("#FFEB3B")); // Yellow highlight
-            dragHighlightPaint.setStrokeWidth(nodeBorderPaint.getStrokeWidth() * 2f);
-            canvas.drawRoundRect(bounds, cornerRadius, cornerRadius, dragHighlightPaint);
-        }
-
-        // Draw Background
-        if (backgroundDrawable != null) {
-            backgroundDrawable.setBounds((int) bounds.left, (int) bounds.top, (int) bounds.right, (int) bounds.bottom);
-            // Tinting the background shape drawable if needed (example)
-            // Drawable mutableDrawable = DrawableCompat.wrap(backgroundDrawable).mutate();
-            // DrawableCompat.setTint(mutableDrawable, nodeBgPaint.getColor()); // Tint with default node bg color
-            // mutableDrawable.draw(canvas);
-            backgroundDrawable.draw(canvas); // Draw original or tinted
-        } else {
-            // Fallback: Draw using default Paint if no shape drawable
-            canvas.drawRoundRect(bounds, cornerRadius, cornerRadius, nodeBgPaint);
-            canvas.drawRoundRect(bounds, cornerRadius, cornerRadius, nodeBorderPaint); // Draw border only if no shape bg
-        }
-
-        // Draw Icon (if available), centered
-        if (node.shape == NodeShape.CUSTOM_DRAWABLE && node.customDrawableResId != null) {
-            float iconSizePx = DEFAULT_ICON_SIZE_DP * density; // Use constant for icon size
-            int iconTargetSize = (int) Math.max(1, iconSizePx);
-
-            Bitmap bitmap = loadAndCacheBitmap(node.customDrawableResId, iconTargetSize, iconTargetSize);
-            if (bitmap != null) {
-                // Calculate position to center the icon
-                float iconX = bounds.centerX() - iconTargetSize / 2f;
-                float iconY = bounds.centerY() - iconTargetSize / 2f;
-                canvas.drawBitmap(bitmap, iconX, iconY, null);
-            }
-        }
-        // Note: If using a shape drawable with stroke, border is drawn by backgroundDrawable.draw()
-    }
-    // === END Node Content Helper ===
-
-
-    private void drawHandlesForNode(Canvas canvas, Node node) {
-        float scaledVisualRadius = Math.max(3f, Math.min(12f, HANDLE_VISUAL_RADIUS_BASE / scaleFactor * 1.3f));
-        handleBorderPaint.setStrokeWidth(Math.max(0.5f, Math.min(2f, 1.5f / scaleFactor)));
-
-        for (Handle handle : node.getAllHandles()) {
-            Paint fillPaint = (handle.type == Handle.Type.INPUT) ? handlePaintInput : handlePaintOutput;
-            if (handle == potentialTargetHandle && isDrawingConnection) {
-                Paint highlightPaint = new Paint(fillPaint); highlightPaint.setAlpha(100);
-                canvas.drawCircle(handle.worldPosition.x, handle.worldPosition.y, scaledVisualRadius * 1.6f, highlightPaint);
-            }
-            canvas.drawCircle(handle.worldPosition.x, handle.worldPosition.y, scaledVisualRadius, fillPaint);
-            canvas.drawCircle(handle.worldPosition.x, handle.worldPosition.y, scaledVisualRadius, handleBorderPaint);
-        }
-    }
-
-    // === Cache method for Background Drawables ===
-    @Nullable
-    private Drawable loadAndCacheBackgroundDrawable(@Nullable Integer resId) {
-        if (resId == null) return null;
-        Drawable.ConstantState constantState = bgDrawableCache.get(resId);
-        if (constantState == null) {
-            try {
-                // Use AppCompatResources to handle vector drawables correctly
-                Drawable drawable = AppCompatResources.getDrawable(getContext(), resId);
-                if (drawable != null) {
-                    // Important: Mutate before caching or changing state (like bounds/tint)
-                    constantState = drawable.getConstantState();
-                    if (constantState != null) {
-                        bgDrawableCache.put(resId, constantState);
-                        Log.d(TAG, "Cached background drawable: " + resId);
-                        // Return a new instance based on the constant state
-                        return constantState.newDrawable(getResources()).mutate();
-                    }
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Error loading background drawable: " + resId, e);
-            }
-            return null; // Failed to load or cache
-        } else {
-            // Return a new instance from the cached state
-            return constantState.newDrawable(getResources()).mutate();
-        }
-    }
-
-    private void drawTemporaryConnection(Canvas canvas) {
-        if (isDrawingConnection && connectionStartHandle != null) {
-            tempConnectionPaint.setStrokeWidth(Math.max(1.5f, Math.min(6f, 4f / scaleFactor)));
-            canvas.drawLine(connectionStartHandle.worldPosition.x, connectionStartHandle.worldPosition.y,
-                    connectionCurrentDragPointWorld.x, connectionCurrentDragPointWorld.y, tempConnectionPaint);
-        }
-    }
-
-    // --- Node Shape Drawing Helpers ---
-    private void drawRectNode(Canvas canvas, Node node, RectF bounds) {
-        float cornerRadius = defaultNodeCornerRadiusDp * density;
-        Paint currentBgPaint = nodeBgPaint;
-        if(node == draggingNode) {
-            Paint dragHighlight = new Paint(nodeBorderPaint); dragHighlight.setColor(Color.YELLOW);
-            dragHighlight.setStrokeWidth(nodeBorderPaint.getStrokeWidth() * 1.5f);
-            canvas.drawRoundRect(bounds, cornerRadius, cornerRadius, dragHighlight);
-        }
-        canvas.drawRoundRect(bounds, cornerRadius, cornerRadius, currentBgPaint);
-        canvas.drawRoundRect(bounds, cornerRadius, cornerRadius, nodeBorderPaint);
-    }
-    private void drawCubeNode(Canvas canvas, Node node, RectF bounds) { drawRectNode(canvas, node, bounds); } // Fallback
-    private void drawDrawableNode(Canvas canvas, Node node, RectF bounds) {
-        float cornerRadius = defaultNodeCornerRadiusDp * density;
-        Paint customBgPaint = nodeBgPaint;
-        Paint customBorderPaint = nodeBorderPaint;
-        if(node == draggingNode) {
-            Paint dragHighlight = new Paint(customBorderPaint); dragHighlight.setColor(Color.YELLOW);
-            dragHighlight.setStrokeWidth(customBorderPaint.getStrokeWidth() * 1.5f);
-            canvas.drawRoundRect(bounds, cornerRadius, cornerRadius, dragHighlight);
-        }
-        canvas.drawRoundRect(bounds, cornerRadius, cornerRadius, customBgPaint);
-        if (node.customDrawableResId != null) {
-            float iconSizeFactor = 0.45f; int iconTargetSize = (int) Math.max(1, bounds.height() * iconSizeFactor);
-            Bitmap bitmap = loadAndCacheBitmap(node.customDrawableResId, iconTargetSize, iconTargetSize);
-            if (bitmap != null) {
-                float iconPaddingLeft = bounds.width() * 0.15f; float iconX = bounds.left + iconPaddingLeft;
-                float iconY = bounds.centerY() - iconTargetSize / 2f; canvas.drawBitmap(bitmap, iconX, iconY, null);
-            }
-        }
-        canvas.drawRoundRect(bounds, cornerRadius, cornerRadius, customBorderPaint);
-    }
-    private Bitmap loadAndCacheBitmap(int resId, int reqWidth, int reqHeight) {
-        Bitmap bitmap = bitmapCache.get(resId);
-        if (bitmap == null) {
-            try {
-                Drawable drawable = AppCompatResources.getDrawable(getContext(), resId);
-                if (drawable != null) {
-                    bitmap = DrawableKt.toBitmap(drawable, reqWidth, reqHeight, null);
-                    if (bitmap != null) bitmapCache.put(resId, bitmap);
-                }
-            } catch (Exception e) { Log.e(TAG, "Error loading drawable: " + resId, e); }
-        }
-        return bitmap;
-    }
-
-    // --- Public Zoom Methods ---
-    public void zoomIn() { applyZoom(ZOOM_STEP); }
-    public void zoomOut() { applyZoom(1.0f / ZOOM_STEP); }
-    private void applyZoom(float scaleMultiplier) {
-        float oldScaleFactor = scaleFactor;
-        float newScaleFactor = oldScaleFactor * scaleMultiplier;
-        newScaleFactor = Math.max(MIN_SCALE, Math.min(newScaleFactor, MAX_SCALE));
-        float actualScaleChange = newScaleFactor / oldScaleFactor;
-        if (actualScaleChange != 1.0f) {
-            float viewCenterX = getWidth() / 2f; float viewCenterY = getHeight() / 2f;
-            offsetX = viewCenterX - (viewCenterX - offsetX) * actualScaleChange;
-            offsetY = viewCenterY - (viewCenterY - offsetY) * actualScaleChange;
-            scaleFactor = newScaleFactor;
-            Log.d(TAG, "Applied Zoom: New Scale=" + scaleFactor);
-            invalidate();
-        }
-    }
-
-    // --- Touch Input Handling ---
-    @Override
-    public boolean onTouchEvent(MotionEvent event) {
-        updateMatrices();
-
-        boolean handledByScale = false; // Pinch zoom disabled
-
-        final int action = event.getActionMasked();
-        final int pointerIndex = event.getActionIndex();
-        final int pointerId = event.getPointerId(pointerIndex);
-        final int activePointerIndex = (activePointerId != MotionEvent.INVALID_POINTER_ID) ? event.findPointerIndex(activePointerId) : 0;
-
-        if (activePointerIndex < 0 || activePointerIndex >= event.getPointerCount()) {
-            if ((action == MotionEvent.ACTION_MOVE || action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) && activePointerId != MotionEvent.INVALID_POINTER_ID) { resetInteractions(); return true; }
-            else if (action != MotionEvent.ACTION_POINTER_UP && action != MotionEvent.ACTION_DOWN) { return true; }
-        }
-
-        float currentX = (activePointerIndex >= 0 && activePointerIndex < event.getPointerCount()) ? event.getX(activePointerIndex) : event.getX(0);
-        float currentY = (activePointerIndex >= 0 && activePointerIndex < event.getPointerCount()) ? event.getY(activePointerIndex) : event.getY(0);
-        PointF worldPoint = screenToWorld(currentX, currentY);
-
-        switch (action) {
-            case MotionEvent.ACTION_DOWN:
-                activePointerId = event.getPointerId(0); lastTouchX = currentX; lastTouchY = currentY;
-                PointF worldPointDown = screenToWorld(lastTouchX, lastTouchY);
-                Handle touchedHandle = findHandleAtWorldPoint(worldPointDown);
-                if (touchedHandle != null) { // Start Connection
-                    isDrawingConnection = true; connectionStartHandle = touchedHandle;
-                    connectionCurrentDragPointWorld.set(worldPointDown); draggingNode = null; isPanning = false;
-                } else { // Try Drag Node
-                    draggingNode = findNodeContainingWorldPoint(worldPointDown);
-                    if (draggingNode != null) {
-                        dragNodeStartXOffsetWorld = worldPointDown.x - draggingNode.position.x;
-                        dragNodeStartYOffsetWorld = worldPointDown.y - draggingNode.position.y;
-                        isDrawingConnection = false; isPanning = false; bringNodeToFront(draggingNode);
-                    } else { // Pan
-                        isDrawingConnection = false; draggingNode = null; isPanning = true;
-                    }
-                }
-                invalidate();
-                break;
-
-            case MotionEvent.ACTION_MOVE:
-                if (activePointerId == MotionEvent.INVALID_POINTER_ID || activePointerIndex < 0) break;
-                float dx = currentX - lastTouchX; float dy = currentY - lastTouchY;
-                if (isDrawingConnection) { // Update temporary line
-                    connectionCurrentDragPointWorld.set(worldPoint);
-                    potentialTargetHandle = findHandleAtWorldPoint(worldPoint);
-                    if (potentialTargetHandle != null && !isValidConnectionTarget(connectionStartHandle, potentialTargetHandle)) { potentialTargetHandle = null; }
-                    invalidate();
-                } else if (draggingNode != null) { // Drag selected node
-                    draggingNode.position.set(worldPoint.x - dragNodeStartXOffsetWorld, worldPoint.y - dragNodeStartYOffsetWorld);
-                    invalidate();
-                } else if (isPanning) { // Pan the canvas
-                    offsetX += dx; offsetY += dy;
-                    invalidate();
-                }
-                lastTouchX = currentX; lastTouchY = currentY;
-                break;
-
-            case MotionEvent.ACTION_UP: case MotionEvent.ACTION_CANCEL:
-                if (isDrawingConnection && connectionStartHandle != null) { // Attempt to finalize connection
-                    Handle targetHandle = findHandleAtWorldPoint(worldPoint);
-                    if (targetHandle != null && isValidConnectionTarget(connectionStartHandle, targetHandle)) {
-                        createEdge(connectionStartHandle, targetHandle);
-                    }
-                    if (connectionListener != null) { connectionListener.onConnectionAttempted(connectionStartHandle, targetHandle); }
-                }
-                resetInteractions(); invalidate();
-                break;
-
-            case MotionEvent.ACTION_POINTER_UP:
-                final int pointerUpId = event.getPointerId(pointerIndex);
-                if (pointerUpId == activePointerId) { // If the primary finger was lifted
-                    final int newPointerIndex = (pointerIndex == 0) ? 1 : 0;
-                    if (newPointerIndex < event.getPointerCount()) { // If another finger remains
-                        activePointerId = event.getPointerId(newPointerIndex); lastTouchX = event.getX(newPointerIndex); lastTouchY = event.getY(newPointerIndex);
-                        if(isDrawingConnection || draggingNode != null) { // Cancel ongoing interaction if primary finger changed
-                            if(isDrawingConnection && connectionStartHandle != null && connectionListener != null) { connectionListener.onConnectionAttempted(connectionStartHandle, null); }
-                            resetInteractions(); invalidate();
-                        }
-                    } else { // Last finger lifted
-                        if (isDrawingConnection && connectionStartHandle != null) {
-                            PointF lastWorldPoint = screenToWorld(event.getX(pointerIndex), event.getY(pointerIndex));
-                            Handle targetHandle = findHandleAtWorldPoint(lastWorldPoint);
-                            if (targetHandle != null && isValidConnectionTarget(connectionStartHandle, targetHandle)) { createEdge(connectionStartHandle, targetHandle); }
-                            if (connectionListener != null) { connectionListener.onConnectionAttempted(connectionStartHandle, targetHandle); }
-                        }
-                        resetInteractions(); invalidate();
-                    }
-                }
-                break;
-        }
-        return true; // We handled the event
-    }
-
-    // --- Reset Interactions ---
-    private void resetInteractions() {
-        activePointerId = MotionEvent.INVALID_POINTER_ID; isPanning = false; draggingNode = null;
-        isDrawingConnection = false; connectionStartHandle = null; potentialTargetHandle = null;
-        connectionCurrentDragPointWorld.set(0, 0); dragNodeStartXOffsetWorld = 0; dragNodeStartYOffsetWorld = 0;
-    }
-
-    // --- Hit Testing ---
-    @Nullable private Handle findHandleAtWorldPoint(PointF worldPoint) {
-        for (int i = nodes.size() - 1; i >= 0; i--) {
-            Node node = nodes.get(i);
-            for (Handle handle : node.getAllHandles()) {
-                float dx = worldPoint.x - handle.worldPosition.x; float dy = worldPoint.y - handle.worldPosition.y;
-                if (dx * dx + dy * dy <= handleHitRadiusWorld * handleHitRadiusWorld) return handle;
-            }
-        } return null;
-    }
-    @Nullable private Node findNodeContainingWorldPoint(PointF worldPoint) {
-        for (int i = nodes.size() - 1; i >= 0; i--) {
-            Node node = nodes.get(i);
-            if (node.getBounds().contains(worldPoint.x, worldPoint.y)) {
-                if (findHandleAtWorldPoint(worldPoint) == null) return node; else return null;
-            }
-        } return null;
-    }
-
-    // --- Edge Creation Logic ---
-    public boolean isValidConnectionTarget(@Nullable Handle start, @Nullable Handle end) {
-        if (start == null || end == null) return false; if (Objects.equals(start.nodeId, end.nodeId)) return false;
-        return start.type == Handle.Type.OUTPUT && end.type == Handle.Type.INPUT;
-    }
-    private void createEdge(@NonNull Handle sourceHandle, @NonNull Handle targetHandle) {
-        Handle outputHandle = (sourceHandle.type == Handle.Type.OUTPUT) ? sourceHandle : targetHandle;
-        Handle inputHandle = (sourceHandle.type == Handle.Type.INPUT) ? sourceHandle : targetHandle;
-        for (Edge edge : edges) { if (Objects.equals(edge.sourceHandleId, outputHandle.id) && Objects.equals(edge.targetHandleId, inputHandle.id)) { Log.w(TAG, "Edge exists."); return; } }
-        boolean isAnimated = true; // Default
-        Edge newEdge = new Edge(outputHandle.nodeId, outputHandle.id, inputHandle.nodeId, inputHandle.id, isAnimated);
-        edges.add(newEdge);
-        if (connectionListener != null) { connectionListener.onEdgeConnected(newEdge); }
-        invalidate();
-    }
-
-    // --- Utility ---
-    private void bringNodeToFront(Node nodeToFront) { if (nodes.remove(nodeToFront)) { nodes.add(nodeToFront); invalidate(); } }
-
-    public void addNode(@NonNull PointF worldPosition,
-                        float width, float height, // Pass desired world dimensions
-                        @NonNull String label,
-                        @Nullable @DrawableRes Integer iconResId,
-                        @Nullable @DrawableRes Integer backgroundResId,
-                        int inputCount, int outputCount)
-    {
-        updateMatrices(); // Ensure coordinate space is updated
-
-        // Use default DP size if provided size is invalid
-        float nodeWidth = (width > 0) ? width : DEFAULT_NODE_WIDTH_DP * density;
-        float nodeHeight = (height > 0) ? height : DEFAULT_NODE_HEIGHT_DP * density;
-
-        String newNodeId = "N_" + UUID.randomUUID().toString().substring(0, 4);
-        NodeShape shape = (iconResId != null || backgroundResId != null) ? NodeShape.CUSTOM_DRAWABLE : NodeShape.RECTANGLE;
-
-        Node newNode = new Node( newNodeId, worldPosition, nodeWidth, nodeHeight, // Use calculated/provided size
-                shape, label, iconResId, backgroundResId,
-                inputCount, outputCount ); // Pass handle counts to constructor
-
-        nodes.add(newNode);
-        updateMaps();
-        Log.d(TAG, "Added new node: " + newNodeId);
-        invalidate();
-    }
-
-
-    // Overload to add node at view center with default 50x50dp size
-    public void addNodeAtCenter(@NonNull String label,
-                                @Nullable @DrawableRes Integer iconResId,
-                                @Nullable @DrawableRes Integer backgroundResId,
-                                int inputCount, int outputCount)
-    {
-        updateMatrices();
-        PointF centerScreen = new PointF(getWidth() / 2f, getHeight() / 2f);
-        PointF centerWorld = screenToWorld(centerScreen.x, centerScreen.y);
-        float nodeW = DEFAULT_NODE_WIDTH_DP * density;
-        float nodeH = DEFAULT_NODE_HEIGHT_DP * density;
-        addNode(centerWorld, nodeW, nodeH, label, iconResId, backgroundResId, inputCount, outputCount);
-    }
-    // Overload to add node using the FAB style (similar to previous)
-
-    // Overload similar to previous FAB method (uses default 50x50dp size)
-    public void addNewCustomNodeWithOutputs(@DrawableRes int drawableResId, @NonNull String label, int outputCount) {
-        // Uses the center method with default size and specified background/handles
-        addNodeAtCenter(label, drawableResId, R.drawable.node_background_shape, 1, outputCount);
-    }
-    public void addNewCustomNode(@DrawableRes int drawableResId, @NonNull String label) {
-        addNewCustomNodeWithOutputs(drawableResId, label, 1); // Default to 1 output
-    }
-    // === END Public Add Node Methods ===
-
-
-
-    // --- Public Data Accessors ---
-    public List<Node> getNodes() { return new ArrayList<>(nodes); }
-    public List<Edge> getEdges() { return new ArrayList<>(edges); }
-
-    // --- Public Listener Setter ---
-    public void setConnectionListener(ConnectionListener listener) { this.connectionListener = listener; }
-
-    // --- Public Configuration Methods ---
-    public void setGridDotColor(@ColorInt int color) { gridDotPaint.setColor(color); invalidate(); }
-    public void setGridSpacing(float spacing) { this.gridSpacing = Math.max(10f, spacing); invalidate(); }
-    public void setGridDotBaseRadius(float radius) { this.gridDotBaseRadius = Math.max(0.5f, radius); invalidate(); }
-    public void setDefaultNodeBgColor(@ColorInt int color) { nodeBgPaint.setColor(color); invalidate(); }
-    public void setDefaultNodeBorderColor(@ColorInt int color) { nodeBorderPaint.setColor(color); invalidate(); }
-    public void setDefaultNodeTextColor(@ColorInt int color) { textPaint.setColor(color); invalidate(); }
-    public void setDefaultNodeTextSize(float sizePixels) { textPaint.setTextSize(sizePixels); invalidate(); }
-    public void setDefaultNodeCornerRadiusDp(float radiusDp) { this.defaultNodeCornerRadiusDp = Math.max(0, radiusDp); invalidate(); }
-    public void setEdgeColor(@ColorInt int color) { edgePaint.setColor(color); setArrowheadColor(color); invalidate(); }
-    public void setEdgeStrokeWidth(float width) { this.defaultEdgeStrokeWidth = Math.max(1f, width); invalidate(); }
-    public void setDrawArrowheads(boolean draw) { this.drawArrowheads = draw; invalidate(); }
-    public void setArrowheadColor(@ColorInt int color) { arrowHeadPaint.setColor(color); invalidate(); }
-    public void setArrowheadSize(float size) { this.defaultArrowheadSize = Math.max(3f, size); arrowHeadPath.reset(); arrowHeadPath.moveTo(-defaultArrowheadSize, defaultArrowheadSize / 2); arrowHeadPath.lineTo(0, 0); arrowHeadPath.lineTo(-defaultArrowheadSize, -defaultArrowheadSize / 2); arrowHeadPath.close(); invalidate(); }
-    public void setTempConnectionColor(@ColorInt int color) { tempConnectionPaint.setColor(color); invalidate(); }
-    public void setHandleInputColor(@ColorInt int color) { handlePaintInput.setColor(color); invalidate(); }
-    public void setHandleOutputColor(@ColorInt int color) { handlePaintOutput.setColor(color); invalidate(); }
-    public void setHandleBorderColor(@ColorInt int color) { handleBorderPaint.setColor(color); invalidate(); }
-    public void setHandleHitRadiusWorld(float radius) { this.handleHitRadiusWorld = Math.max(5f, radius); }
-
-
-
-
-
+package com.anass.halak.reactflow; // Replace with your actual package name
+
+// --- Imports ---
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.ValueAnimator;
+import android.content.Context;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.DashPathEffect;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PathMeasure;
+import android.graphics.PointF;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.util.AttributeSet;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector; // Keep for listener definition
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.animation.DecelerateInterpolator;
+
+import androidx.annotation.ColorInt;
+import androidx.annotation.DrawableRes;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.anass.halak.R; // Import your project's R class
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+public class ReactFlowCanvasView extends View {
+
+    private static final String TAG = "ReactFlowCanvasView";
+    private float gridSpacing = 50f;
+    private static final float GRID_DOT_RADIUS = 1.5f;
+
+    // --- State ---
+    private List<Node> nodes = new ArrayList<>();
+    private List<Edge> edges = new ArrayList<>();
+    private Map<String, Handle> handleMap = new HashMap<>();
+    private Map<String, Node> nodeMap = new HashMap<>();
+
+    // --- Density ---
+    private float density;
+
+    // --- NEW: Default Node Dimensions ---
+    private static final float DEFAULT_NODE_WIDTH_DP = 55f; // Adjusted slightly wider
+    private static final float DEFAULT_NODE_HEIGHT_DP = 55f;
+
+
+    // --- Panning and Zooming ---
+    private float offsetX = 0f, offsetY = 0f, scaleFactor = 1.0f;
+    private static final float MIN_SCALE = 0.1f;
+    private static final float MAX_SCALE = 3.0f;
+    private static final float ZOOM_STEP = 1.2f;
+    private Matrix viewMatrix = new Matrix(), inverseViewMatrix = new Matrix();
+    private float lastTouchX, lastTouchY;
+    private boolean isPanning = false;
+    private int activePointerId = MotionEvent.INVALID_POINTER_ID;
+
+    // --- Interaction States ---
+    private Node draggingNode = null;
+    private float dragNodeStartXOffsetWorld, dragNodeStartYOffsetWorld;
+    private float handleHitRadiusWorld = 15f; // Configurable hit radius
+    private boolean isDrawingConnection = false;
+    @Nullable private Handle connectionStartHandle = null;
+    @NonNull private PointF connectionCurrentDragPointWorld = new PointF();
+    @Nullable private Handle potentialTargetHandle = null;
+
+    // --- Drawing Tools & Configurable Properties ---
+    private GraphPainter painter; // Owns the node/edge/handle paints below, shared with FlowExporter
+    private Paint gridPaint, nodeBgPaint, nodeBorderPaint, edgePaint, textPaint;
+    private Paint handlePaintInput, handlePaintOutput, handleBorderPaint, tempConnectionPaint;
+    private Paint gridDotPaint;
+    private Paint arrowHeadPaint;
+    private Paint selectedEdgePaint;
+    private Paint handleLabelPaint;
+    private Path edgeDrawingPath = new Path();
+    private DashPathEffect animatedEdgeDashEffect = GraphPainter.ANIMATED_EDGE_DASH;
+    private float gridDotBaseRadius = 1.5f;
+
+    // --- Async Scene Preparation ---
+    private boolean asyncScenePreparation = false; // Off: geometry computed in onDraw (default)
+    @Nullable private ScenePreparer scenePreparer = null;
+
+    // --- Paged Storage ---
+    @Nullable private TiledGraphStore tiledGraphStore = null; // When set, nodes/edges hold only the resident tiles
+    private final PointF persistedSourcePoint = new PointF(), persistedTargetPoint = new PointF();
+    @Nullable private Map<String, float[]> storedEdgeEndpoints = null; // See getStoredEdgeEndpoints()
+    @Nullable private GraphSnapshot storedEdgeEndpointsSnapshot = null;
+
+    // --- Edge Bundling ---
+    private boolean edgeBundling = false;
+    @Nullable private EdgeBundler edgeBundler = null; // Non-null while bundling is enabled; released on detach, recreated on the next draw
+    private float edgeBundleCellSizeWorld = 96f; // Finest bundling grid; doubles per zoom-out level
+    private static final int MAX_BUNDLE_LEVEL = EdgeBundler.LEVELS - 1;
+
+    // --- Minimap ---
+    @Nullable private FlowMinimapView minimapView = null;
+
+    // --- Edge Selection ---
+    public interface EdgeTapListener {
+        void onEdgeTapped(@NonNull Edge edge);
+        void onEdgeLongPressed(@NonNull Edge edge);
+    }
+    @Nullable private EdgeTapListener edgeTapListener = null;
+    private final EdgeHitIndex edgeHitIndex = new EdgeHitIndex(this::resolveEdgeEndpoints);
+    private float edgeHitToleranceWorld = 12f; // Configurable tap distance from the curve, at scale 1 (see edgeHitTolerance())
+    @Nullable private Edge selectedEdge = null;
+    @Nullable private Edge pressedEdge = null;
+    private boolean isEdgePressActive = false, edgeLongPressFired = false;
+    private float edgePressDownX, edgePressDownY;
+    private int touchSlop;
+    private final Runnable edgeLongPressRunnable = () -> {
+        if (!isEdgePressActive || pressedEdge == null) return;
+        edgeLongPressFired = true;
+        selectedEdge = pressedEdge;
+        if (edgeTapListener != null) edgeTapListener.onEdgeLongPressed(pressedEdge);
+        invalidate();
+    };
+
+    // --- Label Search & Focus ---
+    private final LabelSearchIndex labelSearchIndex = new LabelSearchIndex();
+    private static final long FOCUS_ANIMATION_MS = 350L;
+    private static final long FOCUS_HIGHLIGHT_MS = 2000L;
+    private static final float FOCUS_MIN_SCALE = 0.8f; // Zoom in at least this far so the focused label is readable
+    @Nullable private ValueAnimator focusAnimator = null;
+    @Nullable private String focusedNodeId = null;
+    private Paint focusHighlightPaint;
+    private final Runnable clearFocusHighlightRunnable = () -> { focusedNodeId = null; invalidate(); };
+
+    private final TiledGraphStore.Host tiledStoreHost = new TiledGraphStore.Host() {
+        @Override public void onTilePagedIn(@NonNull List<Node> pagedNodes, @NonNull List<Edge> pagedEdges) {
+            flushGraphChanges(); // User edits first, so the paging delta applies on top of them
+            List<GraphChange> delta = new ArrayList<>(pagedNodes.size() + pagedEdges.size());
+            for (Node node : pagedNodes) {
+                nodes.add(node); nodeMap.put(node.id, node);
+                for (Handle handle : node.getHandleArray()) { handleMap.put(handle.id, handle); handle.updateWorldPosition(node); }
+                labelSearchIndex.put(node.id, node.label);
+                edgeHitIndex.markNodeMoved(node.id); // Resident edges now end at the live node
+                delta.add(GraphChange.nodeAdded(node));
+            }
+            for (Edge edge : pagedEdges) { edges.add(edge); edgeHitIndex.addEdge(edge); delta.add(GraphChange.edgeAdded(edge)); }
+            applyResidentDelta(delta);
+        }
+        @Override public void onTilePagedOut(@NonNull List<Node> pagedNodes, @NonNull List<Edge> pagedEdges) {
+            flushGraphChanges();
+            Set<Node> goneNodes = new HashSet<>(pagedNodes); Set<Edge> goneEdges = new HashSet<>(pagedEdges);
+            for (Node node : pagedNodes) if (interactionInvolves(node.id)) { resetInteractions(); break; }
+            if (goneEdges.contains(selectedEdge)) selectedEdge = null;
+            nodes.removeAll(goneNodes); edges.removeAll(goneEdges);
+            List<GraphChange> delta = new ArrayList<>(pagedNodes.size() + pagedEdges.size());
+            for (Edge edge : pagedEdges) { edgeHitIndex.removeEdge(edge.id); delta.add(GraphChange.edgeRemoved(edge)); }
+            for (Node node : pagedNodes) {
+                nodeMap.remove(node.id);
+                for (Handle handle : node.getHandleArray()) handleMap.remove(handle.id);
+                labelSearchIndex.remove(node.id);
+                edgeHitIndex.markNodeMoved(node.id); // Edges kept by other tiles fall back to persisted endpoints
+                delta.add(GraphChange.nodeRemoved(node.id));
+            }
+            applyResidentDelta(delta);
+        }
+        @Nullable @Override public PointF findLiveHandlePosition(@NonNull String handleId) {
+            Handle handle = handleMap.get(handleId);
+            return handle != null ? handle.worldPosition : null;
+        }
+    };
+
+
+    // --- Listener ---
+    public interface ConnectionListener {
+        void onEdgeConnected(Edge newEdge);
+        void onConnectionAttempted(Handle startHandle, @Nullable Handle endHandle);
+    }
+    private ConnectionListener connectionListener = null;
+
+    // --- Graph Change Feed ---
+    // Deltas are coalesced per element and delivered once per frame (or when the outermost transaction ends)
+    public interface GraphChangeListener {
+        void onGraphChanged(long version, @NonNull List<GraphChange> changes);
+    }
+    private GraphChangeListener graphChangeListener = null;
+    private final LinkedHashMap<String, GraphChange> pendingGraphChanges = new LinkedHashMap<>();
+    private boolean graphChangeFlushScheduled = false;
+    private int graphTransactionDepth = 0;
+    private long graphVersion = 0L;
+    private volatile GraphSnapshot graphSnapshot = GraphSnapshot.EMPTY; // Published on the UI thread, readable from any thread
+    private final Runnable graphChangeFlushRunnable = () -> {
+        graphChangeFlushScheduled = false;
+        if (graphTransactionDepth == 0) flushGraphChanges(); // Otherwise endGraphTransaction() flushes
+    };
+
+    // --- Constructors & Init ---
+    public ReactFlowCanvasView(Context context) { super(context); init(context); }
+    public ReactFlowCanvasView(Context context, @Nullable AttributeSet attrs) { super(context, attrs); init(context); }
+    public ReactFlowCanvasView(Context context, @Nullable AttributeSet attrs, int defStyleAttr) { super(context, attrs, defStyleAttr); init(context); }
+
+    private void init(Context context) {
+        density = context.getResources().getDisplayMetrics().density;
+
+        // Initialize Paints (node, edge and handle paints come with their defaults from the painter)
+        painter = new GraphPainter(context);
+        nodeBgPaint = painter.nodeBgPaint; nodeBorderPaint = painter.nodeBorderPaint; edgePaint = painter.edgePaint; textPaint = painter.textPaint;
+        handlePaintInput = painter.handlePaintInput; handlePaintOutput = painter.handlePaintOutput; handleBorderPaint = painter.handleBorderPaint;
+        arrowHeadPaint = painter.arrowHeadPaint; handleLabelPaint = painter.handleLabelPaint;
+        gridDotPaint = new Paint(); gridDotPaint.setStyle(Paint.Style.FILL); gridDotPaint.setAntiAlias(true);
+        tempConnectionPaint = new Paint(); tempConnectionPaint.setStyle(Paint.Style.STROKE); tempConnectionPaint.setAntiAlias(true); tempConnectionPaint.setPathEffect(new DashPathEffect(new float[]{15, 10}, 0));
+        focusHighlightPaint = new Paint(); focusHighlightPaint.setStyle(Paint.Style.STROKE); focusHighlightPaint.setAntiAlias(true);
+        selectedEdgePaint = new Paint(); selectedEdgePaint.setStyle(Paint.Style.STROKE); selectedEdgePaint.setAntiAlias(true); selectedEdgePaint.setStrokeJoin(Paint.Join.ROUND); selectedEdgePaint.setStrokeCap(Paint.Cap.ROUND);
+        touchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
+
+        // Apply Default Configurable Values
+        setGridDotColor(Color.WHITE); // Slightly lighter grid
+        setTempConnectionColor(Color.parseColor("#FF9800")); // Orange temp line
+        setSelectedEdgeColor(Color.parseColor("#FF9800")); // Orange, like the temp line
+        setFocusHighlightColor(Color.parseColor("#03A9F4")); // Light blue ring around a focused search result
+
+        addSampleData();
+        updateMaps();
+        graphSnapshot = GraphSnapshot.of(graphVersion, nodes, edges);
+        edgeHitIndex.rebuild(edges);
+        labelSearchIndex.rebuild(nodes);
+        setBackgroundColor(Color.DKGRAY); // Lighter background overall
+    }
+
+    // --- Data Loading & Management ---
+    private void addSampleData() {
+        nodes.clear(); edges.clear();
+        float nodeW = DEFAULT_NODE_WIDTH_DP * density;
+        float nodeH = DEFAULT_NODE_HEIGHT_DP * density;
+        // Use the full Node constructor with new dimensions
+        // REPLACE R.drawable... with YOUR actual drawable IDs
+        nodes.add(new Node("N1", new PointF(150f, 200f), nodeW, nodeH, NodeShape.CUSTOM_DRAWABLE, "Schedule", R.drawable.ic_launcher_foreground, R.drawable.node_background_shape, 1, 1));
+        nodes.add(new Node("N2", new PointF(350f, 200f), nodeW, nodeH, NodeShape.CUSTOM_DRAWABLE, "HTTP", R.drawable.ic_launcher_foreground, R.drawable.node_background_shape, 1, 1));
+        nodes.add(new Node("N3", new PointF(550f, 200f), nodeW, nodeH, NodeShape.CUSTOM_DRAWABLE, "Code", R.drawable.ic_launcher_foreground, R.drawable.node_background_shape, 1, 1));
+        nodes.add(new Node("N4", new PointF(750f, 200f), nodeW, nodeH, NodeShape.CUSTOM_DRAWABLE, "Sheets", R.drawable.ic_launcher_foreground, R.drawable.node_background_shape, 1, 1));
+
+        updateMaps(); // Update maps after adding nodes
+
+        // Connect sample nodes
+        Handle n1Out = nodeMap.get("N1").outputHandles.get(0); Handle n2In = nodeMap.get("N2").inputHandles.get(0);
+        Handle n2Out = nodeMap.get("N2").outputHandles.get(0); Handle n3In = nodeMap.get("N3").inputHandles.get(0);
+        Handle n3Out = nodeMap.get("N3").outputHandles.get(0); Handle n4In = nodeMap.get("N4").inputHandles.get(0);
+
+        if (n1Out != null && n2In != null) edges.add(new Edge("N1", n1Out.id, "N2", n2In.id, true));
+        if (n2Out != null && n3In != null) edges.add(new Edge("N2", n2Out.id, "N3", n3In.id, true));
+        if (n3Out != null && n4In != null) edges.add(new Edge("N3", n3Out.id, "N4", n4In.id, true));
+    }
+
+    private void updateMaps() {
+        nodeMap.clear();
+        handleMap.clear();
+        for (Node node : nodes) {
+            nodeMap.put(node.id, node);
+            for (Handle handle : node.getHandleArray()) {
+                handleMap.put(handle.id, handle);
+                handle.updateWorldPosition(node);
+            }
+        }
+    }
+
+    private void updateAllHandleWorldPositions() {
+        for (Node node : nodes) {
+            updateHandleWorldPositions(node);
+        }
+    }
+
+    private void updateHandleWorldPositions(Node node) {
+        for (Handle handle : node.getHandleArray()) {
+            handle.updateWorldPosition(node);
+        }
+    }
+
+    // Live handle position, or the persisted one when the endpoint's tile is paged out
+    @Nullable private PointF resolveEdgeEndpoint(Edge edge, boolean source) {
+        Handle handle = handleMap.get(source ? edge.sourceHandleId : edge.targetHandleId);
+        if (handle != null) return handle.worldPosition;
+        PointF out = source ? persistedSourcePoint : persistedTargetPoint;
+        if (tiledGraphStore != null && tiledGraphStore.getPersistedEndpoint(edge.id, source, out)) return out;
+        return null;
+    }
+
+    private boolean resolveEdgeEndpoints(@NonNull Edge edge, @NonNull float[] out) {
+        PointF start = resolveEdgeEndpoint(edge, true);
+        if (start == null) return false;
+        out[0] = start.x; out[1] = start.y; // Read before the second call may reuse a shared point
+        PointF end = resolveEdgeEndpoint(edge, false);
+        if (end == null) return false;
+        out[2] = end.x; out[3] = end.y;
+        return true;
+    }
+
+    // --- Coordinate Transformation Helpers ---
+    private void updateMatrices() {
+        viewMatrix.reset();
+        viewMatrix.postTranslate(offsetX, offsetY);
+        viewMatrix.postScale(scaleFactor, scaleFactor);
+        if (!viewMatrix.invert(inverseViewMatrix)) {
+            Log.e(TAG, "Matrix inversion failed!");
+            inverseViewMatrix.reset();
+        }
+    }
+
+    private PointF screenToWorld(float screenX, float screenY) {
+        float[] pts = {screenX, screenY};
+        inverseViewMatrix.mapPoints(pts);
+        return new PointF(pts[0], pts[1]);
+    }
+
+    // --- Drawing ---
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        updateMatrices();
+        if (tiledGraphStore != null) {
+            PointF topLeftWorld = screenToWorld(0, 0); PointF bottomRightWorld = screenToWorld(getWidth(), getHeight());
+            tiledGraphStore.updateViewport(topLeftWorld.x, topLeftWorld.y, bottomRightWorld.x, bottomRightWorld.y);
+        }
+        if (minimapView != null) minimapView.onViewportChanged();
+        if (edgeBundling && edgeBundler == null) startEdgeBundler();
+        if (asyncScenePreparation) { drawPrepared(canvas); return; }
+        updateAllHandleWorldPositions();
+
+        canvas.save();
+        canvas.concat(viewMatrix); // Apply pan/zoom
+
+        drawGrid(canvas);
+        if (edgeBundler != null && drawBundledEdges(canvas)) drawSelectedEdge(canvas);
+        else drawEdges(canvas);
+        drawNodesAndHandles(canvas);
+        drawFocusHighlight(canvas);
+        drawTemporaryConnection(canvas);
+
+        canvas.restore(); // Remove pan/zoom
+    }
+
+    // Async path: geometry comes from the latest RenderList built by the ScenePreparer worker
+    private void drawPrepared(Canvas canvas) {
+        painter.setScale(scaleFactor);
+        if (scenePreparer == null) scenePreparer = new ScenePreparer(this::invalidate);
+        requestScenePreparation();
+
+        canvas.save();
+        canvas.concat(viewMatrix);
+        drawGrid(canvas);
+        RenderList list = scenePreparer.getFront();
+        if (list != null) replayRenderList(canvas, list);
+        drawSelectedEdge(canvas);
+        if (draggingNode != null) { // Drawn live on top so the dragged node never lags behind the finger
+            RectF bounds = draggingNode.getBounds();
+            drawNodeContent(canvas, draggingNode, bounds);
+            painter.drawNodeLabel(canvas, draggingNode.label, bounds.centerX(), bounds.bottom + painter.getLabelMargin() - textPaint.ascent());
+            drawHandlesForNode(canvas, draggingNode);
+        }
+        if (connectionStartHandle != null) {
+            Node startNode = nodeMap.get(connectionStartHandle.nodeId);
+            if (startNode != null) connectionStartHandle.updateWorldPosition(startNode);
+        }
+        if (potentialTargetHandle != null && isDrawingConnection) drawHandleHighlight(canvas, potentialTargetHandle);
+        drawFocusHighlight(canvas);
+        drawTemporaryConnection(canvas);
+        canvas.restore();
+    }
+
+    private void requestScenePreparation() {
+        PointF topLeftWorld = screenToWorld(0, 0); PointF bottomRightWorld = screenToWorld(getWidth(), getHeight());
+        float padding = 40f * density / scaleFactor; // Room for labels and handles of nodes just off-screen
+        scenePreparer.request(new ScenePreparer.Request(graphSnapshot, getStoredEdgeEndpoints(), offsetX, offsetY, scaleFactor,
+                topLeftWorld.x - padding, topLeftWorld.y - padding, bottomRightWorld.x + padding, bottomRightWorld.y + padding,
+                edgeBundler == null, painter.drawArrowheads, painter.getArrowSize(), painter.getLabelMargin(), textPaint.ascent()));
+    }
+
+    private void replayRenderList(Canvas canvas, RenderList list) {
+        if (edgeBundler != null) drawBundledEdges(canvas); // The list holds no edges in this mode
+        painter.drawRenderList(canvas, list, draggingNode != null ? draggingNode.id : null);
+    }
+
+    private void drawGrid(Canvas canvas) {
+        float scaledDotRadius = Math.max(0.5f, Math.min(3f, gridDotBaseRadius / scaleFactor * 1.2f));
+        gridDotPaint.setAlpha((int) (Math.min(1.0f, scaleFactor) * 150));
+
+        PointF topLeftWorld = screenToWorld(0, 0); PointF bottomRightWorld = screenToWorld(getWidth(), getHeight());
+        float padding = gridSpacing * 2; float left = topLeftWorld.x - padding; float top = topLeftWorld.y - padding; float right = bottomRightWorld.x + padding; float bottom = bottomRightWorld.y + padding;
+        float startX = (float) (Math.floor(left / gridSpacing) * gridSpacing); float endX = (float) (Math.ceil(right / gridSpacing) * gridSpacing);
+        float startY = (float) (Math.floor(top / gridSpacing) * gridSpacing); float endY = (float) (Math.ceil(bottom / gridSpacing) * gridSpacing);
+
+        float minVisibleSpacing = 4.0f; if (gridSpacing * scaleFactor < minVisibleSpacing) return;
+
+        for (float x = startX; x <= endX; x += gridSpacing) {
+            for (float y = startY; y <= endY; y += gridSpacing) {
+                canvas.drawCircle(x, y, scaledDotRadius, gridDotPaint);
+            }
+        }
+    }
+
+    private void drawEdges(Canvas canvas) {
+        painter.setScale(scaleFactor);
+        float baseStrokeWidth = painter.getEdgeStrokeWidth();
+        edgePaint.setStrokeWidth(baseStrokeWidth);
+        arrowHeadPaint.setColor(edgePaint.getColor());
+        float scaledArrowSize = painter.getArrowSize();
+
+        PathMeasure pathMeasure = new PathMeasure();
+
+        for (Edge edge : edges) {
+            PointF start = resolveEdgeEndpoint(edge, true); PointF end = resolveEdgeEndpoint(edge, false);
+            if (start != null && end != null) {
+                buildEdgePath(start, end);
+
+                if (edge == selectedEdge) { // Solid and thicker, under nothing else
+                    selectedEdgePaint.setStrokeWidth(baseStrokeWidth * 2.5f);
+                    canvas.drawPath(edgeDrawingPath, selectedEdgePaint);
+                } else {
+                    edgePaint.setPathEffect(edge.animated ? animatedEdgeDashEffect : null);
+                    canvas.drawPath(edgeDrawingPath, edgePaint);
+                    edgePaint.setPathEffect(null);
+                }
+
+                if (painter.drawArrowheads) {
+                    pathMeasure.setPath(edgeDrawingPath, false); float pathLength = pathMeasure.getLength();
+                    if (pathLength > 0.01f) {
+                        float[] pos = new float[2]; float[] tan = new float[2];
+                        pathMeasure.getPosTan(pathLength, pos, tan);
+                        double angle = Math.atan2(tan[1], tan[0]);
+
+                        Path scaledArrowHeadPath = new Path();
+                        scaledArrowHeadPath.moveTo(-scaledArrowSize, scaledArrowSize / 2);
+                        scaledArrowHeadPath.lineTo(0, 0);
+                        scaledArrowHeadPath.lineTo(-scaledArrowSize, -scaledArrowSize / 2);
+                        scaledArrowHeadPath.close();
+
+                        Matrix arrowMatrix = new Matrix(); arrowMatrix.setRotate((float) Math.toDegrees(angle)); arrowMatrix.postTranslate(pos[0], pos[1]);
+                        Path transformedArrow = new Path();
+                        scaledArrowHeadPath.transform(arrowMatrix, transformedArrow);
+                        canvas.drawPath(transformedArrow, arrowHeadPaint);
+                    }
+                }
+            }
+        }
+    }
+
+    // Bundled mode: a few strokes per visible chunk; false until the first bundles are ready
+    private boolean drawBundledEdges(Canvas canvas) {
+        edgeBundler.setLevel(currentBundleLevel()); // Cached per level: zooming back and forth does not rebuild
+        EdgeBundler.Bundles bundles = edgeBundler.getBundles();
+        if (bundles == null) return false;
+
+        painter.setScale(scaleFactor);
+        float baseStrokeWidth = painter.getEdgeStrokeWidth();
+        float s = painter.getArrowSize();
+        arrowHeadPaint.setColor(edgePaint.getColor());
+        PointF topLeftWorld = screenToWorld(0, 0); PointF bottomRightWorld = screenToWorld(getWidth(), getHeight());
+        float padding = baseStrokeWidth * 4 + s; // Thick trunks and arrowheads reach past the chunk's path bounds
+        float left = topLeftWorld.x - padding, top = topLeftWorld.y - padding, right = bottomRightWorld.x + padding, bottom = bottomRightWorld.y + padding;
+
+        for (EdgeBundler.Chunk chunk : bundles.chunks) {
+            RectF b = chunk.bounds;
+            if (b.right < left || b.left > right || b.bottom < top || b.top > bottom) continue;
+            for (int i = 0; i < chunk.trunks.length; i++) {
+                if (chunk.trunks[i] == null) continue;
+                int widthClass = i % EdgeBundler.WIDTH_CLASSES;
+                edgePaint.setStrokeWidth(baseStrokeWidth * (1f + 0.75f * widthClass));
+                edgePaint.setPathEffect(i >= EdgeBundler.WIDTH_CLASSES ? animatedEdgeDashEffect : null);
+                canvas.drawPath(chunk.trunks[i], edgePaint);
+            }
+            edgePaint.setPathEffect(null);
+            if (chunk.fans != null) {
+                edgePaint.setStrokeWidth(baseStrokeWidth * 0.75f);
+                canvas.drawPath(chunk.fans, edgePaint);
+            }
+            if (painter.drawArrowheads && chunk.arrowCount > 0) { // All arrowheads of the chunk in one path
+                edgeDrawingPath.reset();
+                float[] a = chunk.arrows;
+                for (int i = 0; i < chunk.arrowCount; i++) {
+                    int o = i * 4; float x = a[o], y = a[o + 1], ux = a[o + 2], uy = a[o + 3];
+                    edgeDrawingPath.moveTo(x - ux * s - uy * s / 2, y - uy * s + ux * s / 2);
+                    edgeDrawingPath.lineTo(x, y);
+                    edgeDrawingPath.lineTo(x - ux * s + uy * s / 2, y - uy * s - ux * s / 2);
+                    edgeDrawingPath.close();
+                }
+                canvas.drawPath(edgeDrawingPath, arrowHeadPaint);
+            }
+        }
+        edgePaint.setStrokeWidth(baseStrokeWidth);
+        return true;
+    }
+
+    // Coarser grid when zoomed out, where more edges overlap on screen: the cell size doubles per level
+    private int currentBundleLevel() {
+        return scaleFactor >= 1f ? 0 : Math.min(MAX_BUNDLE_LEVEL, (int) Math.ceil(Math.log(1f / scaleFactor) / Math.log(2)));
+    }
+
+    // Drawn live on top of bundles or the prepared list, which do not single out the selection
+    private void drawSelectedEdge(Canvas canvas) {
+        if (selectedEdge == null) return;
+        PointF start = resolveEdgeEndpoint(selectedEdge, true); PointF end = resolveEdgeEndpoint(selectedEdge, false);
+        if (start == null || end == null) return;
+        buildEdgePath(start, end);
+        selectedEdgePaint.setStrokeWidth(painter.getEdgeStrokeWidth() * 2.5f);
+        canvas.drawPath(edgeDrawingPath, selectedEdgePaint);
+    }
+
+    private void buildEdgePath(PointF start, PointF end) {
+        edgeDrawingPath.reset(); edgeDrawingPath.moveTo(start.x, start.y);
+        float midX = (start.x + end.x) / 2; float midY = (start.y + end.y) / 2;
+        float dx = end.x - start.x; float dy = end.y - start.y;
+        float controlOffsetScale = 0.25f;
+        float controlX = midX - dy * controlOffsetScale; float controlY = midY + dx * controlOffsetScale;
+        edgeDrawingPath.quadTo(controlX, controlY, end.x, end.y);
+    }
+
+    // UPDATED: Draw Nodes then Labels then Handles
+    private void drawNodesAndHandles(Canvas canvas) {
+        painter.setScale(scaleFactor);
+
+        RectF tempBounds = new RectF();
+        Rect tempTextBounds = new Rect();
+
+        // --- Draw Node Backgrounds and Icons ---
+        for (Node node : nodes) {
+            tempBounds.set(node.getBounds());
+            drawNodeContent(canvas, node, tempBounds); // Draws background and icon
+        }
+
+        // --- Draw Labels Below Nodes ---
+        for (Node node : nodes) {
+            tempBounds.set(node.getBounds()); // Get bounds again for positioning
+            String label = node.label;
+            textPaint.getTextBounds(label, 0, label.length(), tempTextBounds);
+            float labelY = tempBounds.bottom + painter.getLabelMargin() - textPaint.ascent(); // Position below bottom + margin
+            painter.drawNodeLabel(canvas, label, tempBounds.centerX(), labelY);
+        }
+
+        // --- Draw Handles on Top ---
+        for (Node node : nodes) {
+            drawHandlesForNode(canvas, node);
+        }
+    }
+
+    // Ring around the node most recently focused via focusNode()
+    private void drawFocusHighlight(Canvas canvas) {
+        Node node = focusedNodeId != null ? nodeMap.get(focusedNodeId) : null;
+        if (node == null) return;
+        float strokeWidth = 3f * density / scaleFactor;
+        float inset = -strokeWidth; // Drawn just outside the node border
+        float cornerRadius = painter.getCornerRadius() - inset;
+        RectF bounds = node.getBounds(); bounds.inset(inset, inset);
+        focusHighlightPaint.setStrokeWidth(strokeWidth);
+        canvas.drawRoundRect(bounds, cornerRadius, cornerRadius, focusHighlightPaint);
+    }
+
+    // === UPDATED Helper to Draw Node Background/Content ===
+    private void drawNodeContent(Canvas canvas, Node node, RectF bounds) {
+        painter.drawNodeContent(canvas, node.shape,
+                node.customDrawableResId != null ? node.customDrawableResId : 0,
+                node.backgroundDrawableResId != null ? node.backgroundDrawableResId : 0,
+                node == draggingNode, bounds);
+    }
+
+    private void drawHandlesForNode(Canvas canvas, Node node) {
+        float scaledVisualRadius = painter.getHandleRadius();
+        boolean drawLabels = painter.prepareHandleLabels();
+        for (Handle handle : node.getHandleArray()) {
+            if (handle == potentialTargetHandle && isDrawingConnection) drawHandleHighlight(canvas, handle);
+            painter.drawHandle(canvas, handle.worldPosition.x, handle.worldPosition.y, scaledVisualRadius, handle.type == Handle.Type.INPUT);
+            if (drawLabels && handle.label != null) painter.drawHandleLabel(canvas, handle.label, handle.worldPosition.x, handle.worldPosition.y, node.getHandleSide(handle.type));
+        }
+    }
+
+    private void drawHandleHighlight(Canvas canvas, Handle handle) {
+        float scaledVisualRadius = painter.getHandleRadius();
+        Paint highlightPaint = new Paint((handle.type == Handle.Type.INPUT) ? handlePaintInput : handlePaintOutput); highlightPaint.setAlpha(100);
+        canvas.drawCircle(handle.worldPosition.x, handle.worldPosition.y, scaledVisualRadius * 1.6f, highlightPaint);
+    }
+
+    private void drawTemporaryConnection(Canvas canvas) {
+        if (isDrawingConnection && connectionStartHandle != null) {
+            tempConnectionPaint.setStrokeWidth(Math.max(1.5f, Math.min(6f, 4f / scaleFactor)));
+            canvas.drawLine(connectionStartHandle.worldPosition.x, connectionStartHandle.worldPosition.y,
+                    connectionCurrentDragPointWorld.x, connectionCurrentDragPointWorld.y, tempConnectionPaint);
+        }
+    }
+
+    // --- Public Edge Selection Methods ---
+    @Nullable public Edge findEdgeAtWorldPoint(float worldX, float worldY) { return edgeHitIndex.findEdgeAt(worldX, worldY, edgeHitTolerance()); }
+    @Nullable public Edge getSelectedEdge() { return selectedEdge; }
+    private float edgeHitTolerance() { return edgeHitToleranceWorld / scaleFactor; } // Same finger distance on screen at any zoom
+    public void clearEdgeSelection() { if (selectedEdge != null) { selectedEdge = null; invalidate(); } }
+    public boolean deleteSelectedEdge() { return selectedEdge != null && removeEdge(selectedEdge.id); }
+
+    // --- Public Viewport Methods ---
+    public float getScaleFactor() { return scaleFactor; }
+
+    public void getVisibleWorldRect(@NonNull RectF out) {
+        updateMatrices();
+        PointF topLeftWorld = screenToWorld(0, 0); PointF bottomRightWorld = screenToWorld(getWidth(), getHeight());
+        out.set(topLeftWorld.x, topLeftWorld.y, bottomRightWorld.x, bottomRightWorld.y);
+    }
+
+    // Pans (without zooming) so that the given world point is at the view center
+    public void centerOnWorldPoint(float worldX, float worldY) {
+        // viewMatrix maps world -> screen as (world + offset) * scale
+        offsetX = getWidth() / 2f / scaleFactor - worldX;
+        offsetY = getHeight() / 2f / scaleFactor - worldY;
+        invalidate();
+    }
+
+    // --- Public Search Methods ---
+    // Resident nodes whose label matches the query, best match first (exact, label prefix, word prefix, substring).
+    // One- and two-letter queries only match the start of a word.
+    @NonNull public List<Node> searchNodes(@NonNull String query, int limit) {
+        List<Node> result = new ArrayList<>();
+        for (String nodeId : labelSearchIndex.search(query, limit)) {
+            Node node = nodeMap.get(nodeId);
+            if (node != null) result.add(node);
+        }
+        return result;
+    }
+
+    // Animates pan/zoom to center the node and highlights it for a moment; false if the node is not loaded
+    public boolean focusNode(@NonNull String nodeId) {
+        Node node = nodeMap.get(nodeId);
+        if (node == null) return false;
+        if (focusAnimator != null) focusAnimator.cancel();
+        final float startScale = scaleFactor;
+        final float endScale = Math.min(MAX_SCALE, Math.max(FOCUS_MIN_SCALE, scaleFactor));
+        // World point currently at the view center, from screen = (world + offset) * scale
+        final float startX = getWidth() / 2f / startScale - offsetX, startY = getHeight() / 2f / startScale - offsetY;
+        final float endX = node.position.x, endY = node.position.y;
+
+        focusedNodeId = nodeId;
+        removeCallbacks(clearFocusHighlightRunnable);
+        postDelayed(clearFocusHighlightRunnable, FOCUS_ANIMATION_MS + FOCUS_HIGHLIGHT_MS);
+
+        ValueAnimator animator = ValueAnimator.ofFloat(0f, 1f);
+        animator.setDuration(FOCUS_ANIMATION_MS);
+        animator.setInterpolator(new DecelerateInterpolator());
+        animator.addUpdateListener(animation -> {
+            float t = (float) animation.getAnimatedValue();
+            // Zoom geometrically so the speed of the zoom looks constant
+            scaleFactor = (float) (startScale * Math.pow(endScale / startScale, t));
+            float centerX = startX + (endX - startX) * t, centerY = startY + (endY - startY) * t;
+            offsetX = getWidth() / 2f / scaleFactor - centerX;
+            offsetY = getHeight() / 2f / scaleFactor - centerY;
+            invalidate();
+        });
+        animator.addListener(new AnimatorListenerAdapter() {
+            @Override public void onAnimationEnd(Animator animation) { if (focusAnimator == animation) focusAnimator = null; }
+        });
+        focusAnimator = animator;
+        animator.start();
+        return true;
+    }
+
+    public void clearFocusHighlight() {
+        removeCallbacks(clearFocusHighlightRunnable);
+        if (focusedNodeId != null) { focusedNodeId = null; invalidate(); }
+    }
+
+    // Use FlowMinimapView.setCanvasView() instead of calling this directly
+    void setMinimapView(@Nullable FlowMinimapView minimap) {
+        this.minimapView = minimap;
+        if (minimap != null) minimap.onGraphReplaced(graphSnapshot);
+    }
+
+    // --- Public Zoom Methods ---
+    public void zoomIn() { applyZoom(ZOOM_STEP); }
+    public void zoomOut() { applyZoom(1.0f / ZOOM_STEP); }
+    private void applyZoom(float scaleMultiplier) {
+        float oldScaleFactor = scaleFactor;
+        float newScaleFactor = oldScaleFactor * scaleMultiplier;
+        newScaleFactor = Math.max(MIN_SCALE, Math.min(newScaleFactor, MAX_SCALE));
+        float actualScaleChange = newScaleFactor / oldScaleFactor;
+        if (actualScaleChange != 1.0f) {
+            float viewCenterX = getWidth() / 2f; float viewCenterY = getHeight() / 2f;
+            offsetX = viewCenterX - (viewCenterX - offsetX) * actualScaleChange;
+            offsetY = viewCenterY - (viewCenterY - offsetY) * actualScaleChange;
+            scaleFactor = newScaleFactor;
+            Log.d(TAG, "Applied Zoom: New Scale=" + scaleFactor);
+            invalidate();
+        }
+    }
+
+    // --- Touch Input Handling ---
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        updateMatrices();
+
+        final int action = event.getActionMasked();
+        final int pointerIndex = event.getActionIndex();
+        final int pointerId = event.getPointerId(pointerIndex);
+        final int activePointerIndex = (activePointerId != MotionEvent.INVALID_POINTER_ID) ? event.findPointerIndex(activePointerId) : 0;
+
+        if (activePointerIndex < 0 || activePointerIndex >= event.getPointerCount()) {
+            if ((action == MotionEvent.ACTION_MOVE || action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) && activePointerId != MotionEvent.INVALID_POINTER_ID) { resetInteractions(); return true; }
+            else if (action != MotionEvent.ACTION_POINTER_UP && action != MotionEvent.ACTION_DOWN) { return true; }
+        }
+
+        float currentX = (activePointerIndex >= 0 && activePointerIndex < event.getPointerCount()) ? event.getX(activePointerIndex) : event.getX(0);
+        float currentY = (activePointerIndex >= 0 && activePointerIndex < event.getPointerCount()) ? event.getY(activePointerIndex) : event.getY(0);
+        PointF worldPoint = screenToWorld(currentX, currentY);
+
+        switch (action) {
+            case MotionEvent.ACTION_DOWN:
+                if (focusAnimator != null) focusAnimator.cancel(); // The user takes over the viewport
+                activePointerId = event.getPointerId(0); lastTouchX = currentX; lastTouchY = currentY;
+                PointF worldPointDown = screenToWorld(lastTouchX, lastTouchY);
+                Handle touchedHandle = findHandleAtWorldPoint(worldPointDown);
+                if (touchedHandle != null) { // Start Connection
+                    isDrawingConnection = true; connectionStartHandle = touchedHandle;
+                    connectionCurrentDragPointWorld.set(worldPointDown); draggingNode = null; isPanning = false;
+                } else { // Try Drag Node
+                    draggingNode = findNodeContainingWorldPoint(worldPointDown);
+                    if (draggingNode != null) {
+                        dragNodeStartXOffsetWorld = worldPointDown.x - draggingNode.position.x;
+                        dragNodeStartYOffsetWorld = worldPointDown.y - draggingNode.position.y;
+                        isDrawingConnection = false; isPanning = false; bringNodeToFront(draggingNode);
+                    } else { // Pan, or tap/long-press on an edge
+                        isDrawingConnection = false; draggingNode = null; isPanning = true;
+                        beginEdgePress(worldPointDown, currentX, currentY);
+                    }
+                }
+                invalidate();
+                break;
+
+            case MotionEvent.ACTION_MOVE:
+                if (activePointerId == MotionEvent.INVALID_POINTER_ID || activePointerIndex < 0) break;
+                float dx = currentX - lastTouchX; float dy = currentY - lastTouchY;
+                if (isDrawingConnection) { // Update temporary line
+                    connectionCurrentDragPointWorld.set(worldPoint);
+                    potentialTargetHandle = findHandleAtWorldPoint(worldPoint);
+                    if (potentialTargetHandle != null && !isValidConnectionTarget(connectionStartHandle, potentialTargetHandle)) { potentialTargetHandle = null; }
+                    invalidate();
+                } else if (draggingNode != null) { // Drag selected node
+                    draggingNode.position.set(worldPoint.x - dragNodeStartXOffsetWorld, worldPoint.y - dragNodeStartYOffsetWorld);
+                    updateHandleWorldPositions(draggingNode);
+                    recordGraphChange(GraphChange.nodeMoved(draggingNode));
+                    invalidate();
+                } else if (isPanning) { // Pan the canvas
+                    if (isEdgePressActive && Math.hypot(currentX - edgePressDownX, currentY - edgePressDownY) > touchSlop) cancelEdgePress();
+                    offsetX += dx; offsetY += dy;
+                    invalidate();
+                }
+                lastTouchX = currentX; lastTouchY = currentY;
+                break;
+
+            case MotionEvent.ACTION_UP: case MotionEvent.ACTION_CANCEL:
+                if (isDrawingConnection && connectionStartHandle != null) { // Attempt to finalize connection
+                    Handle targetHandle = findHandleAtWorldPoint(worldPoint);
+                    if (targetHandle != null && isValidConnectionTarget(connectionStartHandle, targetHandle)) {
+                        createEdge(connectionStartHandle, targetHandle);
+                    }
+                    if (connectionListener != null) { connectionListener.onConnectionAttempted(connectionStartHandle, targetHandle); }
+                }
+                if (action == MotionEvent.ACTION_UP && isEdgePressActive && !edgeLongPressFired) onEdgeTap(pressedEdge);
+                resetInteractions(); invalidate();
+                break;
+
+            case MotionEvent.ACTION_POINTER_UP:
+                final int pointerUpId = event.getPointerId(pointerIndex);
+                if (pointerUpId == activePointerId) { // If the primary finger was lifted
+                    final int newPointerIndex = (pointerIndex == 0) ? 1 : 0;
+                    if (newPointerIndex < event.getPointerCount()) { // If another finger remains
+                        activePointerId = event.getPointerId(newPointerIndex); lastTouchX = event.getX(newPointerIndex); lastTouchY = event.getY(newPointerIndex);
+                        if(isDrawingConnection || draggingNode != null) { // Cancel ongoing interaction if primary finger changed
+                            if(isDrawingConnection && connectionStartHandle != null && connectionListener != null) { connectionListener.onConnectionAttempted(connectionStartHandle, null); }
+                            resetInteractions(); invalidate();
+                        }
+                    } else { // Last finger lifted
+                        if (isDrawingConnection && connectionStartHandle != null) {
+                            PointF lastWorldPoint = screenToWorld(event.getX(pointerIndex), event.getY(pointerIndex));
+                            Handle targetHandle = findHandleAtWorldPoint(lastWorldPoint);
+                            if (targetHandle != null && isValidConnectionTarget(connectionStartHandle, targetHandle)) { createEdge(connectionStartHandle, targetHandle); }
+                            if (connectionListener != null) { connectionListener.onConnectionAttempted(connectionStartHandle, targetHandle); }
+                        }
+                        resetInteractions(); invalidate();
+                    }
+                }
+                break;
+        }
+        return true; // We handled the event
+    }
+
+    // --- Reset Interactions ---
+    private void resetInteractions() {
+        activePointerId = MotionEvent.INVALID_POINTER_ID; isPanning = false; draggingNode = null;
+        isDrawingConnection = false; connectionStartHandle = null; potentialTargetHandle = null;
+        connectionCurrentDragPointWorld.set(0, 0); dragNodeStartXOffsetWorld = 0; dragNodeStartYOffsetWorld = 0;
+        cancelEdgePress();
+    }
+
+    // True while a node drag or a connection drag holds on to the node or one of its handles
+    private boolean interactionInvolves(@NonNull String nodeId) {
+        return (draggingNode != null && draggingNode.id.equals(nodeId))
+                || (connectionStartHandle != null && connectionStartHandle.nodeId.equals(nodeId))
+                || (potentialTargetHandle != null && potentialTargetHandle.nodeId.equals(nodeId));
+    }
+
+    // --- Edge Tap / Long-Press ---
+    private void beginEdgePress(PointF worldPoint, float screenX, float screenY) {
+        pressedEdge = edgeHitIndex.findEdgeAt(worldPoint.x, worldPoint.y, edgeHitTolerance());
+        isEdgePressActive = true; edgeLongPressFired = false;
+        edgePressDownX = screenX; edgePressDownY = screenY;
+        if (pressedEdge != null) postDelayed(edgeLongPressRunnable, ViewConfiguration.getLongPressTimeout());
+    }
+
+    private void cancelEdgePress() {
+        removeCallbacks(edgeLongPressRunnable);
+        isEdgePressActive = false; pressedEdge = null;
+    }
+
+    // Tapping an edge selects it; tapping empty canvas clears the selection
+    private void onEdgeTap(@Nullable Edge edge) {
+        selectedEdge = edge;
+        if (edge != null && edgeTapListener != null) edgeTapListener.onEdgeTapped(edge);
+        invalidate();
+    }
+
+    // --- Hit Testing ---
+    @Nullable private Handle findHandleAtWorldPoint(PointF worldPoint) {
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            Node node = nodes.get(i);
+            // Handles sit on or near the node's border, so anything outside the inflated bounds can be skipped
+            float pad = handleHitRadiusWorld + node.getHandleOverhang();
+            float halfW = node.size.width() / 2f + pad, halfH = node.size.height() / 2f + pad;
+            if (Math.abs(worldPoint.x - node.position.x) > halfW || Math.abs(worldPoint.y - node.position.y) > halfH) continue;
+            Handle handle = node.findHandleNear(worldPoint.x, worldPoint.y, handleHitRadiusWorld);
+            if (handle != null) return handle;
+        } return null;
+    }
+    @Nullable private Node findNodeContainingWorldPoint(PointF worldPoint) {
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            Node node = nodes.get(i);
+            if (node.getBounds().contains(worldPoint.x, worldPoint.y)) {
+                if (findHandleAtWorldPoint(worldPoint) == null) return node; else return null;
+            }
+        } return null;
+    }
+
+    // --- Edge Creation Logic ---
+    public boolean isValidConnectionTarget(@Nullable Handle start, @Nullable Handle end) {
+        if (start == null || end == null) return false; if (Objects.equals(start.nodeId, end.nodeId)) return false;
+        return start.type == Handle.Type.OUTPUT && end.type == Handle.Type.INPUT;
+    }
+    private void createEdge(@NonNull Handle sourceHandle, @NonNull Handle targetHandle) {
+        Handle outputHandle = (sourceHandle.type == Handle.Type.OUTPUT) ? sourceHandle : targetHandle;
+        Handle inputHandle = (sourceHandle.type == Handle.Type.INPUT) ? sourceHandle : targetHandle;
+        for (Edge edge : edges) { if (Objects.equals(edge.sourceHandleId, outputHandle.id) && Objects.equals(edge.targetHandleId, inputHandle.id)) { Log.w(TAG, "Edge exists."); return; } }
+        boolean isAnimated = true; // Default
+        Edge newEdge = new Edge(outputHandle.nodeId, outputHandle.id, inputHandle.nodeId, inputHandle.id, isAnimated);
+        edges.add(newEdge);
+        recordGraphChange(GraphChange.edgeAdded(newEdge));
+        if (connectionListener != null) { connectionListener.onEdgeConnected(newEdge); }
+        invalidate();
+    }
+
+    // --- Utility ---
+    private void bringNodeToFront(Node nodeToFront) {
+        if (nodes.remove(nodeToFront)) { nodes.add(nodeToFront); recordGraphChange(GraphChange.nodeRaised(nodeToFront)); invalidate(); }
+    }
+
+    public void addNode(@NonNull PointF worldPosition,
+                        float width, float height, // Pass desired world dimensions
+                        @NonNull String label,
+                        @Nullable @DrawableRes Integer iconResId,
+                        @Nullable @DrawableRes Integer backgroundResId,
+                        int inputCount, int outputCount)
+    {
+        updateMatrices(); // Ensure coordinate space is updated
+
+        // Use default DP size if provided size is invalid
+        float nodeWidth = (width > 0) ? width : DEFAULT_NODE_WIDTH_DP * density;
+        float nodeHeight = (height > 0) ? height : DEFAULT_NODE_HEIGHT_DP * density;
+
+        String newNodeId = "N_" + UUID.randomUUID().toString().substring(0, 4);
+        NodeShape shape = (iconResId != null || backgroundResId != null) ? NodeShape.CUSTOM_DRAWABLE : NodeShape.RECTANGLE;
+
+        Node newNode = new Node( newNodeId, worldPosition, nodeWidth, nodeHeight, // Use calculated/provided size
+                shape, label, iconResId, backgroundResId,
+                inputCount, outputCount ); // Pass handle counts to constructor
+
+        nodes.add(newNode);
+        updateMaps();
+        recordGraphChange(GraphChange.nodeAdded(newNode));
+        Log.d(TAG, "Added new node: " + newNodeId);
+        invalidate();
+    }
+
+
+    // Overload to add node at view center with default 50x50dp size
+    public void addNodeAtCenter(@NonNull String label,
+                                @Nullable @DrawableRes Integer iconResId,
+                                @Nullable @DrawableRes Integer backgroundResId,
+                                int inputCount, int outputCount)
+    {
+        updateMatrices();
+        PointF centerScreen = new PointF(getWidth() / 2f, getHeight() / 2f);
+        PointF centerWorld = screenToWorld(centerScreen.x, centerScreen.y);
+        float nodeW = DEFAULT_NODE_WIDTH_DP * density;
+        float nodeH = DEFAULT_NODE_HEIGHT_DP * density;
+        addNode(centerWorld, nodeW, nodeH, label, iconResId, backgroundResId, inputCount, outputCount);
+    }
+    // Overload to add node using the FAB style (similar to previous)
+
+    // Overload similar to previous FAB method (uses default 50x50dp size)
+    public void addNewCustomNodeWithOutputs(@DrawableRes int drawableResId, @NonNull String label, int outputCount) {
+        // Uses the center method with default size and specified background/handles
+        addNodeAtCenter(label, drawableResId, R.drawable.node_background_shape, 1, outputCount);
+    }
+    public void addNewCustomNode(@DrawableRes int drawableResId, @NonNull String label) {
+        addNewCustomNodeWithOutputs(drawableResId, label, 1); // Default to 1 output
+    }
+    // === END Public Add Node Methods ===
+
+    // === Public Mutation Methods ===
+    public void moveNode(@NonNull String nodeId, float worldX, float worldY) {
+        Node node = nodeMap.get(nodeId);
+        if (node == null) return;
+        node.position.set(worldX, worldY);
+        updateHandleWorldPositions(node);
+        recordGraphChange(GraphChange.nodeMoved(node));
+        invalidate();
+    }
+
+    public void setNodeLabel(@NonNull String nodeId, @NonNull String label) {
+        Node node = nodeMap.get(nodeId);
+        if (node == null || node.label.equals(label)) return;
+        node.label = label;
+        recordGraphChange(GraphChange.nodeRelabelled(node));
+        invalidate();
+    }
+
+    // Re-lays out one handle group of a node; edges attached to the replaced handles are removed
+    public void setNodeHandleLayout(@NonNull String nodeId, @NonNull Handle.Type type, @NonNull Handle.Side side, int count, @Nullable String[] labels) {
+        Node node = nodeMap.get(nodeId);
+        if (node == null) return;
+        beginGraphTransaction();
+        try {
+            removeEdgesOfHandleGroup(node, type);
+            node.setHandleLayout(type, side, count, labels);
+            onNodeHandlesChanged(node);
+        } finally {
+            endGraphTransaction();
+        }
+    }
+
+    // Same, with handles at explicit offsets relative to the node's top-left corner
+    public void setNodeExplicitHandles(@NonNull String nodeId, @NonNull Handle.Type type, @NonNull Handle.Side side, @NonNull PointF[] relativeOffsets, @Nullable String[] labels) {
+        Node node = nodeMap.get(nodeId);
+        if (node == null) return;
+        beginGraphTransaction();
+        try {
+            removeEdgesOfHandleGroup(node, type);
+            node.setExplicitHandles(type, side, relativeOffsets, labels);
+            onNodeHandlesChanged(node);
+        } finally {
+            endGraphTransaction();
+        }
+    }
+
+    private void removeEdgesOfHandleGroup(Node node, Handle.Type type) {
+        Set<String> replaced = new HashSet<>();
+        for (Handle handle : node.getHandleArray()) {
+            if (handle.type == type && replaced.add(handle.id)) handleMap.remove(handle.id);
+        }
+        for (Iterator<Edge> it = edges.iterator(); it.hasNext(); ) {
+            Edge edge = it.next();
+            if (replaced.contains(edge.sourceHandleId) || replaced.contains(edge.targetHandleId)) {
+                it.remove();
+                recordGraphChange(GraphChange.edgeRemoved(edge));
+            }
+        }
+    }
+
+    private void onNodeHandlesChanged(Node node) {
+        for (Handle handle : node.getHandleArray()) { handleMap.put(handle.id, handle); handle.updateWorldPosition(node); }
+        recordGraphChange(GraphChange.nodeHandlesChanged(node));
+        invalidate();
+    }
+
+    // Removes the node and every edge attached to it
+    public boolean removeNode(@NonNull String nodeId) {
+        Node node = nodeMap.get(nodeId);
+        if (node == null) return false;
+        beginGraphTransaction();
+        try {
+            for (Iterator<Edge> it = edges.iterator(); it.hasNext(); ) {
+                Edge edge = it.next();
+                if (edge.sourceNodeId.equals(nodeId) || edge.targetNodeId.equals(nodeId)) {
+                    it.remove();
+                    recordGraphChange(GraphChange.edgeRemoved(edge));
+                }
+            }
+            if (interactionInvolves(nodeId)) resetInteractions();
+            nodes.remove(node);
+            updateMaps();
+            recordGraphChange(GraphChange.nodeRemoved(nodeId));
+        } finally {
+            endGraphTransaction();
+        }
+        invalidate();
+        return true;
+    }
+
+    public boolean removeEdge(@NonNull String edgeId) {
+        for (Iterator<Edge> it = edges.iterator(); it.hasNext(); ) {
+            Edge edge = it.next();
+            if (edge.id.equals(edgeId)) {
+                it.remove();
+                recordGraphChange(GraphChange.edgeRemoved(edge));
+                invalidate();
+                return true;
+            }
+        }
+        return false;
+    }
+    // === END Public Mutation Methods ===
+
+    // === Graph Change Feed ===
+    // Groups mutations so that listeners receive them as a single versioned batch
+    public void beginGraphTransaction() { graphTransactionDepth++; }
+
+    public void endGraphTransaction() {
+        if (graphTransactionDepth == 0) { Log.w(TAG, "endGraphTransaction() without begin"); return; }
+        if (--graphTransactionDepth == 0 && !pendingGraphChanges.isEmpty()) flushGraphChanges();
+    }
+
+    public long getGraphVersion() { return graphVersion; }
+
+    // Latest published snapshot; O(1), lock-free and safe to call from worker threads
+    @NonNull public GraphSnapshot getSnapshot() { return graphSnapshot; }
+    @NonNull GraphPainter getPainter() { return painter; } // Current style, for FlowExporter
+
+    // Edge id -> (startX, startY, endX, endY) for resident edges with an endpoint in a paged-out tile, so snapshot readers
+    // (scene preparation, export) can draw them like drawEdges() does. Rebuilt once per published snapshot; null without paged storage
+    @Nullable Map<String, float[]> getStoredEdgeEndpoints() {
+        if (tiledGraphStore == null) return null;
+        if (storedEdgeEndpointsSnapshot != graphSnapshot) {
+            Map<String, float[]> endpoints = new HashMap<>();
+            for (Edge edge : edges) {
+                if (nodeMap.containsKey(edge.sourceNodeId) && nodeMap.containsKey(edge.targetNodeId)) continue;
+                float[] points = new float[4];
+                if (resolveEdgeEndpoints(edge, points)) endpoints.put(edge.id, points);
+            }
+            storedEdgeEndpoints = Collections.unmodifiableMap(endpoints); // Crosses to worker threads
+            storedEdgeEndpointsSnapshot = graphSnapshot;
+        }
+        return storedEdgeEndpoints;
+    }
+
+    private void recordGraphChange(@NonNull GraphChange change) {
+        switch (change.type) { // Keep edge hit-testing in step immediately, not at flush time
+            case EDGE_ADDED: if (change.edge != null) edgeHitIndex.addEdge(change.edge); break;
+            case EDGE_REMOVED:
+                edgeHitIndex.removeEdge(change.id);
+                if (selectedEdge != null && selectedEdge.id.equals(change.id)) selectedEdge = null;
+                break;
+            case NODE_ADDED: case NODE_MOVED: case NODE_HANDLES_CHANGED: edgeHitIndex.markNodeMoved(change.id); break;
+            default: break;
+        }
+        switch (change.type) {
+            case NODE_ADDED: case NODE_RELABELLED: if (change.label != null) labelSearchIndex.put(change.id, change.label); break;
+            case NODE_REMOVED:
+                labelSearchIndex.remove(change.id);
+                if (change.id.equals(focusedNodeId)) clearFocusHighlight();
+                break;
+            default: break;
+        }
+        switch (change.type) {
+            case NODE_REMOVED:
+                pendingGraphChanges.remove(GraphChange.Type.NODE_MOVED.name() + ":" + change.id);
+                pendingGraphChanges.remove(GraphChange.Type.NODE_RELABELLED.name() + ":" + change.id);
+                pendingGraphChanges.remove(GraphChange.Type.NODE_HANDLES_CHANGED.name() + ":" + change.id);
+                pendingGraphChanges.remove(GraphChange.Type.NODE_RAISED.name() + ":" + change.id);
+                // Added and removed within the same batch: nothing to report
+                if (pendingGraphChanges.remove(GraphChange.Type.NODE_ADDED.name() + ":" + change.id) != null) return;
+                break;
+            case EDGE_REMOVED:
+                if (pendingGraphChanges.remove(GraphChange.Type.EDGE_ADDED.name() + ":" + change.id) != null) return;
+                break;
+            default:
+                break;
+        }
+        String key = change.coalesceKey();
+        pendingGraphChanges.remove(key); // Latest value wins, ordered by last change
+        pendingGraphChanges.put(key, change);
+        if (graphTransactionDepth == 0 && !graphChangeFlushScheduled) {
+            graphChangeFlushScheduled = true;
+            postOnAnimation(graphChangeFlushRunnable);
+        }
+    }
+
+    // Delivers pending deltas immediately (normally called once per frame)
+    public void flushGraphChanges() {
+        if (graphChangeFlushScheduled) { removeCallbacks(graphChangeFlushRunnable); graphChangeFlushScheduled = false; }
+        if (pendingGraphChanges.isEmpty()) return;
+        List<GraphChange> batch = new ArrayList<>(pendingGraphChanges.values());
+        pendingGraphChanges.clear();
+        graphVersion++;
+        GraphSnapshot previousSnapshot = graphSnapshot;
+        graphSnapshot = graphSnapshot.apply(graphVersion, batch);
+        if (minimapView != null) minimapView.onGraphChanged(previousSnapshot, graphSnapshot, batch);
+        if (edgeBundler != null) edgeBundler.update(graphSnapshot, batch);
+        if (tiledGraphStore != null) tiledGraphStore.applyChanges(batch);
+        if (graphChangeListener != null) graphChangeListener.onGraphChanged(graphVersion, Collections.unmodifiableList(batch));
+    }
+    // === END Graph Change Feed ===
+
+
+
+    // --- Public Data Accessors ---
+    public List<Node> getNodes() { return new ArrayList<>(nodes); }
+    public List<Edge> getEdges() { return new ArrayList<>(edges); }
+
+    // --- Public Listener Setter ---
+    public void setConnectionListener(ConnectionListener listener) { this.connectionListener = listener; }
+    public void setGraphChangeListener(@Nullable GraphChangeListener listener) { this.graphChangeListener = listener; }
+    public void setEdgeTapListener(@Nullable EdgeTapListener listener) { this.edgeTapListener = listener; }
+
+    // --- Public Configuration Methods ---
+    public void setGridDotColor(@ColorInt int color) { gridDotPaint.setColor(color); invalidate(); }
+    public void setGridSpacing(float spacing) { this.gridSpacing = Math.max(10f, spacing); invalidate(); }
+    public void setGridDotBaseRadius(float radius) { this.gridDotBaseRadius = Math.max(0.5f, radius); invalidate(); }
+    public void setDefaultNodeBgColor(@ColorInt int color) { nodeBgPaint.setColor(color); invalidate(); }
+    public void setDefaultNodeBorderColor(@ColorInt int color) { nodeBorderPaint.setColor(color); invalidate(); }
+    public void setDefaultNodeTextColor(@ColorInt int color) { textPaint.setColor(color); invalidate(); }
+    public void setDefaultNodeTextSize(float sizePixels) { painter.setTextSize(sizePixels); invalidate(); }
+    public void setDefaultNodeCornerRadiusDp(float radiusDp) { painter.nodeCornerRadiusDp = Math.max(0, radiusDp); invalidate(); }
+    public void setEdgeColor(@ColorInt int color) { edgePaint.setColor(color); setArrowheadColor(color); invalidate(); }
+    public void setEdgeStrokeWidth(float width) { painter.edgeStrokeWidth = Math.max(1f, width); invalidate(); }
+    public void setDrawArrowheads(boolean draw) { painter.drawArrowheads = draw; invalidate(); }
+    public void setArrowheadColor(@ColorInt int color) { arrowHeadPaint.setColor(color); invalidate(); }
+    public void setArrowheadSize(float size) { painter.arrowheadSize = Math.max(3f, size); invalidate(); }
+    public void setTempConnectionColor(@ColorInt int color) { tempConnectionPaint.setColor(color); invalidate(); }
+    public void setHandleInputColor(@ColorInt int color) { handlePaintInput.setColor(color); invalidate(); }
+    public void setHandleOutputColor(@ColorInt int color) { handlePaintOutput.setColor(color); invalidate(); }
+    public void setHandleBorderColor(@ColorInt int color) { handleBorderPaint.setColor(color); invalidate(); }
+    public void setHandleLabelColor(@ColorInt int color) { handleLabelPaint.setColor(color); invalidate(); }
+    public void setHandleHitRadiusWorld(float radius) { this.handleHitRadiusWorld = Math.max(5f, radius); }
+    public void setEdgeHitToleranceWorld(float tolerance) { this.edgeHitToleranceWorld = Math.max(2f, tolerance); }
+    public void setSelectedEdgeColor(@ColorInt int color) { selectedEdgePaint.setColor(color); invalidate(); }
+    public void setFocusHighlightColor(@ColorInt int color) { focusHighlightPaint.setColor(color); invalidate(); }
+
+    // Pages nodes/edges in and out of the given store as the viewport moves (null returns to in-memory mode).
+    // The current in-memory graph is discarded; use TiledGraphStore.importGraph() to seed a store.
+    public void setTiledGraphStore(@Nullable TiledGraphStore store) {
+        if (store == tiledGraphStore) return;
+        flushGraphChanges();
+        if (tiledGraphStore != null) tiledGraphStore.detach();
+        resetInteractions();
+        nodes.clear(); edges.clear();
+        labelSearchIndex.rebuild(nodes);
+        tiledGraphStore = store;
+        if (store != null) store.attach(tiledStoreHost);
+        onResidentGraphReplaced();
+    }
+
+    // Tiles paged in or out (not a user edit): same incremental path as a flush, but not reported to the
+    // store or the listener and without a version bump
+    private void applyResidentDelta(@NonNull List<GraphChange> delta) {
+        if (delta.isEmpty()) return;
+        GraphSnapshot previousSnapshot = graphSnapshot;
+        graphSnapshot = graphSnapshot.apply(graphVersion, delta);
+        if (minimapView != null) minimapView.onGraphChanged(previousSnapshot, graphSnapshot, delta);
+        if (edgeBundler != null) edgeBundler.update(graphSnapshot, delta);
+        invalidate();
+    }
+
+    // Resident set changed wholesale (not a user edit): rebuild lookups, no change records
+    private void onResidentGraphReplaced() {
+        updateMaps();
+        graphSnapshot = GraphSnapshot.of(graphVersion, nodes, edges);
+        edgeHitIndex.rebuild(edges);
+        if (minimapView != null) minimapView.onGraphReplaced(graphSnapshot);
+        if (edgeBundler != null) edgeBundler.rebuild(graphSnapshot, edgeBundleCellSizeWorld, currentBundleLevel());
+        invalidate();
+    }
+
+    // Draws edges that run between the same neighbourhoods as shared, thicker strokes (computed in the background).
+    // Individual edges stay tappable; the selected edge is drawn on its own on top.
+    public void setEdgeBundling(boolean enabled) {
+        if (edgeBundling == enabled) return;
+        edgeBundling = enabled;
+        if (enabled) startEdgeBundler();
+        else if (edgeBundler != null) { edgeBundler.release(); edgeBundler = null; }
+        invalidate();
+    }
+
+    private void startEdgeBundler() {
+        edgeBundler = new EdgeBundler(this::invalidate, this::resolveEdgeEndpoints);
+        edgeBundler.rebuild(graphSnapshot, edgeBundleCellSizeWorld, currentBundleLevel());
+    }
+
+    // Size of the finest bundling grid in world units: edges whose ends fall in the same two cells are merged
+    public void setEdgeBundleCellSize(float worldUnits) {
+        this.edgeBundleCellSizeWorld = Math.max(8f, worldUnits);
+        if (edgeBundler != null) edgeBundler.rebuild(graphSnapshot, edgeBundleCellSizeWorld, currentBundleLevel());
+        invalidate();
+    }
+
+    // Moves edge/label/handle geometry off the UI thread; onDraw then only replays the latest prepared list.
+    // Edges attached to a dragged node may trail the finger by a frame in this mode.
+    public void setAsyncScenePreparation(boolean enabled) {
+        if (asyncScenePreparation == enabled) return;
+        asyncScenePreparation = enabled;
+        if (!enabled && scenePreparer != null) { scenePreparer.release(); scenePreparer = null; }
+        invalidate();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (scenePreparer != null) { scenePreparer.release(); scenePreparer = null; }
+        if (edgeBundler != null) { edgeBundler.release(); edgeBundler = null; } // Rebuilt from the snapshot on the next draw
+        if (focusAnimator != null) focusAnimator.cancel();
+        removeCallbacks(clearFocusHighlightRunnable);
+        if (tiledGraphStore != null) { flushGraphChanges(); tiledGraphStore.flush(); }
+    }
+
+
+
+
+
 } // End of ReactFlowCanvasView class
\ No newline at end of file
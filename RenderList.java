@@ -0,0 +1,86 @@
+package com.anass.halak.reactflow;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Flat, pre-computed draw primitives for one frame, produced off the UI thread by
+ * {@link ScenePreparer} and replayed by {@link ReactFlowCanvasView#onDraw}. Arrays grow
+ * once and are reused, so a steady-state prepare pass allocates nothing.
+ */
+final class RenderList {
+    static final int PAINT_EDGE = 0, PAINT_EDGE_ANIMATED = 1;
+    static final int PAINT_HANDLE_INPUT = 0, PAINT_HANDLE_OUTPUT = 1;
+
+    // Frame parameters this list was prepared for
+    long graphVersion = -1L;
+    float offsetX, offsetY, scaleFactor;
+
+    // Edges: (startX, startY, controlX, controlY, endX, endY) per quadratic curve
+    float[] edgeCoords = new float[6 * 64]; int[] edgePaints = new int[64]; int edgeCount;
+    // Arrowheads: three (x, y) corners per triangle
+    float[] arrowCoords = new float[6 * 64]; int arrowCount;
+    // Nodes: (left, top, right, bottom) plus content; resource id 0 means "none"
+    float[] nodeRects = new float[4 * 64]; String[] nodeIds = new String[64]; NodeShape[] nodeShapes = new NodeShape[64];
+    int[] nodeIconResIds = new int[64]; int[] nodeBgResIds = new int[64]; int nodeCount;
+    int[] nodeHandleStarts = new int[64]; // Node i owns handles [nodeHandleStarts[i], nodeHandleStarts[i + 1]) and label i
+    // Labels: baseline (x, y) per text
+    float[] labelCoords = new float[2 * 64]; String[] labelTexts = new String[64]; int labelCount;
+    // Handles: center (x, y) per handle
+    float[] handleCoords = new float[2 * 64]; int[] handlePaints = new int[64]; int handleCount;
+    String[] handleLabels = new String[64]; Handle.Side[] handleSides = new Handle.Side[64]; // Label may be null
+
+    void reset() {
+        edgeCount = 0; arrowCount = 0; nodeCount = 0; labelCount = 0; handleCount = 0;
+        Arrays.fill(nodeIds, null); Arrays.fill(labelTexts, null); Arrays.fill(handleLabels, null); // Don't pin removed nodes
+    }
+
+    void addEdge(float sx, float sy, float cx, float cy, float ex, float ey, int paint) {
+        if (edgeCount == edgePaints.length) { edgePaints = Arrays.copyOf(edgePaints, edgeCount * 2); edgeCoords = Arrays.copyOf(edgeCoords, edgeCount * 12); }
+        int i = edgeCount * 6;
+        edgeCoords[i] = sx; edgeCoords[i + 1] = sy; edgeCoords[i + 2] = cx; edgeCoords[i + 3] = cy; edgeCoords[i + 4] = ex; edgeCoords[i + 5] = ey;
+        edgePaints[edgeCount++] = paint;
+    }
+
+    void addArrow(float x1, float y1, float x2, float y2, float x3, float y3) {
+        if ((arrowCount + 1) * 6 > arrowCoords.length) arrowCoords = Arrays.copyOf(arrowCoords, arrowCoords.length * 2);
+        int i = arrowCount * 6;
+        arrowCoords[i] = x1; arrowCoords[i + 1] = y1; arrowCoords[i + 2] = x2; arrowCoords[i + 3] = y2; arrowCoords[i + 4] = x3; arrowCoords[i + 5] = y3;
+        arrowCount++;
+    }
+
+    void addNode(@NonNull String id, float l, float t, float r, float b, @NonNull NodeShape shape, int iconResId, int bgResId) {
+        if (nodeCount == nodeIds.length) {
+            int n = nodeCount * 2;
+            nodeRects = Arrays.copyOf(nodeRects, n * 4); nodeIds = Arrays.copyOf(nodeIds, n); nodeShapes = Arrays.copyOf(nodeShapes, n);
+            nodeIconResIds = Arrays.copyOf(nodeIconResIds, n); nodeBgResIds = Arrays.copyOf(nodeBgResIds, n);
+            nodeHandleStarts = Arrays.copyOf(nodeHandleStarts, n);
+        }
+        int i = nodeCount * 4;
+        nodeRects[i] = l; nodeRects[i + 1] = t; nodeRects[i + 2] = r; nodeRects[i + 3] = b;
+        nodeIds[nodeCount] = id; nodeShapes[nodeCount] = shape; nodeIconResIds[nodeCount] = iconResId; nodeBgResIds[nodeCount] = bgResId;
+        nodeHandleStarts[nodeCount] = handleCount;
+        nodeCount++;
+    }
+
+    int handleEnd(int nodeIndex) { return nodeIndex + 1 < nodeCount ? nodeHandleStarts[nodeIndex + 1] : handleCount; }
+
+    void addLabel(@NonNull String text, float x, float y) {
+        if (labelCount == labelTexts.length) { labelTexts = Arrays.copyOf(labelTexts, labelCount * 2); labelCoords = Arrays.copyOf(labelCoords, labelCount * 4); }
+        labelCoords[labelCount * 2] = x; labelCoords[labelCount * 2 + 1] = y;
+        labelTexts[labelCount++] = text;
+    }
+
+    void addHandle(float x, float y, int paint, @Nullable String label, @NonNull Handle.Side side) {
+        if (handleCount == handlePaints.length) {
+            int n = handleCount * 2;
+            handlePaints = Arrays.copyOf(handlePaints, n); handleCoords = Arrays.copyOf(handleCoords, n * 2);
+            handleLabels = Arrays.copyOf(handleLabels, n); handleSides = Arrays.copyOf(handleSides, n);
+        }
+        handleCoords[handleCount * 2] = x; handleCoords[handleCount * 2 + 1] = y;
+        handleLabels[handleCount] = label; handleSides[handleCount] = side;
+        handlePaints[handleCount++] = paint;
+    }
+}
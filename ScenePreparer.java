@@ -0,0 +1,219 @@
+package com.anass.halak.reactflow;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.UiThread;
+import androidx.annotation.WorkerThread;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Builds {@link RenderList}s on a worker thread from a {@link GraphSnapshot} and the current
+ * transform. Two lists are double-buffered: the UI thread only ever draws the front list, the
+ * worker only ever fills the back list, and the two are swapped on the UI thread when a pass
+ * completes, so neither side waits for the other. Requests arriving while a pass is running
+ * are collapsed into the latest one.
+ */
+final class ScenePreparer {
+    private static final String TAG = "ScenePreparer";
+
+    interface Callback { void onRenderListReady(); }
+
+    /** Everything the worker needs; immutable so it can cross threads. */
+    static final class Request {
+        final GraphSnapshot snapshot;
+        @Nullable final Map<String, float[]> storedEndpoints; // See edgeCurve(); read-only once published
+        final float offsetX, offsetY, scaleFactor;
+        final float visibleLeft, visibleTop, visibleRight, visibleBottom; // World rect, already padded
+        final boolean includeEdges, drawArrowheads; // Edges are skipped while the view draws edge bundles instead
+        final float arrowSize; // World units
+        final float labelMargin, labelAscent; // World units
+
+        Request(@NonNull GraphSnapshot snapshot, @Nullable Map<String, float[]> storedEndpoints, float offsetX, float offsetY, float scaleFactor,
+                float visibleLeft, float visibleTop, float visibleRight, float visibleBottom,
+                boolean includeEdges, boolean drawArrowheads, float arrowSize, float labelMargin, float labelAscent) {
+            this.snapshot = snapshot; this.storedEndpoints = storedEndpoints; this.offsetX = offsetX; this.offsetY = offsetY; this.scaleFactor = scaleFactor;
+            this.visibleLeft = visibleLeft; this.visibleTop = visibleTop; this.visibleRight = visibleRight; this.visibleBottom = visibleBottom;
+            this.includeEdges = includeEdges; this.drawArrowheads = drawArrowheads; this.arrowSize = arrowSize; this.labelMargin = labelMargin; this.labelAscent = labelAscent;
+        }
+
+        boolean sameFrameAs(@Nullable Request other) {
+            return other != null && other.snapshot == snapshot && other.storedEndpoints == storedEndpoints
+                    && other.offsetX == offsetX && other.offsetY == offsetY && other.scaleFactor == scaleFactor
+                    && other.visibleLeft == visibleLeft && other.visibleTop == visibleTop && other.visibleRight == visibleRight && other.visibleBottom == visibleBottom
+                    && other.includeEdges == includeEdges && other.drawArrowheads == drawArrowheads && other.arrowSize == arrowSize
+                    && other.labelMargin == labelMargin && other.labelAscent == labelAscent;
+        }
+    }
+
+    private final Callback callback;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "ReactFlow-ScenePrep");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // UI-thread state
+    @Nullable private RenderList front = null;
+    @Nullable private RenderList back = new RenderList(); // null while the worker owns it
+    @Nullable private Request lastRequest = null;
+    @Nullable private Request pendingRequest = null;
+    private boolean released = false;
+
+    ScenePreparer(@NonNull Callback callback) { this.callback = callback; }
+
+    @UiThread @Nullable RenderList getFront() { return front; }
+
+    @UiThread void request(@NonNull Request request) {
+        if (released || request.sameFrameAs(lastRequest)) return;
+        lastRequest = request;
+        if (back == null) { pendingRequest = request; return; } // Worker busy: keep only the newest
+        start(request);
+    }
+
+    @UiThread void release() {
+        released = true;
+        executor.shutdownNow();
+        front = null; back = null; pendingRequest = null;
+    }
+
+    @UiThread private void start(@NonNull Request request) {
+        final RenderList target = back;
+        back = null;
+        executor.execute(() -> {
+            try {
+                prepare(target, request);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Scene preparation failed", e);
+                target.reset();
+            }
+            mainHandler.post(() -> onPrepared(target));
+        });
+    }
+
+    @UiThread private void onPrepared(@NonNull RenderList done) {
+        if (released) return;
+        back = (front != null) ? front : new RenderList();
+        front = done;
+        if (pendingRequest != null) { Request next = pendingRequest; pendingRequest = null; start(next); }
+        callback.onRenderListReady();
+    }
+
+    // --- Worker Thread ---
+    @WorkerThread
+    static void prepare(@NonNull RenderList out, @NonNull Request req) {
+        begin(out, req);
+        final GraphSnapshot snapshot = req.snapshot;
+        final float[] curve = new float[6], arrow = new float[6];
+        if (req.includeEdges) snapshot.forEachEdge(edge -> addEdge(out, req, edge, curve, arrow));
+
+        // Snapshot iteration is in hash order: cull first, then sort the few visible nodes into stacking order
+        final List<NodeSnapshot> visible = new ArrayList<>();
+        snapshot.forEachNode(node -> { if (isVisible(node, req)) visible.add(node); });
+        Collections.sort(visible, GraphSnapshot.Z_ORDER);
+        for (NodeSnapshot node : visible) addNode(out, req, node);
+    }
+
+    /** Same as {@link #prepare(RenderList, Request)}, but only from the given candidates (e.g. one export tile's bucket), nodes already in stacking order. */
+    @WorkerThread
+    static void prepare(@NonNull RenderList out, @NonNull Request req, @NonNull List<Edge> edges, @NonNull List<NodeSnapshot> nodesInZOrder) {
+        begin(out, req);
+        float[] curve = new float[6], arrow = new float[6];
+        if (req.includeEdges) for (Edge edge : edges) addEdge(out, req, edge, curve, arrow);
+        for (NodeSnapshot node : nodesInZOrder) if (isVisible(node, req)) addNode(out, req, node);
+    }
+
+    private static void begin(@NonNull RenderList out, @NonNull Request req) {
+        out.reset();
+        out.graphVersion = req.snapshot.version;
+        out.offsetX = req.offsetX; out.offsetY = req.offsetY; out.scaleFactor = req.scaleFactor;
+    }
+
+    private static void addEdge(@NonNull RenderList out, @NonNull Request req, @NonNull Edge edge, @NonNull float[] curve, @NonNull float[] arrow) {
+        if (!edgeCurve(req.snapshot, req.storedEndpoints, edge, curve)) return;
+        float sx = curve[0], sy = curve[1], cx = curve[2], cy = curve[3], ex = curve[4], ey = curve[5];
+        // The curve lies inside the hull of its three control points
+        if (Math.max(sx, Math.max(cx, ex)) < req.visibleLeft || Math.min(sx, Math.min(cx, ex)) > req.visibleRight
+                || Math.max(sy, Math.max(cy, ey)) < req.visibleTop || Math.min(sy, Math.min(cy, ey)) > req.visibleBottom) return;
+        out.addEdge(sx, sy, cx, cy, ex, ey, edge.animated ? RenderList.PAINT_EDGE_ANIMATED : RenderList.PAINT_EDGE);
+        if (req.drawArrowheads && arrowHead(curve, req.arrowSize, arrow)) {
+            out.addArrow(arrow[0], arrow[1], arrow[2], arrow[3], arrow[4], arrow[5]);
+        }
+    }
+
+    private static boolean isVisible(@NonNull NodeSnapshot node, @NonNull Request req) {
+        return node.getRight() >= req.visibleLeft && node.getLeft() <= req.visibleRight
+                && node.getBottom() >= req.visibleTop && node.getTop() <= req.visibleBottom;
+    }
+
+    private static void addNode(@NonNull RenderList out, @NonNull Request req, @NonNull NodeSnapshot node) {
+        float l = node.getLeft(), t = node.getTop(), r = node.getRight(), b = node.getBottom();
+        out.addNode(node.id, l, t, r, b, node.shape,
+                node.customDrawableResId != null ? node.customDrawableResId : 0,
+                node.backgroundDrawableResId != null ? node.backgroundDrawableResId : 0);
+        out.addLabel(node.label, node.x, b + req.labelMargin - req.labelAscent);
+        for (int i = 0; i < node.getHandleCount(); i++) {
+            out.addHandle(node.getHandleWorldX(i), node.getHandleWorldY(i),
+                    node.getHandleType(i) == Handle.Type.INPUT ? RenderList.PAINT_HANDLE_INPUT : RenderList.PAINT_HANDLE_OUTPUT,
+                    node.getHandleLabel(i), node.getHandleSide(i));
+        }
+    }
+
+    /**
+     * Quadratic curve of an edge as (start, control, end). An endpoint whose node is not in the snapshot (its tile
+     * is paged out) is taken from {@code storedEndpoints}, edge id to (startX, startY, endX, endY), as the view's
+     * synchronous drawing does; false if it is not there either.
+     */
+    static boolean edgeCurve(@NonNull GraphSnapshot snapshot, @Nullable Map<String, float[]> storedEndpoints, @NonNull Edge edge, @NonNull float[] out) {
+        NodeSnapshot source = snapshot.getNode(edge.sourceNodeId); NodeSnapshot target = snapshot.getNode(edge.targetNodeId);
+        float[] stored = (source == null || target == null) && storedEndpoints != null ? storedEndpoints.get(edge.id) : null;
+        float sx, sy, ex, ey;
+        if (source != null) {
+            int si = source.indexOfHandle(edge.sourceHandleId);
+            if (si < 0) return false;
+            sx = source.getHandleWorldX(si); sy = source.getHandleWorldY(si);
+        } else if (stored != null) {
+            sx = stored[0]; sy = stored[1];
+        } else {
+            return false;
+        }
+        if (target != null) {
+            int ti = target.indexOfHandle(edge.targetHandleId);
+            if (ti < 0) return false;
+            ex = target.getHandleWorldX(ti); ey = target.getHandleWorldY(ti);
+        } else if (stored != null) {
+            ex = stored[2]; ey = stored[3];
+        } else {
+            return false;
+        }
+        // Same control point as ReactFlowCanvasView.drawEdges()
+        float dx = ex - sx, dy = ey - sy;
+        out[0] = sx; out[1] = sy;
+        out[2] = (sx + ex) / 2 - dy * 0.25f; out[3] = (sy + ey) / 2 + dx * 0.25f;
+        out[4] = ex; out[5] = ey;
+        return true;
+    }
+
+    /** Arrowhead triangle of size {@code s} at the end of {@code curve}; false for a degenerate curve. */
+    static boolean arrowHead(@NonNull float[] curve, float s, @NonNull float[] out) {
+        float cx = curve[2], cy = curve[3], ex = curve[4], ey = curve[5];
+        // End tangent of a quadratic bezier points from the control point to the end point
+        float tx = ex - cx, ty = ey - cy; float len = (float) Math.hypot(tx, ty);
+        if (len <= 0.01f) return false;
+        float ux = tx / len, uy = ty / len;
+        out[0] = ex - ux * s - uy * s / 2; out[1] = ey - uy * s + ux * s / 2;
+        out[2] = ex; out[3] = ey;
+        out[4] = ex - ux * s + uy * s / 2; out[5] = ey - uy * s - ux * s / 2;
+        return true;
+    }
+}
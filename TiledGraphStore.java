@@ -0,0 +1,605 @@
+package com.anass.halak.reactflow;
+
+import android.graphics.PointF;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.UiThread;
+import androidx.annotation.WorkerThread;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Region-paged graph storage for graphs too large to keep in memory. The world plane is cut into
+ * square tiles, each persisted as one file in {@code directory}. While attached to a
+ * {@link ReactFlowCanvasView} (see {@link ReactFlowCanvasView#setTiledGraphStore}), tiles around
+ * the viewport are loaded on a background thread and distant tiles are evicted least-recently-used
+ * first once the estimated heap use exceeds the memory budget. Dirty tiles are written back on
+ * eviction, {@link #flush()} and {@link #close()}.
+ *
+ * <p>An edge is stored in the tile of each endpoint together with the last known endpoint
+ * positions, so an edge leaving the loaded area still renders up to its far end.
+ */
+public class TiledGraphStore {
+    private static final String TAG = "TiledGraphStore";
+    private static final int FILE_MAGIC = 0x52465431; // "RFT1"
+    private static final long NODE_BYTES_ESTIMATE = 640; // Node + handles + PointF/RectF + label
+    private static final long EDGE_BYTES_ESTIMATE = 256; // Edge + record + map entries
+    private static final int MAX_TILES_IN_VIEW = 4096;
+
+    /** Callbacks into the owning view; always invoked on the UI thread. */
+    interface Host {
+        void onTilePagedIn(@NonNull List<Node> nodes, @NonNull List<Edge> edges);
+        void onTilePagedOut(@NonNull List<Node> nodes, @NonNull List<Edge> edges);
+        @Nullable PointF findLiveHandlePosition(@NonNull String handleId);
+    }
+
+    // One edge as persisted, shared by every resident tile that holds it
+    private static final class EdgeRecord {
+        final Edge edge;
+        long sourceTile, targetTile;
+        float sourceX, sourceY, targetX, targetY; // Endpoint positions when last refreshed
+        int refs; // Number of resident tiles holding this record
+
+        EdgeRecord(Edge edge, long sourceTile, long targetTile) { this.edge = edge; this.sourceTile = sourceTile; this.targetTile = targetTile; }
+        long otherTile(long tile) { return sourceTile == tile ? targetTile : sourceTile; }
+    }
+
+    private static final class Tile {
+        final int tx, ty;
+        final List<Node> nodes = new ArrayList<>();
+        final List<EdgeRecord> edges = new ArrayList<>();
+        boolean dirty;
+        boolean unreadable; // The file exists but could not be read: never write this tile back over it
+
+        Tile(int tx, int ty) { this.tx = tx; this.ty = ty; }
+        long estimateBytes() { return nodes.size() * NODE_BYTES_ESTIMATE + edges.size() * EDGE_BYTES_ESTIMATE; }
+    }
+
+    @NonNull private final File directory;
+    private final float tileSize;
+    private long memoryBudgetBytes;
+    private int prefetchTiles = 1; // Ring of tiles loaded around the viewport
+    private final ExecutorService io = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "ReactFlow-TileIO");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // UI-thread state
+    private final LinkedHashMap<Long, Tile> resident = new LinkedHashMap<>(16, 0.75f, true); // Access order = LRU
+    private final Map<Long, Long> tileBytes = new HashMap<>(); // Estimate recorded when the tile was accounted
+    private final Set<Long> loading = new HashSet<>();
+    private final Map<String, Long> nodeTiles = new HashMap<>(); // Resident node id -> tile key
+    private final Map<String, EdgeRecord> residentEdges = new HashMap<>();
+    private final Map<Long, List<Node>> pendingNodes = new HashMap<>(); // Nodes waiting for their tile to load
+    private final List<Edge> pendingEdges = new ArrayList<>(); // Edges with an endpoint among the pending nodes
+    private final Map<Long, Set<String>> removedWhileLoading = new HashMap<>(); // Edge ids the in-flight read may still return
+    private long residentBytes = 0L;
+    private int minTx = 1, maxTx = 0, minTy = 1, maxTy = 0; // Tile range needed by the viewport (empty)
+    private boolean viewportTooLarge = false; // Last range was refused; warn only when entering that state
+    @Nullable private Host host;
+
+    public TiledGraphStore(@NonNull File directory, float tileSize, long memoryBudgetBytes) {
+        this.directory = directory;
+        this.tileSize = Math.max(64f, tileSize);
+        this.memoryBudgetBytes = Math.max(0L, memoryBudgetBytes);
+        if (!directory.isDirectory() && !directory.mkdirs()) Log.e(TAG, "Cannot create tile directory " + directory);
+    }
+
+    public float getTileSize() { return tileSize; }
+    public long getResidentBytesEstimate() { return residentBytes; }
+    public int getResidentTileCount() { return resident.size(); }
+
+    @UiThread public void setMemoryBudgetBytes(long budgetBytes) { this.memoryBudgetBytes = Math.max(0L, budgetBytes); trimToBudget(); }
+    @UiThread public void setPrefetchTiles(int tiles) { this.prefetchTiles = Math.max(0, tiles); }
+
+    // --- Import ---
+    /** Replaces the store contents with the given graph. Blocking; call from a worker thread while detached. */
+    @WorkerThread
+    public void importGraph(@NonNull List<Node> nodes, @NonNull List<Edge> edges) throws IOException {
+        File[] old = directory.listFiles((dir, name) -> name.startsWith("tile_") && name.endsWith(".bin"));
+        if (old != null) for (File f : old) if (!f.delete()) Log.w(TAG, "Could not delete " + f);
+
+        Map<Long, Tile> tiles = new HashMap<>();
+        Map<String, Node> byId = new HashMap<>();
+        Map<String, Long> keys = new HashMap<>();
+        for (Node node : nodes) {
+            int tx = tileIndex(node.position.x), ty = tileIndex(node.position.y); long key = tileKey(tx, ty);
+            Tile tile = tiles.get(key);
+            if (tile == null) { tile = new Tile(tx, ty); tiles.put(key, tile); }
+            tile.nodes.add(node); byId.put(node.id, node); keys.put(node.id, key);
+            for (Handle handle : node.getHandleArray()) handle.updateWorldPosition(node);
+        }
+        for (Edge edge : edges) {
+            Node source = byId.get(edge.sourceNodeId), target = byId.get(edge.targetNodeId);
+            if (source == null || target == null) continue;
+            EdgeRecord record = new EdgeRecord(edge, keys.get(source.id), keys.get(target.id));
+            PointF s = findHandle(source, edge.sourceHandleId), t = findHandle(target, edge.targetHandleId);
+            if (s != null) { record.sourceX = s.x; record.sourceY = s.y; }
+            if (t != null) { record.targetX = t.x; record.targetY = t.y; }
+            tiles.get(record.sourceTile).edges.add(record);
+            if (record.targetTile != record.sourceTile) tiles.get(record.targetTile).edges.add(record);
+        }
+        for (Tile tile : tiles.values()) writeTile(tile.tx, tile.ty, snapshotNodes(tile), tile.edges);
+    }
+
+    @Nullable private static PointF findHandle(@NonNull Node node, @NonNull String handleId) {
+        for (Handle handle : node.getHandleArray()) if (handle.id.equals(handleId)) return handle.worldPosition;
+        return null;
+    }
+
+    // --- Attach / Lifecycle ---
+    @UiThread void attach(@NonNull Host host) { this.host = host; }
+
+    @UiThread void detach() {
+        flush();
+        resident.clear(); tileBytes.clear(); loading.clear(); nodeTiles.clear(); residentEdges.clear(); pendingNodes.clear();
+        pendingEdges.clear(); removedWhileLoading.clear();
+        residentBytes = 0L; minTx = 1; maxTx = 0; minTy = 1; maxTy = 0; viewportTooLarge = false;
+        host = null;
+    }
+
+    /** Writes every dirty resident tile in the background. */
+    @UiThread public void flush() {
+        for (Tile tile : resident.values()) if (tile.dirty) save(tile);
+    }
+
+    /** Flushes and waits (bounded) for pending writes; the store cannot be used afterwards. */
+    @UiThread public void close() {
+        detach();
+        io.shutdown();
+        try {
+            if (!io.awaitTermination(5, TimeUnit.SECONDS)) Log.w(TAG, "Tile writes still pending after close()");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // --- Viewport ---
+    @UiThread void updateViewport(float left, float top, float right, float bottom) {
+        int nMinTx = tileIndex(left) - prefetchTiles, nMaxTx = tileIndex(right) + prefetchTiles;
+        int nMinTy = tileIndex(top) - prefetchTiles, nMaxTy = tileIndex(bottom) + prefetchTiles;
+        if (nMinTx == minTx && nMaxTx == maxTx && nMinTy == minTy && nMaxTy == maxTy) return;
+        if ((long) (nMaxTx - nMinTx + 1) * (nMaxTy - nMinTy + 1) > MAX_TILES_IN_VIEW) {
+            if (!viewportTooLarge) Log.w(TAG, "Viewport spans too many tiles; zoom in or use a larger tile size");
+            viewportTooLarge = true;
+            return;
+        }
+        viewportTooLarge = false;
+        minTx = nMinTx; maxTx = nMaxTx; minTy = nMinTy; maxTy = nMaxTy;
+        for (int tx = minTx; tx <= maxTx; tx++) {
+            for (int ty = minTy; ty <= maxTy; ty++) {
+                long key = tileKey(tx, ty);
+                if (resident.get(key) == null) load(tx, ty); // get() also refreshes LRU order
+            }
+        }
+        trimToBudget();
+    }
+
+    private boolean isInView(int tx, int ty) { return tx >= minTx && tx <= maxTx && ty >= minTy && ty <= maxTy; }
+
+    @UiThread private void load(final int tx, final int ty) {
+        final long key = tileKey(tx, ty);
+        if (!loading.add(key)) return;
+        io.execute(() -> {
+            Tile tile;
+            try {
+                tile = readTile(tx, ty);
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to read tile " + tx + "," + ty, e);
+                tile = new Tile(tx, ty);
+                tile.unreadable = true;
+            }
+            final Tile loaded = tile;
+            mainHandler.post(() -> onLoaded(key, loaded));
+        });
+    }
+
+    @UiThread private void onLoaded(long key, @NonNull Tile tile) {
+        if (!loading.remove(key) || host == null) return;
+        Set<String> removed = removedWhileLoading.remove(key); // Read before the queued patch was written
+        List<Node> pending = pendingNodes.remove(key);
+        if (pending == null && !isInView(tile.tx, tile.ty)) return; // Scrolled away meanwhile; the patch still reaches the file
+
+        List<Edge> newEdges = new ArrayList<>();
+        for (int i = 0; i < tile.edges.size(); i++) {
+            EdgeRecord record = tile.edges.get(i);
+            if (removed != null && removed.contains(record.edge.id)) { tile.edges.remove(i--); continue; }
+            EdgeRecord shared = residentEdges.get(record.edge.id);
+            if (shared != null) { tile.edges.set(i, shared); record = shared; } // Resident copy is fresher
+            else { residentEdges.put(record.edge.id, record); newEdges.add(record.edge); }
+            record.refs++;
+        }
+        for (Node node : tile.nodes) nodeTiles.put(node.id, key);
+        List<Node> loadedNodes = new ArrayList<>(tile.nodes);
+        if (pending != null) { // Already shown by the view; just take ownership
+            Set<String> pendingIds = new HashSet<>();
+            for (Node node : pending) { tile.nodes.add(node); nodeTiles.put(node.id, key); pendingIds.add(node.id); }
+            for (EdgeRecord record : residentEdges.values()) {
+                boolean isSource = pendingIds.contains(record.edge.sourceNodeId), isTarget = pendingIds.contains(record.edge.targetNodeId);
+                if (!isSource && !isTarget) continue;
+                if (isSource) record.sourceTile = key;
+                if (isTarget) record.targetTile = key;
+                if (!tile.edges.contains(record)) { tile.edges.add(record); record.refs++; }
+            }
+            tile.dirty = true;
+        }
+        resident.put(key, tile);
+        account(key, tile);
+        if (pending != null) attachPendingEdges();
+        host.onTilePagedIn(loadedNodes, newEdges);
+        trimToBudget();
+    }
+
+    @UiThread private void trimToBudget() {
+        if (residentBytes <= memoryBudgetBytes) return;
+        List<Tile> victims = new ArrayList<>();
+        long projected = residentBytes;
+        for (Iterator<Tile> it = resident.values().iterator(); it.hasNext() && projected > memoryBudgetBytes; ) {
+            Tile tile = it.next(); // Eldest first
+            if (isInView(tile.tx, tile.ty)) continue; // Never evict what the viewport needs
+            it.remove();
+            projected -= tileBytes.get(tileKey(tile.tx, tile.ty));
+            victims.add(tile);
+        }
+        for (Tile tile : victims) evict(tile);
+    }
+
+    @UiThread private void evict(@NonNull Tile tile) {
+        long key = tileKey(tile.tx, tile.ty);
+        Long bytes = tileBytes.remove(key);
+        residentBytes -= bytes != null ? bytes : 0L;
+        if (tile.dirty) save(tile); // Also refreshes endpoint positions used for ghosting
+        List<Edge> dropped = new ArrayList<>();
+        for (EdgeRecord record : tile.edges) {
+            if (--record.refs == 0) { residentEdges.remove(record.edge.id); dropped.add(record.edge); }
+        }
+        for (Node node : tile.nodes) nodeTiles.remove(node.id);
+        if (host != null) host.onTilePagedOut(tile.nodes, dropped);
+    }
+
+    private void account(long key, @NonNull Tile tile) {
+        Long old = tileBytes.put(key, tile.estimateBytes());
+        residentBytes += tile.estimateBytes() - (old != null ? old : 0L);
+    }
+
+    // --- Edits (fed from the view's change batches) ---
+    @UiThread void applyChanges(@NonNull List<GraphChange> changes) {
+        for (GraphChange change : changes) {
+            switch (change.type) {
+                case NODE_ADDED: if (change.node != null) placeNode(change.node); break;
+                case NODE_MOVED: if (change.node != null) onNodeMoved(change.node); break;
+                case NODE_RELABELLED: case NODE_HANDLES_CHANGED: markDirty(nodeTiles.get(change.id)); break;
+                case NODE_REMOVED: {
+                    Long key = nodeTiles.remove(change.id);
+                    Tile tile = key != null ? resident.get(key) : null;
+                    if (tile != null) { removeNodeById(tile.nodes, change.id); tile.dirty = true; account(key, tile); }
+                    else if (key == null) removePending(change.id); // Never handed over; must not reach the tile file
+                    break;
+                }
+                case EDGE_ADDED: if (change.edge != null) addEdge(change.edge); break;
+                case EDGE_REMOVED: removeEdge(change.id); break;
+            }
+        }
+    }
+
+    private void placeNode(@NonNull Node node) {
+        int tx = tileIndex(node.position.x), ty = tileIndex(node.position.y); long key = tileKey(tx, ty);
+        Tile tile = resident.get(key);
+        if (tile != null) {
+            tile.nodes.add(node); tile.dirty = true; nodeTiles.put(node.id, key); account(key, tile);
+        } else { // Keep it in the view and hand it over once its tile is in memory
+            List<Node> pending = pendingNodes.get(key);
+            if (pending == null) { pending = new ArrayList<>(); pendingNodes.put(key, pending); }
+            pending.add(node);
+            load(tx, ty);
+        }
+    }
+
+    private void onNodeMoved(@NonNull Node node) {
+        Long oldKey = nodeTiles.get(node.id);
+        if (oldKey == null) { // Still waiting for its tile: queue it for the tile it is in now
+            if (removePending(node.id)) placeNode(node);
+            return;
+        }
+        Tile oldTile = resident.get(oldKey);
+        long newKey = tileKey(tileIndex(node.position.x), tileIndex(node.position.y));
+        if (oldTile == null) return;
+        oldTile.dirty = true;
+        if (newKey == oldKey) return;
+
+        removeNodeById(oldTile.nodes, node.id);
+        nodeTiles.remove(node.id);
+        account(oldKey, oldTile);
+        placeNode(node);
+        Long placedKey = nodeTiles.get(node.id);
+        long key = placedKey != null ? placedKey : newKey;
+        Tile newTile = resident.get(key);
+
+        // Re-home the records of edges attached to this node
+        for (Iterator<EdgeRecord> it = oldTile.edges.iterator(); it.hasNext(); ) {
+            EdgeRecord record = it.next();
+            boolean isSource = record.edge.sourceNodeId.equals(node.id), isTarget = record.edge.targetNodeId.equals(node.id);
+            if (!isSource && !isTarget) continue;
+            if (isSource) record.sourceTile = key;
+            if (isTarget) record.targetTile = key;
+            // Until the new tile is in memory the old one keeps the record (harmless extra copy on disk)
+            if (newTile != null && record.sourceTile != oldKey && record.targetTile != oldKey) { it.remove(); record.refs--; }
+            if (newTile != null && !newTile.edges.contains(record)) { newTile.edges.add(record); record.refs++; newTile.dirty = true; account(key, newTile); }
+        }
+        account(oldKey, oldTile);
+    }
+
+    private void addEdge(@NonNull Edge edge) {
+        Long sourceKey = nodeTiles.get(edge.sourceNodeId), targetKey = nodeTiles.get(edge.targetNodeId);
+        if (sourceKey == null || targetKey == null) {
+            if ((sourceKey != null || isPending(edge.sourceNodeId)) && (targetKey != null || isPending(edge.targetNodeId))) {
+                pendingEdges.add(edge); // Attached once every endpoint's tile is in memory
+            } else {
+                Log.w(TAG, "Edge " + edge.id + " has an endpoint outside resident tiles; not persisted");
+            }
+            return;
+        }
+        EdgeRecord record = new EdgeRecord(edge, sourceKey, targetKey);
+        refreshEndpoints(record);
+        residentEdges.put(edge.id, record);
+        for (long key : new long[]{sourceKey, targetKey}) {
+            Tile tile = resident.get(key);
+            if (tile != null && !tile.edges.contains(record)) { tile.edges.add(record); record.refs++; tile.dirty = true; account(key, tile); }
+        }
+    }
+
+    private void removeEdge(@NonNull String edgeId) {
+        for (Iterator<Edge> it = pendingEdges.iterator(); it.hasNext(); ) if (it.next().id.equals(edgeId)) { it.remove(); return; }
+        EdgeRecord record = residentEdges.remove(edgeId);
+        if (record == null) return;
+        long[] keys = record.sourceTile == record.targetTile ? new long[]{record.sourceTile} : new long[]{record.sourceTile, record.targetTile};
+        for (long key : keys) {
+            Tile tile = resident.get(key);
+            if (tile != null) {
+                if (tile.edges.remove(record)) { tile.dirty = true; account(key, tile); }
+            } else {
+                patchTile(key, Collections.<String, EdgeRecord>singletonMap(edgeId, null));
+                if (loading.contains(key)) { // The queued read runs before the patch: drop the record when it arrives
+                    Set<String> removed = removedWhileLoading.get(key);
+                    if (removed == null) { removed = new HashSet<>(); removedWhileLoading.put(key, removed); }
+                    removed.add(edgeId);
+                }
+            }
+        }
+    }
+
+    private void markDirty(@Nullable Long key) {
+        Tile tile = key != null ? resident.get(key) : null;
+        if (tile != null) tile.dirty = true;
+    }
+
+    private static boolean removeNodeById(@NonNull List<Node> list, @NonNull String nodeId) {
+        for (Iterator<Node> it = list.iterator(); it.hasNext(); ) if (it.next().id.equals(nodeId)) { it.remove(); return true; }
+        return false;
+    }
+
+    private boolean isPending(@NonNull String nodeId) {
+        for (List<Node> pending : pendingNodes.values()) for (Node node : pending) if (node.id.equals(nodeId)) return true;
+        return false;
+    }
+
+    // Persists queued edges whose endpoints have all been handed over
+    private void attachPendingEdges() {
+        List<Edge> ready = new ArrayList<>();
+        for (Iterator<Edge> it = pendingEdges.iterator(); it.hasNext(); ) {
+            Edge edge = it.next();
+            if (nodeTiles.containsKey(edge.sourceNodeId) && nodeTiles.containsKey(edge.targetNodeId)) { it.remove(); ready.add(edge); }
+        }
+        for (Edge edge : ready) addEdge(edge);
+    }
+
+    // Drops a node that is still waiting for its tile to load; the load itself may stay in flight
+    private boolean removePending(@NonNull String nodeId) {
+        for (Iterator<List<Node>> it = pendingNodes.values().iterator(); it.hasNext(); ) {
+            List<Node> pending = it.next();
+            if (!removeNodeById(pending, nodeId)) continue;
+            if (pending.isEmpty()) it.remove();
+            return true;
+        }
+        return false;
+    }
+
+    // --- Endpoint Lookup (for edges whose far end is not resident) ---
+    @UiThread boolean getPersistedEndpoint(@NonNull String edgeId, boolean source, @NonNull PointF out) {
+        EdgeRecord record = residentEdges.get(edgeId);
+        if (record == null) return false;
+        if (source) out.set(record.sourceX, record.sourceY); else out.set(record.targetX, record.targetY);
+        return true;
+    }
+
+    private void refreshEndpoints(@NonNull EdgeRecord record) {
+        if (host == null) return;
+        PointF s = host.findLiveHandlePosition(record.edge.sourceHandleId);
+        if (s != null) { record.sourceX = s.x; record.sourceY = s.y; }
+        PointF t = host.findLiveHandlePosition(record.edge.targetHandleId);
+        if (t != null) { record.targetX = t.x; record.targetY = t.y; }
+    }
+
+    // --- Persistence ---
+    @UiThread private void save(@NonNull Tile tile) {
+        if (tile.unreadable) { // Edits made to it are dropped rather than destroying what is on disk
+            Log.w(TAG, "Not overwriting unreadable tile " + tile.tx + "," + tile.ty);
+            tile.dirty = false;
+            return;
+        }
+        final long key = tileKey(tile.tx, tile.ty);
+        final List<NodeSnapshot> nodes = snapshotNodes(tile);
+        final List<EdgeRecord> records = new ArrayList<>(tile.edges.size());
+        Map<Long, Map<String, EdgeRecord>> patches = new HashMap<>();
+        for (EdgeRecord record : tile.edges) {
+            refreshEndpoints(record);
+            EdgeRecord copy = copyOf(record);
+            records.add(copy);
+            long other = record.otherTile(key);
+            if (other != key && !resident.containsKey(other)) { // Keep the far tile's copy in step
+                Map<String, EdgeRecord> patch = patches.get(other);
+                if (patch == null) { patch = new HashMap<>(); patches.put(other, patch); }
+                patch.put(copy.edge.id, copy);
+            }
+        }
+        tile.dirty = false;
+        final int tx = tile.tx, ty = tile.ty;
+        io.execute(() -> {
+            try {
+                writeTile(tx, ty, nodes, records);
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to write tile " + tx + "," + ty, e);
+            }
+        });
+        for (Map.Entry<Long, Map<String, EdgeRecord>> entry : patches.entrySet()) patchTile(entry.getKey(), entry.getValue());
+    }
+
+    // Replaces (or with a null value, removes) edge records inside a tile that is not in memory
+    @UiThread private void patchTile(final long key, @NonNull final Map<String, EdgeRecord> updates) {
+        final int tx = (int) (key >> 32), ty = (int) key;
+        io.execute(() -> {
+            try {
+                Tile tile = readTile(tx, ty);
+                List<EdgeRecord> records = new ArrayList<>();
+                for (EdgeRecord record : tile.edges) {
+                    if (!updates.containsKey(record.edge.id)) { records.add(record); continue; }
+                    EdgeRecord update = updates.get(record.edge.id);
+                    if (update != null) records.add(update);
+                }
+                writeTile(tx, ty, snapshotNodes(tile), records);
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to patch tile " + tx + "," + ty, e);
+            }
+        });
+    }
+
+    @NonNull private static List<NodeSnapshot> snapshotNodes(@NonNull Tile tile) {
+        List<NodeSnapshot> out = new ArrayList<>(tile.nodes.size());
+        for (Node node : tile.nodes) out.add(NodeSnapshot.of(node));
+        return out;
+    }
+
+    @NonNull private static EdgeRecord copyOf(@NonNull EdgeRecord r) {
+        EdgeRecord copy = new EdgeRecord(r.edge, r.sourceTile, r.targetTile);
+        copy.sourceX = r.sourceX; copy.sourceY = r.sourceY; copy.targetX = r.targetX; copy.targetY = r.targetY;
+        return copy;
+    }
+
+    @NonNull private File tileFile(int tx, int ty) { return new File(directory, "tile_" + tx + "_" + ty + ".bin"); }
+
+    @WorkerThread
+    private void writeTile(int tx, int ty, @NonNull List<NodeSnapshot> nodes, @NonNull List<EdgeRecord> edges) throws IOException {
+        File file = tileFile(tx, ty);
+        if (nodes.isEmpty() && edges.isEmpty()) { if (file.exists() && !file.delete()) Log.w(TAG, "Could not delete " + file); return; }
+        File tmp = new File(directory, file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(nodes.size());
+            for (NodeSnapshot n : nodes) {
+                out.writeUTF(n.id); out.writeFloat(n.x); out.writeFloat(n.y); out.writeFloat(n.width); out.writeFloat(n.height);
+                out.writeInt(n.shape.ordinal()); out.writeUTF(n.label);
+                out.writeInt(n.customDrawableResId != null ? n.customDrawableResId : 0);
+                out.writeInt(n.backgroundDrawableResId != null ? n.backgroundDrawableResId : 0);
+                writeHandleGroup(out, n, 0, n.inputHandleCount, n.inputSide, n.explicitInputs);
+                writeHandleGroup(out, n, n.inputHandleCount, n.getHandleCount(), n.outputSide, n.explicitOutputs);
+            }
+            out.writeInt(edges.size());
+            for (EdgeRecord r : edges) {
+                Edge e = r.edge;
+                out.writeUTF(e.id); out.writeUTF(e.sourceNodeId); out.writeUTF(e.sourceHandleId);
+                out.writeUTF(e.targetNodeId); out.writeUTF(e.targetHandleId); out.writeBoolean(e.animated);
+                out.writeLong(r.sourceTile); out.writeLong(r.targetTile);
+                out.writeFloat(r.sourceX); out.writeFloat(r.sourceY); out.writeFloat(r.targetX); out.writeFloat(r.targetY);
+            }
+        }
+        if (!tmp.renameTo(file)) throw new IOException("Could not replace " + file);
+    }
+
+    @WorkerThread @NonNull
+    private Tile readTile(int tx, int ty) throws IOException {
+        Tile tile = new Tile(tx, ty);
+        File file = tileFile(tx, ty);
+        if (!file.exists()) return tile;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC) throw new IOException("Not a tile file: " + file);
+            int nodeCount = in.readInt();
+            NodeShape[] shapes = NodeShape.values();
+            for (int i = 0; i < nodeCount; i++) {
+                String id = in.readUTF(); float x = in.readFloat(), y = in.readFloat(), w = in.readFloat(), h = in.readFloat();
+                NodeShape shape = shapes[in.readInt()]; String label = in.readUTF();
+                int icon = in.readInt(), bg = in.readInt();
+                Node node = new Node(id, new PointF(x, y), w, h, shape, label,
+                        icon != 0 ? icon : null, bg != 0 ? bg : null, 0, 0);
+                String[] inputIds = readHandleGroup(in, node, Handle.Type.INPUT);
+                String[] outputIds = readHandleGroup(in, node, Handle.Type.OUTPUT);
+                node.restoreHandleIds(inputIds, outputIds);
+                tile.nodes.add(node);
+            }
+            int edgeCount = in.readInt();
+            for (int i = 0; i < edgeCount; i++) {
+                Edge edge = new Edge(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(), in.readBoolean());
+                EdgeRecord record = new EdgeRecord(edge, in.readLong(), in.readLong());
+                record.sourceX = in.readFloat(); record.sourceY = in.readFloat(); record.targetX = in.readFloat(); record.targetY = in.readFloat();
+                tile.edges.add(record);
+            }
+        }
+        return tile;
+    }
+
+    // Per group: side, explicit flag, count, then (id, optional label, explicit offset) per handle
+    private static void writeHandleGroup(@NonNull DataOutputStream out, @NonNull NodeSnapshot n, int from, int to,
+                                         @NonNull Handle.Side side, boolean explicit) throws IOException {
+        out.writeByte(side.ordinal()); out.writeBoolean(explicit); out.writeInt(to - from);
+        for (int i = from; i < to; i++) {
+            out.writeUTF(n.getHandleId(i));
+            String label = n.getHandleLabel(i);
+            out.writeBoolean(label != null); if (label != null) out.writeUTF(label);
+            if (explicit) { out.writeFloat(n.getHandleOffsetX(i)); out.writeFloat(n.getHandleOffsetY(i)); }
+        }
+    }
+
+    // Rebuilds the group's layout on the node and returns the stored handle ids
+    @NonNull private static String[] readHandleGroup(@NonNull DataInputStream in, @NonNull Node node, @NonNull Handle.Type type) throws IOException {
+        Handle.Side side = Handle.Side.values()[in.readByte()]; boolean explicit = in.readBoolean();
+        int count = in.readInt();
+        String[] ids = new String[count], labels = new String[count];
+        PointF[] offsets = explicit ? new PointF[count] : null;
+        for (int k = 0; k < count; k++) {
+            ids[k] = in.readUTF();
+            if (in.readBoolean()) labels[k] = in.readUTF();
+            if (offsets != null) offsets[k] = new PointF(in.readFloat(), in.readFloat());
+        }
+        if (offsets != null) node.setExplicitHandles(type, side, offsets, labels);
+        else node.setHandleLayout(type, side, count, labels);
+        return ids;
+    }
+
+    // --- Tile Math ---
+    private int tileIndex(float worldCoord) { return (int) Math.floor(worldCoord / tileSize); }
+    private static long tileKey(int tx, int ty) { return ((long) tx << 32) | (ty & 0xffffffffL); }
+}
@@ -0,0 +1,172 @@
+package com.anass.halak.reactflow;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class EdgeHitIndexTest {
+    private static final float TOLERANCE = 20f;
+
+    private final Map<String, float[]> positions = new HashMap<>(); // Node id -> (x, y) of its handle
+    private EdgeHitIndex index;
+
+    @Before
+    public void setUp() {
+        index = new EdgeHitIndex((edge, out) -> {
+            float[] source = positions.get(edge.sourceNodeId), target = positions.get(edge.targetNodeId);
+            if (source == null || target == null) return false;
+            out[0] = source[0]; out[1] = source[1]; out[2] = target[0]; out[3] = target[1];
+            return true;
+        });
+    }
+
+    @Test
+    public void findsAnEdgeAlongItsCurveOnly() {
+        node("a", 0f, 0f); node("b", 400f, 0f);
+        Edge edge = edge("e", "a", "b");
+        index.addEdge(edge);
+        for (float t = 0f; t <= 1f; t += 0.05f) {
+            float[] p = curvePoint(edge, t);
+            assertSame("t=" + t, edge, index.findEdgeAt(p[0], p[1], TOLERANCE));
+            assertSame("t=" + t + ", just inside", edge, index.findEdgeAt(p[0], p[1] + TOLERANCE * 0.8f, TOLERANCE));
+        }
+        assertNull(index.findEdgeAt(200f, 0f, TOLERANCE)); // The chord, well off the bowed curve
+        assertNull(index.findEdgeAt(-100f, -100f, TOLERANCE));
+    }
+
+    @Test
+    public void closestEdgeWins() {
+        node("a", 0f, 0f); node("b", 300f, 0f); node("c", 0f, 30f); node("d", 300f, 30f);
+        Edge upper = edge("upper", "a", "b"), lower = edge("lower", "c", "d");
+        index.addEdge(upper); index.addEdge(lower);
+        float[] onUpper = curvePoint(upper, 0.3f), onLower = curvePoint(lower, 0.3f);
+        assertSame(upper, index.findEdgeAt(onUpper[0], onUpper[1] + 5f, TOLERANCE));
+        assertSame(lower, index.findEdgeAt(onLower[0], onLower[1] - 5f, TOLERANCE));
+    }
+
+    @Test
+    public void movedNodesAreReindexedOnTheNextQuery() {
+        node("a", 0f, 0f); node("b", 200f, 0f);
+        Edge edge = edge("e", "a", "b");
+        index.addEdge(edge);
+        float[] before = curvePoint(edge, 0.5f);
+        assertSame(edge, index.findEdgeAt(before[0], before[1], TOLERANCE));
+
+        node("b", 200f, 600f);
+        index.markNodeMoved("b");
+        float[] after = curvePoint(edge, 0.5f);
+        assertNull(index.findEdgeAt(before[0], before[1], TOLERANCE));
+        assertSame(edge, index.findEdgeAt(after[0], after[1], TOLERANCE));
+    }
+
+    @Test
+    public void removedEdgesAreNotHitAndSlotsAreReused() {
+        node("a", 0f, 0f); node("b", 200f, 0f); node("c", 0f, 500f); node("d", 200f, 500f);
+        Edge first = edge("first", "a", "b");
+        index.addEdge(first);
+        float[] p = curvePoint(first, 0.5f);
+        assertSame(first, index.findEdgeAt(p[0], p[1], TOLERANCE));
+
+        index.removeEdge("first");
+        assertNull(index.findEdgeAt(p[0], p[1], TOLERANCE));
+        Edge second = edge("second", "c", "d"); // Takes the freed slot
+        index.addEdge(second);
+        float[] q = curvePoint(second, 0.5f);
+        assertNull(index.findEdgeAt(p[0], p[1], TOLERANCE));
+        assertSame(second, index.findEdgeAt(q[0], q[1], TOLERANCE));
+
+        index.markNodeMoved("a"); // No edges left on it
+        assertNull(index.findEdgeAt(p[0], p[1], TOLERANCE));
+    }
+
+    @Test
+    public void unresolvedEdgesAreSkippedUntilTheirNodesExist() {
+        node("a", 0f, 0f);
+        Edge edge = edge("e", "a", "b");
+        index.addEdge(edge);
+        assertNull(index.findEdgeAt(100f, 0f, 500f));
+        node("b", 300f, 0f);
+        index.markNodeMoved("b");
+        float[] p = curvePoint(edge, 0.5f);
+        assertSame(edge, index.findEdgeAt(p[0], p[1], TOLERANCE));
+    }
+
+    @Test
+    public void rebuildIndexesLazily() {
+        node("a", 0f, 0f); node("b", 300f, 100f);
+        index.addEdge(edge("old", "a", "b"));
+        Edge edge = edge("e", "b", "a");
+        index.rebuild(Arrays.asList(edge));
+        float[] p = curvePoint(edge, 0.4f);
+        assertSame(edge, index.findEdgeAt(p[0], p[1], TOLERANCE));
+        index.removeEdge("e");
+        assertNull(index.findEdgeAt(p[0], p[1], TOLERANCE));
+    }
+
+    @Test
+    public void gridAgreesWithABruteForceScan() {
+        Random random = new Random(5);
+        for (int i = 0; i < 60; i++) node("n" + i, random.nextFloat() * 2000f - 1000f, random.nextFloat() * 2000f - 1000f);
+        List<Edge> edges = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            int s = random.nextInt(60), t = random.nextInt(60);
+            float[] a = positions.get("n" + s), b = positions.get("n" + t);
+            if (s == t || Math.hypot(a[0] - b[0], a[1] - b[1]) > 1200f) continue; // Keep the flattening error far below the tolerance
+            Edge edge = edge("e" + i, "n" + s, "n" + t);
+            edges.add(edge);
+            index.addEdge(edge);
+        }
+        int hits = 0;
+        for (int q = 0; q < 1500; q++) {
+            float x, y;
+            if (q % 2 == 0) { // Near a random curve point, so roughly half the queries should hit
+                float[] p = curvePoint(edges.get(random.nextInt(edges.size())), random.nextFloat());
+                x = p[0] + (random.nextFloat() - 0.5f) * 4f * TOLERANCE; y = p[1] + (random.nextFloat() - 0.5f) * 4f * TOLERANCE;
+            } else {
+                x = random.nextFloat() * 2400f - 1200f; y = random.nextFloat() * 2400f - 1200f;
+            }
+            float nearest = Float.MAX_VALUE;
+            for (Edge edge : edges) nearest = Math.min(nearest, curveDistance(edge, x, y));
+            Edge found = index.findEdgeAt(x, y, TOLERANCE);
+            if (nearest < TOLERANCE * 0.8f) { assertNotNull("(" + x + ", " + y + ") at " + nearest, found); hits++; }
+            if (nearest > TOLERANCE * 1.2f) assertNull("(" + x + ", " + y + ") at " + nearest, found);
+            if (found != null) assertTrue(curveDistance(found, x, y) < TOLERANCE * 1.2f);
+        }
+        assertTrue("hits: " + hits, hits > 200);
+    }
+
+    // --- Helpers ---
+    private void node(String id, float x, float y) { positions.put(id, new float[]{x, y}); }
+
+    private static Edge edge(String id, String source, String target) { return new Edge(id, source, "out", target, "in", false); }
+
+    // Point on the edge's quadratic curve, with the control point used by the index
+    private float[] curvePoint(Edge edge, float t) {
+        float[] s = positions.get(edge.sourceNodeId), e = positions.get(edge.targetNodeId);
+        float dx = e[0] - s[0], dy = e[1] - s[1];
+        float cx = (s[0] + e[0]) / 2 - dy * 0.25f, cy = (s[1] + e[1]) / 2 + dx * 0.25f;
+        float u = 1 - t;
+        return new float[]{u * u * s[0] + 2 * u * t * cx + t * t * e[0], u * u * s[1] + 2 * u * t * cy + t * t * e[1]};
+    }
+
+    // Distance to the exact curve, by dense sampling
+    private float curveDistance(Edge edge, float x, float y) {
+        float best = Float.MAX_VALUE;
+        for (int i = 0; i <= 400; i++) {
+            float[] p = curvePoint(edge, i / 400f);
+            best = Math.min(best, (float) Math.hypot(p[0] - x, p[1] - y));
+        }
+        return best;
+    }
+}
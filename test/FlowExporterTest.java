@@ -0,0 +1,139 @@
+package com.anass.halak.reactflow;
+
+import android.graphics.PointF;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/** Exports without an attached window; the SVG formatting helpers are checked directly. */
+@RunWith(RobolectricTestRunner.class)
+public class FlowExporterTest {
+
+    // --- SVG Formatting ---
+    @Test
+    public void numKeepsAtMostTwoDecimals() {
+        assertEquals("0", num(0f));
+        assertEquals("12", num(12f));
+        assertEquals("1.5", num(1.5f));
+        assertEquals("1.05", num(1.05f));
+        assertEquals("0.33", num(1f / 3f));
+        assertEquals("0.67", num(2f / 3f));
+        assertEquals("-2.25", num(-2.25f));
+        assertEquals("-0.01", num(-0.01f));
+        assertEquals("0", num(-0.001f)); // No "-0"
+        assertEquals("100", num(99.999f));
+    }
+
+    @Test
+    public void escapeEncodesMarkup() {
+        assertEquals("a &lt;b&gt; &amp; &quot;c&quot; 'd'", escape("a <b> & \"c\" 'd'"));
+    }
+
+    @Test
+    public void escapeDropsCharactersXmlDoesNotAllow() {
+        assertEquals("ab", escape("a\0\1\10\13\14\37b"));
+        assertEquals("tab\tline\nreturn\r", escape("tab\tline\nreturn\r"));
+        assertEquals("xy", escape("x\uFFFE\uFFFFy"));
+        assertEquals("lone", escape("lo\uD800ne\uDC00")); // Unpaired surrogates
+        assertEquals("\u00E9 \uE000 \uFFFD \uD83D\uDE00", escape("\u00E9 \uE000 \uFFFD \uD83D\uDE00")); // Supplementary characters stay paired
+    }
+
+    @Test
+    public void colorWritesOpacityOnlyWhenTranslucent() {
+        assertEquals(" fill=\"#ff0000\"", color("fill", 0xFFFF0000));
+        assertEquals(" fill=\"#000001\"", color("fill", 0xFF000001));
+        assertEquals(" stroke=\"#00ff00\" stroke-opacity=\"0.5\"", color("stroke", 0x8000FF00));
+        assertEquals(" fill=\"#123456\" fill-opacity=\"0\"", color("fill", 0x00123456));
+    }
+
+    @Test
+    public void formattedFragmentParses() throws Exception {
+        StringBuilder sb = new StringBuilder("<svg xmlns=\"http://www.w3.org/2000/svg\"><text");
+        FlowExporter.attr(sb, "x", 1.25f);
+        FlowExporter.color(sb, "fill", 0x80102030).append('>');
+        FlowExporter.escape(sb, "<a & \"b\">\7\33").append("</text></svg>");
+        Element text = (Element) parse(sb.toString()).getElementsByTagName("text").item(0);
+        assertEquals("1.25", text.getAttribute("x"));
+        assertEquals("#102030", text.getAttribute("fill"));
+        assertEquals("0.5", text.getAttribute("fill-opacity"));
+        assertEquals("<a & \"b\">", text.getTextContent());
+    }
+
+    // --- Export ---
+    @Test
+    public void svgExportIsWellFormed() throws Exception {
+        StringWriter svg = new StringWriter();
+        exporter().exportSvg(svg);
+        Document document = parse(svg.toString());
+        assertEquals("svg", document.getDocumentElement().getTagName());
+        NodeList texts = document.getElementsByTagName("text");
+        List<String> labels = new ArrayList<>();
+        for (int i = 0; i < texts.getLength(); i++) labels.add(texts.item(i).getTextContent());
+        assertEquals(Arrays.asList("A & <B>", "bell"), labels);
+        assertEquals(1, document.getElementsByTagName("path").getLength() - arrowheadCount(document));
+    }
+
+    @Test
+    public void pngExportMatchesTheSvgSize() throws Exception {
+        FlowExporter exporter = exporter();
+        exporter.setTileSize(64); // Several bands and columns
+        exporter.setThreadCount(2);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        exporter.exportPng(png);
+        StringWriter svg = new StringWriter();
+        exporter.exportSvg(svg);
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png.toByteArray()));
+        assertNotNull(image);
+        Element root = parse(svg.toString()).getDocumentElement();
+        assertEquals(Integer.parseInt(root.getAttribute("width")), image.getWidth());
+        assertEquals(Integer.parseInt(root.getAttribute("height")), image.getHeight());
+    }
+
+    // --- Helpers ---
+    private static FlowExporter exporter() {
+        Node a = new Node("a", new PointF(0f, 0f), 120f, 80f, NodeShape.RECTANGLE, "A & <B>", null, null, 1, 1);
+        Node b = new Node("b", new PointF(300f, 150f), 120f, 80f, NodeShape.RECTANGLE, "bell\7", null, null, 1, 1);
+        Edge edge = new Edge("e", "a", a.outputHandles.get(0).id, "b", b.inputHandles.get(0).id, false);
+        return new FlowExporter(RuntimeEnvironment.getApplication(), Arrays.asList(a, b), Arrays.asList(edge));
+    }
+
+    // Arrowheads are the closed paths
+    private static int arrowheadCount(Document document) {
+        NodeList paths = document.getElementsByTagName("path");
+        int count = 0;
+        for (int i = 0; i < paths.getLength(); i++) if (((Element) paths.item(i)).getAttribute("d").endsWith("Z")) count++;
+        return count;
+    }
+
+    private static Document parse(String xml) throws Exception {
+        DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        return builder.parse(new InputSource(new StringReader(xml)));
+    }
+
+    private static String num(float value) { return FlowExporter.num(new StringBuilder(), value).toString(); }
+    private static String escape(String text) { return FlowExporter.escape(new StringBuilder(), text).toString(); }
+    private static String color(String name, int color) { return FlowExporter.color(new StringBuilder(), name, color).toString(); }
+}
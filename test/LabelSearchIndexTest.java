@@ -0,0 +1,131 @@
+package com.anass.halak.reactflow;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LabelSearchIndexTest {
+    private final LabelSearchIndex index = new LabelSearchIndex();
+
+    @Test
+    public void ranksExactThenPrefixThenWordThenSubstring() {
+        index.put("substring", "Bitmap");
+        index.put("word", "Road map");
+        index.put("prefix", "Mapper");
+        index.put("exact", "MAP");
+        assertEquals(Arrays.asList("exact", "prefix", "word", "substring"), index.search("map", 10));
+    }
+
+    @Test
+    public void tiesGoToShorterThenAlphabeticalLabels() {
+        index.put("long", "Source node");
+        index.put("b", "Source B");
+        index.put("a", "Source A");
+        assertEquals(Arrays.asList("a", "b", "long"), index.search("sour", 10));
+    }
+
+    @Test
+    public void shortQueriesMatchWordStartsOnly() {
+        index.put("bitmap", "Bitmap");
+        index.put("road", "Road map");
+        index.put("mapper", "Mapper");
+        index.put("map", "Map");
+        assertEquals(Arrays.asList("map", "mapper", "road"), index.search("ma", 10));
+        assertEquals(Arrays.asList("map", "mapper", "road"), index.search(" M ", 10)); // Trimmed, any case
+    }
+
+    @Test
+    public void limitKeepsTheBestMatchesWhereverTheyAreFound() {
+        for (int i = 0; i < 500; i++) index.put("word" + i, "node m" + i);
+        index.put("prefix", "m-late");
+        index.put("exact", "m");
+        assertEquals(Arrays.asList("exact", "prefix", "word0"), index.search("m", 3));
+        for (int i = 0; i < 500; i++) index.put("sub" + i, "xyzmap" + i);
+        index.put("best", "map");
+        assertEquals(Arrays.asList("best", "sub0"), index.search("map", 2));
+    }
+
+    @Test
+    public void labelMatchingSeveralTimesIsReturnedOnce() {
+        index.put("n", "map to map via map");
+        assertEquals(Collections.singletonList("n"), index.search("ma", 10));
+        assertEquals(Collections.singletonList("n"), index.search("map", 10));
+    }
+
+    @Test
+    public void removedAndRelabelledNodesLeaveNoStaleMatches() {
+        index.put("a", "Alpha");
+        index.put("b", "Beta");
+        index.remove("a");
+        assertEquals(Collections.emptyList(), index.search("alp", 10));
+        assertEquals(Collections.emptyList(), index.search("al", 10));
+
+        index.put("b", "Gamma"); // Relabel
+        assertEquals(Collections.emptyList(), index.search("beta", 10));
+        assertEquals(Collections.emptyList(), index.search("be", 10));
+        assertEquals(Collections.singletonList("b"), index.search("gam", 10));
+
+        index.put("c", "Beta"); // Reuses a freed slot, must not resurrect old postings of other ids
+        assertEquals(Collections.singletonList("c"), index.search("beta", 10));
+        assertEquals(Collections.emptyList(), index.search("alpha", 10));
+    }
+
+    @Test
+    public void compactionAfterManyRemovalsKeepsLiveNodes() {
+        for (int i = 0; i < 2000; i++) index.put("n" + i, "shared label number " + i);
+        for (int i = 0; i < 2000; i++) if (i % 10 != 0) index.remove("n" + i); // Enough stale postings to compact
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 2000; i += 10) expected.add("n" + i);
+        List<String> found = index.search("shared", 1000);
+        Collections.sort(found); Collections.sort(expected);
+        assertEquals(expected, found);
+        assertEquals(Collections.singletonList("n1990"), index.search("number 1990", 10));
+        assertEquals(Collections.emptyList(), index.search("number 1991", 10));
+    }
+
+    @Test
+    public void refiningAQuerySeesChangesMadeInBetween() {
+        index.put("a", "Parser");
+        assertEquals(Collections.singletonList("a"), index.search("par", 10));
+        index.put("b", "Parse tree");
+        index.remove("a");
+        assertEquals(Collections.singletonList("b"), index.search("pars", 10));
+        assertEquals(Collections.singletonList("b"), index.search("parse", 10));
+        assertEquals(Collections.emptyList(), index.search("parsed", 10));
+    }
+
+    @Test
+    public void refinedQueryMatchesAFreshSearch() {
+        String[] labels = {"Load balancer", "Loader", "Payload", "Upload queue", "Downloads", "Reload config", "Low"};
+        for (int i = 0; i < labels.length; i++) index.put("n" + i, labels[i]);
+        List<String> refined = null;
+        for (String query : new String[]{"lo", "loa", "load"}) refined = index.search(query, 10);
+        LabelSearchIndex fresh = new LabelSearchIndex();
+        for (int i = 0; i < labels.length; i++) fresh.put("n" + i, labels[i]);
+        assertEquals(fresh.search("load", 10), refined);
+        assertEquals(Arrays.asList("n1", "n0", "n2", "n4", "n3", "n5"), refined);
+    }
+
+    @Test
+    public void emptyQueriesAndLimitsReturnNothing() {
+        index.put("a", "Alpha");
+        assertTrue(index.search("", 10).isEmpty());
+        assertTrue(index.search("   ", 10).isEmpty());
+        assertTrue(index.search("alpha", 0).isEmpty());
+    }
+
+    @Test
+    public void rebuildDropsEverything() {
+        index.put("a", "Alpha");
+        index.rebuild(Collections.<Node>emptyList());
+        assertTrue(index.search("alpha", 10).isEmpty());
+        index.put("b", "Alphabet");
+        assertEquals(Collections.singletonList("b"), index.search("alpha", 10));
+    }
+}
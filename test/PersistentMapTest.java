@@ -0,0 +1,124 @@
+package com.anass.halak.reactflow;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class PersistentMapTest {
+
+    @Test
+    public void putGetAndOverwrite() {
+        PersistentMap<String, Integer> map = PersistentMap.<String, Integer>empty().put("a", 1).put("b", 2);
+        assertEquals(2, map.size());
+        assertEquals(Integer.valueOf(1), map.get("a"));
+        assertNull(map.get("c"));
+
+        PersistentMap<String, Integer> overwritten = map.put("a", 10);
+        assertEquals(2, overwritten.size());
+        assertEquals(Integer.valueOf(10), overwritten.get("a"));
+        assertEquals(Integer.valueOf(1), map.get("a")); // Older version unchanged
+    }
+
+    @Test
+    public void noOpUpdatesReturnTheSameMap() {
+        Integer one = 1;
+        PersistentMap<String, Integer> map = PersistentMap.<String, Integer>empty().put("a", one);
+        assertSame(map, map.put("a", one));
+        assertSame(map, map.remove("missing"));
+    }
+
+    @Test
+    public void removeKeepsOlderVersions() {
+        PersistentMap<String, Integer> map = PersistentMap.empty();
+        for (int i = 0; i < 1000; i++) map = map.put("k" + i, i);
+        PersistentMap<String, Integer> removed = map;
+        for (int i = 0; i < 1000; i += 2) removed = removed.remove("k" + i);
+        assertEquals(500, removed.size());
+        assertEquals(1000, map.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(Integer.valueOf(i), map.get("k" + i));
+            assertEquals(i % 2 == 0 ? null : Integer.valueOf(i), removed.get("k" + i));
+        }
+        for (int i = 1; i < 1000; i += 2) removed = removed.remove("k" + i);
+        assertEquals(0, removed.size());
+        assertNull(removed.get("k1"));
+    }
+
+    @Test
+    public void keysWithEqualHashesShareACollisionNode() {
+        Key a = new Key("a", 42), b = new Key("b", 42), c = new Key("c", 42);
+        PersistentMap<Key, String> map = PersistentMap.<Key, String>empty().put(a, "A").put(b, "B").put(c, "C");
+        assertEquals(3, map.size());
+        assertEquals("A", map.get(a)); assertEquals("B", map.get(b)); assertEquals("C", map.get(c));
+        assertNull(map.get(new Key("d", 42)));
+
+        PersistentMap<Key, String> replaced = map.put(b, "B2");
+        assertEquals(3, replaced.size());
+        assertEquals("B2", replaced.get(b));
+        assertEquals("B", map.get(b));
+
+        PersistentMap<Key, String> removed = map.remove(b);
+        assertEquals(2, removed.size());
+        assertNull(removed.get(b));
+        assertEquals("A", removed.get(a)); assertEquals("C", removed.get(c));
+        removed = removed.remove(a).remove(c);
+        assertEquals(0, removed.size());
+        assertNull(removed.get(a));
+    }
+
+    @Test
+    public void collisionNodeIsNestedWhenAnotherHashArrives() {
+        // Same low five bits (same slot at the root), different full hashes
+        Key a = new Key("a", 0x21), b = new Key("b", 0x21), c = new Key("c", 0x41);
+        PersistentMap<Key, String> map = PersistentMap.<Key, String>empty().put(a, "A").put(b, "B").put(c, "C");
+        assertEquals(3, map.size());
+        assertEquals("A", map.get(a)); assertEquals("B", map.get(b)); assertEquals("C", map.get(c));
+        map = map.remove(a);
+        assertEquals("B", map.get(b)); assertEquals("C", map.get(c));
+        assertNull(map.get(a));
+    }
+
+    @Test
+    public void hashesDifferingOnlyInTheTopBitsStaySeparate() {
+        // Mixed hashes 0x00000001, 0x40000001 and 0x80000001: equal in bits 0..29, so the keys split only at the deepest level
+        Key a = new Key("a", 0x00000001), b = new Key("b", 0x40004001), c = new Key("c", 0x80008001);
+        PersistentMap<Key, String> map = PersistentMap.<Key, String>empty().put(a, "A").put(b, "B").put(c, "C");
+        assertEquals(3, map.size());
+        assertEquals("A", map.get(a)); assertEquals("B", map.get(b)); assertEquals("C", map.get(c));
+        assertEquals(2, map.remove(b).size());
+        assertNull(map.remove(b).get(b));
+    }
+
+    @Test
+    public void matchesHashMapUnderRandomUpdates() {
+        Random random = new Random(3);
+        Map<Key, Integer> expected = new HashMap<>();
+        PersistentMap<Key, Integer> map = PersistentMap.empty();
+        for (int step = 0; step < 20000; step++) {
+            int n = random.nextInt(400);
+            Key key = new Key("k" + n, n % 37); // Plenty of full-hash collisions
+            if (random.nextInt(3) == 0) { expected.remove(key); map = map.remove(key); }
+            else { expected.put(key, step); map = map.put(key, step); }
+            assertEquals(expected.size(), map.size());
+        }
+        for (Map.Entry<Key, Integer> entry : expected.entrySet()) assertEquals(entry.getValue(), map.get(entry.getKey()));
+        Map<Key, Integer> visited = new HashMap<>();
+        map.forEach(visited::put);
+        assertEquals(expected, visited);
+    }
+
+    // Key with a chosen hash; PersistentMap mixes it as h ^ (h >>> 16), so hashes below 0x10000 are used as is
+    private static final class Key {
+        final String name; final int hash;
+        Key(String name, int hash) { this.name = name; this.hash = hash; }
+        @Override public int hashCode() { return hash; }
+        @Override public boolean equals(Object o) { return o instanceof Key && ((Key) o).name.equals(name); }
+        @Override public String toString() { return name; }
+    }
+}
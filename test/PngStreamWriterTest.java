@@ -0,0 +1,202 @@
+package com.anass.halak.reactflow;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/** Plain JVM tests for the streaming PNG encoder behind {@link FlowExporter#exportPng}. */
+public class PngStreamWriterTest {
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    @Test
+    public void decodesToTheWrittenPixels() throws Exception {
+        int[] pixels = gradient(37, 23);
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(encode(37, 23, pixels)));
+        assertNotNull(image);
+        assertEquals(37, image.getWidth());
+        assertEquals(23, image.getHeight());
+        assertArrayEquals(pixels, image.getRGB(0, 0, 37, 23, null, 0, 37));
+    }
+
+    @Test
+    public void keepsTranslucentAndFullyTransparentPixels() throws Exception {
+        int[] pixels = {0x00000000, 0x80FF0000, 0x01020304, 0xFFFFFFFF, 0x7F00FF00, 0xFE0000FF};
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(encode(3, 2, pixels)));
+        assertArrayEquals(pixels, image.getRGB(0, 0, 3, 2, null, 0, 3));
+    }
+
+    @Test
+    public void everyRowUsesTheSubFilter() throws Exception {
+        int width = 5, height = 4;
+        int[] pixels = gradient(width, height);
+        byte[] raw = inflate(idatData(chunks(encode(width, height, pixels))));
+        assertEquals(height * (1 + 4 * width), raw.length);
+        for (int y = 0; y < height; y++) {
+            int start = y * (1 + 4 * width);
+            assertEquals("filter byte of row " + y, 1, raw[start]);
+            // Undo Sub by hand: each byte plus the reconstructed byte four to its left
+            byte[] rgba = new byte[4 * width];
+            for (int i = 0; i < rgba.length; i++) rgba[i] = (byte) (raw[start + 1 + i] + (i >= 4 ? rgba[i - 4] : 0));
+            for (int x = 0; x < width; x++) {
+                int p = pixels[y * width + x];
+                assertEquals((byte) (p >> 16), rgba[4 * x]);
+                assertEquals((byte) (p >> 8), rgba[4 * x + 1]);
+                assertEquals((byte) p, rgba[4 * x + 2]);
+                assertEquals((byte) (p >>> 24), rgba[4 * x + 3]);
+            }
+        }
+    }
+
+    @Test
+    public void largeImageIsSplitIntoSeveralIdatChunks() throws Exception {
+        int width = 300, height = 300;
+        int[] pixels = noise(width, height, 7L); // Incompressible: ~360 KB of deflated data
+        byte[] png = encode(width, height, pixels);
+        List<Chunk> chunks = chunks(png);
+        int idats = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            Chunk chunk = chunks.get(i);
+            if (!chunk.type.equals("IDAT")) continue;
+            idats++;
+            boolean last = !chunks.get(i + 1).type.equals("IDAT");
+            if (!last) assertEquals("full chunk " + idats, CHUNK_SIZE, chunk.data.length);
+            assertTrue(chunk.data.length > 0);
+        }
+        assertTrue("IDAT chunks: " + idats, idats > 1);
+        assertArrayEquals(pixels, ImageIO.read(new ByteArrayInputStream(png)).getRGB(0, 0, width, height, null, 0, width));
+    }
+
+    @Test
+    public void chunksAreInOrderWithValidCrcs() throws Exception {
+        byte[] png = encode(200, 200, noise(200, 200, 11L));
+        List<Chunk> chunks = chunks(png);
+        assertEquals("IHDR", chunks.get(0).type);
+        assertEquals("IEND", chunks.get(chunks.size() - 1).type);
+        assertEquals(0, chunks.get(chunks.size() - 1).data.length);
+        ByteBuffer header = ByteBuffer.wrap(chunks.get(0).data);
+        assertEquals(200, header.getInt());
+        assertEquals(200, header.getInt());
+        assertEquals(8, header.get()); // Bit depth
+        assertEquals(6, header.get()); // RGBA
+        for (Chunk chunk : chunks) {
+            CRC32 crc = new CRC32();
+            crc.update(chunk.type.getBytes(StandardCharsets.US_ASCII));
+            crc.update(chunk.data);
+            assertEquals(chunk.type + " CRC", crc.getValue(), chunk.crc);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void finishRejectsMissingRows() throws Exception {
+        FlowExporter.PngStreamWriter png = new FlowExporter.PngStreamWriter(new ByteArrayOutputStream(), 2, 2);
+        try {
+            png.writeRow(new int[2]);
+            png.finish();
+        } finally {
+            png.release();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void writeRowRejectsExtraRows() throws Exception {
+        FlowExporter.PngStreamWriter png = new FlowExporter.PngStreamWriter(new ByteArrayOutputStream(), 2, 1);
+        try {
+            png.writeRow(new int[2]);
+            png.writeRow(new int[2]);
+        } finally {
+            png.release();
+        }
+    }
+
+    // --- Helpers ---
+    private static byte[] encode(int width, int height, int[] pixels) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FlowExporter.PngStreamWriter png = new FlowExporter.PngStreamWriter(out, width, height);
+        try {
+            int[] row = new int[width];
+            for (int y = 0; y < height; y++) {
+                System.arraycopy(pixels, y * width, row, 0, width);
+                png.writeRow(row);
+            }
+            png.finish();
+        } finally {
+            png.release();
+        }
+        return out.toByteArray();
+    }
+
+    private static int[] gradient(int width, int height) {
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                pixels[y * width + x] = (255 - y * 5) << 24 | (x * 7) << 16 | (y * 11) << 8 | ((x + y) * 3);
+            }
+        }
+        return pixels;
+    }
+
+    private static int[] noise(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) pixels[i] = random.nextInt();
+        return pixels;
+    }
+
+    private static final class Chunk {
+        final String type; final byte[] data; final long crc;
+        Chunk(String type, byte[] data, long crc) { this.type = type; this.data = data; this.crc = crc; }
+    }
+
+    private static List<Chunk> chunks(byte[] png) {
+        ByteBuffer in = ByteBuffer.wrap(png);
+        byte[] signature = new byte[8];
+        in.get(signature);
+        assertArrayEquals(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'}, signature);
+        List<Chunk> chunks = new ArrayList<>();
+        while (in.hasRemaining()) {
+            byte[] data = new byte[in.getInt()];
+            byte[] type = new byte[4];
+            in.get(type).get(data);
+            chunks.add(new Chunk(new String(type, StandardCharsets.US_ASCII), data, in.getInt() & 0xFFFFFFFFL));
+        }
+        return chunks;
+    }
+
+    private static byte[] idatData(List<Chunk> chunks) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Chunk chunk : chunks) if (chunk.type.equals("IDAT")) out.write(chunk.data, 0, chunk.data.length);
+        return out.toByteArray();
+    }
+
+    private static byte[] inflate(byte[] data) throws Exception {
+        Inflater inflater = new Inflater();
+        inflater.setInput(data);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        while (!inflater.finished()) {
+            int n = inflater.inflate(buffer);
+            if (n == 0 && inflater.needsInput()) break;
+            out.write(buffer, 0, n);
+        }
+        assertTrue("deflate stream complete", inflater.finished());
+        inflater.end();
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,264 @@
+package com.anass.halak.reactflow;
+
+import android.graphics.PointF;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.robolectric.Shadows.shadowOf;
+
+/** Tile files written by the store must page back in unchanged, including edits made while resident. */
+@RunWith(RobolectricTestRunner.class)
+public class TiledGraphStoreTest {
+    private static final float TILE_SIZE = 100f;
+
+    private File directory;
+    private final List<TiledGraphStore> stores = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("tiles").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        for (TiledGraphStore store : stores) store.close();
+        File[] files = directory.listFiles();
+        if (files != null) for (File file : files) file.delete();
+        directory.delete();
+    }
+
+    @Test
+    public void importedGraphPagesBackInUnchanged() throws IOException {
+        List<Node> nodes = sampleNodes();
+        List<Edge> edges = sampleEdges(nodes);
+        newStore().importGraph(nodes, edges);
+
+        RecordingHost host = new RecordingHost();
+        pageIn(newStore(), host, -1, -1, 2, 1);
+        assertEquals(3, host.nodes.size());
+        for (Node expected : nodes) assertSameNode(expected, host.nodes.get(expected.id));
+        assertEquals(2, host.edges.size()); // The edge between two tiles arrives once
+        for (Edge expected : edges) assertSameEdge(expected, host.edges.get(expected.id));
+    }
+
+    @Test
+    public void editsSurviveFlushAndReopen() throws IOException {
+        List<Node> nodes = sampleNodes();
+        List<Edge> edges = sampleEdges(nodes);
+        newStore().importGraph(nodes, edges);
+
+        TiledGraphStore store = newStore();
+        RecordingHost host = new RecordingHost();
+        pageIn(store, host, -1, -1, 2, 1);
+        Node a = host.nodes.get("a"), b = host.nodes.get("b");
+        a.label = "Renamed";
+        b.position = new PointF(120f, 60f); // Tile (2, 1) -> (1, 0)
+        Node d = new Node("d", new PointF(160f, 40f));
+        host.nodes.put("d", d);
+        store.applyChanges(Arrays.asList(GraphChange.nodeRelabelled(a), GraphChange.nodeMoved(b), GraphChange.nodeAdded(d),
+                GraphChange.edgeRemoved(host.edges.get("b-c")), GraphChange.nodeRemoved("c")));
+        store.close();
+
+        RecordingHost reopened = new RecordingHost();
+        pageIn(newStore(), reopened, -1, -1, 2, 1);
+        assertEquals("Renamed", reopened.nodes.get("a").label);
+        assertSameNode(b, reopened.nodes.get("b"));
+        assertSameNode(d, reopened.nodes.get("d"));
+        assertNull(reopened.nodes.get("c"));
+        assertEquals(Collections.singleton("a-b"), reopened.edges.keySet());
+        assertTrue(tileFiles().contains("tile_1_0.bin"));
+        assertFalse(tileFiles().contains("tile_-1_-1.bin")); // Emptied tiles are deleted
+    }
+
+    @Test
+    public void edgeToANonResidentTileKeepsItsPersistedEndpoint() throws IOException {
+        List<Node> nodes = sampleNodes();
+        List<Edge> edges = sampleEdges(nodes);
+        newStore().importGraph(nodes, edges);
+        Node b = nodes.get(1);
+        Handle input = b.inputHandles.get(0);
+        input.updateWorldPosition(b);
+
+        TiledGraphStore store = newStore();
+        RecordingHost host = new RecordingHost();
+        pageIn(store, host, 0, 0, 0, 0); // Only a's tile
+        assertEquals(Collections.singleton("a"), host.nodes.keySet());
+        assertEquals(Collections.singleton("a-b"), host.edges.keySet());
+        PointF end = new PointF();
+        assertTrue(store.getPersistedEndpoint("a-b", false, end));
+        assertEquals(input.worldPosition.x, end.x, 0f);
+        assertEquals(input.worldPosition.y, end.y, 0f);
+    }
+
+    @Test
+    public void edgeToANodeWaitingForItsTileIsPersisted() throws IOException {
+        List<Node> nodes = sampleNodes();
+        newStore().importGraph(nodes, sampleEdges(nodes));
+
+        TiledGraphStore store = newStore();
+        RecordingHost host = new RecordingHost();
+        pageIn(store, host, 0, 0, 0, 0);
+        Node a = host.nodes.get("a");
+        Node d = new Node("d", new PointF(260f, 160f)); // Tile (2, 1) is on disk but not resident
+        host.nodes.put(d.id, d);
+        Edge edge = new Edge("a-d", "a", a.outputHandles.get(0).id, "d", d.inputHandles.get(0).id, false);
+        store.applyChanges(Arrays.asList(GraphChange.nodeAdded(d), GraphChange.edgeAdded(edge)));
+        waitForTiles(host, 2);
+        store.close();
+
+        RecordingHost reopened = new RecordingHost();
+        pageIn(newStore(), reopened, -1, -1, 2, 1);
+        assertSameNode(d, reopened.nodes.get("d"));
+        assertSameEdge(edge, reopened.edges.get("a-d"));
+    }
+
+    @Test
+    public void unreadableTileIsNeverOverwritten() throws IOException {
+        File file = new File(directory, "tile_0_0.bin");
+        byte[] garbage = {1, 2, 3, 4, 5, 6, 7, 8};
+        try (FileOutputStream out = new FileOutputStream(file)) { out.write(garbage); }
+
+        TiledGraphStore store = newStore();
+        RecordingHost host = new RecordingHost();
+        pageIn(store, host, 0, 0, 0, 0);
+        Node added = new Node("new", new PointF(50f, 50f));
+        host.nodes.put(added.id, added);
+        store.applyChanges(Collections.singletonList(GraphChange.nodeAdded(added)));
+        store.close();
+        assertArrayEquals(garbage, Files.readAllBytes(file.toPath()));
+    }
+
+    // --- Helpers ---
+    private TiledGraphStore newStore() {
+        TiledGraphStore store = new TiledGraphStore(directory, TILE_SIZE, 1L << 30);
+        store.setPrefetchTiles(0);
+        stores.add(store);
+        return store;
+    }
+
+    // Loads tiles (minTx, minTy)..(maxTx, maxTy) and waits until every one has been handed to the host
+    private static void pageIn(TiledGraphStore store, RecordingHost host, int minTx, int minTy, int maxTx, int maxTy) {
+        store.attach(host);
+        store.updateViewport(minTx * TILE_SIZE + 1f, minTy * TILE_SIZE + 1f, (maxTx + 1) * TILE_SIZE - 1f, (maxTy + 1) * TILE_SIZE - 1f);
+        waitForTiles(host, (maxTx - minTx + 1) * (maxTy - minTy + 1));
+    }
+
+    private static void waitForTiles(RecordingHost host, int expected) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (host.tilesPagedIn < expected) {
+            if (System.currentTimeMillis() > deadline) fail("Paged in " + host.tilesPagedIn + " of " + expected + " tiles");
+            shadowOf(Looper.getMainLooper()).idle(); // Runs onLoaded() for reads the IO thread has finished
+            try { Thread.sleep(5); } catch (InterruptedException e) { throw new AssertionError(e); }
+        }
+    }
+
+    private List<String> tileFiles() {
+        String[] names = directory.list();
+        return names != null ? Arrays.asList(names) : Collections.<String>emptyList();
+    }
+
+    // Three nodes in tiles (0, 0), (2, 1) and (-1, -1), with labelled, explicit and side-moved handle groups
+    private static List<Node> sampleNodes() {
+        Node a = new Node("a", new PointF(50f, 50f), 80f, 60f, NodeShape.CUSTOM_DRAWABLE, "Alpha", 7, 9, 0, 0);
+        a.setHandleLayout(Handle.Type.INPUT, Handle.Side.TOP, 3, new String[]{"x", null, "z"});
+        a.setExplicitHandles(Handle.Type.OUTPUT, Handle.Side.RIGHT, new PointF[]{new PointF(80f, 10f), new PointF(80f, 50f)}, new String[]{"out", null});
+        Node b = new Node("b", new PointF(250f, 150f), 40f, 40f, NodeShape.CUBE, "Beta", null, null, 1, 1);
+        Node c = new Node("c", new PointF(-50f, -50f));
+        return Arrays.asList(a, b, c);
+    }
+
+    private static List<Edge> sampleEdges(List<Node> nodes) {
+        Node a = nodes.get(0), b = nodes.get(1), c = nodes.get(2);
+        return Arrays.asList(
+                new Edge("a-b", "a", a.outputHandles.get(1).id, "b", b.inputHandles.get(0).id, true),
+                new Edge("b-c", "b", b.outputHandles.get(0).id, "c", c.inputHandles.get(0).id, false));
+    }
+
+    private static void assertSameNode(Node expected, Node actual) {
+        assertNotNull(expected.id, actual);
+        assertEquals(expected.id, actual.id);
+        assertEquals(expected.position.x, actual.position.x, 0f);
+        assertEquals(expected.position.y, actual.position.y, 0f);
+        assertEquals(expected.size.width(), actual.size.width(), 0f);
+        assertEquals(expected.size.height(), actual.size.height(), 0f);
+        assertEquals(expected.shape, actual.shape);
+        assertEquals(expected.label, actual.label);
+        assertEquals(expected.customDrawableResId, actual.customDrawableResId);
+        assertEquals(expected.backgroundDrawableResId, actual.backgroundDrawableResId);
+        for (Handle.Type type : Handle.Type.values()) {
+            assertEquals(expected.getHandleSide(type), actual.getHandleSide(type));
+            assertEquals(expected.hasExplicitHandles(type), actual.hasExplicitHandles(type));
+        }
+        Handle[] want = expected.getHandleArray(), got = actual.getHandleArray();
+        assertEquals(want.length, got.length);
+        for (int i = 0; i < want.length; i++) {
+            assertEquals(want[i].id, got[i].id);
+            assertEquals(want[i].type, got[i].type);
+            assertEquals(want[i].label, got[i].label);
+            assertEquals(want[i].relativeOffset.x, got[i].relativeOffset.x, 0f);
+            assertEquals(want[i].relativeOffset.y, got[i].relativeOffset.y, 0f);
+        }
+    }
+
+    private static void assertSameEdge(Edge expected, Edge actual) {
+        assertNotNull(expected.id, actual);
+        assertEquals(expected.sourceNodeId, actual.sourceNodeId);
+        assertEquals(expected.sourceHandleId, actual.sourceHandleId);
+        assertEquals(expected.targetNodeId, actual.targetNodeId);
+        assertEquals(expected.targetHandleId, actual.targetHandleId);
+        assertEquals(expected.animated, actual.animated);
+    }
+
+    // Stands in for the view: keeps what was paged in and resolves live handle positions from it
+    private static final class RecordingHost implements TiledGraphStore.Host {
+        final Map<String, Node> nodes = new HashMap<>();
+        final Map<String, Edge> edges = new HashMap<>();
+        int tilesPagedIn;
+
+        @Override public void onTilePagedIn(@NonNull List<Node> paged, @NonNull List<Edge> pagedEdges) {
+            tilesPagedIn++;
+            for (Node node : paged) assertNull("paged in twice: " + node.id, nodes.put(node.id, node));
+            for (Edge edge : pagedEdges) assertNull("paged in twice: " + edge.id, edges.put(edge.id, edge));
+        }
+
+        @Override public void onTilePagedOut(@NonNull List<Node> paged, @NonNull List<Edge> pagedEdges) {
+            for (Node node : paged) nodes.remove(node.id);
+            for (Edge edge : pagedEdges) edges.remove(edge.id);
+        }
+
+        @Override @Nullable public PointF findLiveHandlePosition(@NonNull String handleId) {
+            for (Node node : nodes.values()) {
+                for (Handle handle : node.getHandleArray()) {
+                    if (handle.id.equals(handleId)) { handle.updateWorldPosition(node); return handle.worldPosition; }
+                }
+            }
+            return null;
+        }
+    }
+}